@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.Main;
+import app.owlcms.data.agegroup.ChampionshipType;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.category.Participation;
+import app.owlcms.data.config.Config;
+import app.owlcms.data.jpa.BenchmarkData;
+import app.owlcms.data.jpa.JPAService;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * A competition of a given size, in an in-memory database, with lifts already done.
+ *
+ * The athletes are created by {@link BenchmarkData} (IWF and masters age groups, sessions of 14 athletes). Three
+ * athletes out of four have done all their lifts, the others are somewhere in their snatches or clean and jerks, so
+ * that the lifting order and the rankings have something to work on.
+ *
+ * The database is created once per JVM and size; JMH normally forks a JVM for each benchmark and parameter value.
+ *
+ * @author Jean-François Lamy
+ */
+public class CompetitionFixture {
+
+	private static final double GOOD_LIFT_PROBABILITY = 0.7;
+	private static int currentSize = -1;
+	private static List<Athlete> athletes;
+
+	/**
+	 * @param nbAthletes size of the competition
+	 * @return the athletes of the competition, with their lifts and categories loaded
+	 */
+	public static synchronized List<Athlete> getAthletes(int nbAthletes) {
+		if (currentSize != nbAthletes) {
+			if (currentSize >= 0) {
+				JPAService.close();
+			}
+			athletes = create(nbAthletes);
+			currentSize = nbAthletes;
+		}
+		return athletes;
+	}
+
+	private static List<Athlete> create(int nbAthletes) {
+		// no MQTT broker for the fields of play created by the benchmarks
+		System.setProperty("enableEmbeddedMqtt", "false");
+		Main.injectSuppliers();
+		JPAService.init(true, true);
+		Config.initConfig();
+		// no background thread re-posting the updates
+		Config.getCurrent().setFeatureSwitches("noForwarderKeepAlive");
+		((Logger) LoggerFactory.getLogger(BenchmarkData.class)).setLevel(Level.WARN);
+		BenchmarkData.insertInitialData(EnumSet.of(ChampionshipType.IWF, ChampionshipType.MASTERS), nbAthletes);
+
+		List<Athlete> all = new ArrayList<>(AthleteRepository.findAll());
+		Random r = new Random(0);
+		for (Athlete a : all) {
+			a.setValidation(false);
+			a.setLoggerLevel(Level.OFF);
+			int liftsDone = r.nextInt(4) > 0 ? 6 : r.nextInt(6);
+			doLifts(a, r, liftsDone);
+			// load the lazy associations now rather than during the measurements
+			a.getGroup();
+			a.getCategory();
+			for (Participation p : a.getParticipations()) {
+				p.getCategory().getAgeGroup();
+			}
+		}
+		return Collections.unmodifiableList(all);
+	}
+
+	private static void doLifts(Athlete a, Random r, int liftsDone) {
+		int snatch = Integer.parseInt(a.getSnatch1Declaration());
+		int cleanJerk = Integer.parseInt(a.getCleanJerk1Declaration());
+		for (int i = 0; i < liftsDone; i++) {
+			boolean snatchAttempt = i < 3;
+			int weight = snatchAttempt ? snatch : cleanJerk;
+			boolean good = r.nextDouble() < GOOD_LIFT_PROBABILITY;
+			String lift = good ? Integer.toString(weight) : Integer.toString(-weight);
+			setActualLift(a, i, lift);
+			if (good && snatchAttempt) {
+				snatch += 1 + r.nextInt(4);
+			} else if (good) {
+				cleanJerk += 1 + r.nextInt(4);
+			}
+		}
+	}
+
+	private static void setActualLift(Athlete a, int attempt, String lift) {
+		switch (attempt) {
+			case 0:
+				a.setSnatch1ActualLift(lift);
+				break;
+			case 1:
+				a.setSnatch2ActualLift(lift);
+				break;
+			case 2:
+				a.setSnatch3ActualLift(lift);
+				break;
+			case 3:
+				a.setCleanJerk1ActualLift(lift);
+				break;
+			case 4:
+				a.setCleanJerk2ActualLift(lift);
+				break;
+			default:
+				a.setCleanJerk3ActualLift(lift);
+				break;
+		}
+	}
+
+}
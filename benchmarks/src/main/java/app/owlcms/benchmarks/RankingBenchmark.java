@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.benchmarks;
+
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.data.group.Group;
+
+/**
+ * Competition-wide rankings and medals, as recomputed after each decision.
+ *
+ * @author Jean-François Lamy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmark {
+
+	@Param({ "50", "200", "1000", "2000" })
+	public int nbAthletes;
+
+	private List<Athlete> athletes;
+	private Group group;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.athletes = CompetitionFixture.getAthletes(this.nbAthletes);
+		this.group = this.athletes.get(0).getGroup();
+	}
+
+	@Benchmark
+	public TreeMap<String, TreeSet<Athlete>> computeMedals() {
+		return Competition.getCurrent().computeMedals(this.group, this.athletes);
+	}
+
+	@Benchmark
+	public List<Athlete> doGlobalRankings() {
+		Competition.getCurrent().doGlobalRankings(this.athletes, false);
+		return this.athletes;
+	}
+
+	@Benchmark
+	public List<Athlete> doGlobalRankingsScoringSystemOnly() {
+		Competition.getCurrent().doGlobalRankings(this.athletes, true);
+		return this.athletes;
+	}
+
+}
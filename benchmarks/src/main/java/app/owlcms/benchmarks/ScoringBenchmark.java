@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import app.owlcms.data.athlete.Athlete;
+
+/**
+ * Scores of every athlete of a competition, as computed when ranking by GAMX, Q-points, age factors or Sinclair.
+ *
+ * @author Jean-François Lamy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+
+	@Param({ "50", "200", "1000", "2000" })
+	public int nbAthletes;
+
+	private List<Athlete> athletes;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.athletes = CompetitionFixture.getAthletes(this.nbAthletes);
+	}
+
+	@Benchmark
+	public void ageFactors(Blackhole bh) {
+		for (Athlete a : this.athletes) {
+			bh.consume(a.getAgeAdjustedTotal());
+		}
+	}
+
+	@Benchmark
+	public void gamx(Blackhole bh) {
+		for (Athlete a : this.athletes) {
+			bh.consume(a.getGamx());
+		}
+	}
+
+	@Benchmark
+	public void qPoints(Blackhole bh) {
+		for (Athlete a : this.athletes) {
+			bh.consume(a.getQPoints());
+		}
+	}
+
+	@Benchmark
+	public void sinclair(Blackhole bh) {
+		for (Athlete a : this.athletes) {
+			bh.consume(a.getSinclairForDelta());
+		}
+	}
+
+}
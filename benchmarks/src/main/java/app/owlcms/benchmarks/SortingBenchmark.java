@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.athleteSort.LiftOrderComparator;
+import app.owlcms.data.athleteSort.Ranking;
+import app.owlcms.data.athleteSort.WinningOrderComparator;
+
+/**
+ * Sorting and category ranking of a whole competition.
+ *
+ * The sorts start from the same shuffled copy of the athletes at every invocation, so that the input is never
+ * already in order.
+ *
+ * @author Jean-François Lamy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortingBenchmark {
+
+	@Param({ "50", "200", "1000", "2000" })
+	public int nbAthletes;
+
+	private List<Athlete> shuffled;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.shuffled = new ArrayList<>(CompetitionFixture.getAthletes(this.nbAthletes));
+		Collections.shuffle(this.shuffled, new Random(0));
+	}
+
+	@Benchmark
+	public List<Athlete> assignCategoryRanks() {
+		List<Athlete> l = new ArrayList<>(this.shuffled);
+		AthleteSorter.assignCategoryRanks(l, Ranking.SNATCH);
+		AthleteSorter.assignCategoryRanks(l, Ranking.CLEANJERK);
+		AthleteSorter.assignCategoryRanks(l, Ranking.TOTAL);
+		return l;
+	}
+
+	@Benchmark
+	public List<Athlete> displayOrderCopy() {
+		return AthleteSorter.displayOrderCopy(this.shuffled);
+	}
+
+	@Benchmark
+	public List<Athlete> liftingOrderCopy() {
+		return AthleteSorter.liftingOrderCopy(this.shuffled);
+	}
+
+	@Benchmark
+	public List<Athlete> liftOrderComparator() {
+		List<Athlete> l = new ArrayList<>(this.shuffled);
+		l.sort(new LiftOrderComparator());
+		return l;
+	}
+
+	@Benchmark
+	public List<Athlete> resultsOrderCopy() {
+		return AthleteSorter.resultsOrderCopy(this.shuffled, Ranking.TOTAL);
+	}
+
+	@Benchmark
+	public List<Athlete> winningOrderComparator() {
+		List<Athlete> l = new ArrayList<>(this.shuffled);
+		l.sort(new WinningOrderComparator(Ranking.TOTAL, false));
+		return l;
+	}
+
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.monitors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.owlcms.benchmarks.CompetitionFixture;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.platform.Platform;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.ProxyAthleteTimer;
+import app.owlcms.fieldofplay.ProxyBreakTimer;
+import app.owlcms.init.OwlcmsFactory;
+import app.owlcms.uievents.UIEvent;
+
+/**
+ * Building the update sent to publicresults: scoreboard JSON for the session, leaders, records and translations.
+ *
+ * In the same package as {@link EventForwarder} to reach the computation without posting anything. The cost depends
+ * on the size of the session on the platform, not on that of the competition; the size is a parameter so the
+ * numbers can be compared with the other benchmarks.
+ *
+ * @author Jean-François Lamy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventForwarderBenchmark {
+
+	@Param({ "50", "2000" })
+	public int nbAthletes;
+
+	private UIEvent event;
+	private EventForwarder forwarder;
+	private FieldOfPlay fop;
+	private Group group;
+
+	@Benchmark
+	public Map<String, String> createUpdate() {
+		return this.forwarder.computeUpdate(this.group, this.event);
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		List<Athlete> athletes = CompetitionFixture.getAthletes(this.nbAthletes);
+		this.group = athletes.get(0).getGroup();
+		List<Athlete> groupAthletes = athletes.stream()
+		        .filter(a -> a.getGroup() != null && Objects.equals(a.getGroup().getId(), this.group.getId()))
+		        .toList();
+
+		this.fop = new FieldOfPlay(this.group, new Platform("benchmark" + this.nbAthletes));
+		this.fop.init(new ArrayList<>(groupAthletes), new ProxyAthleteTimer(this.fop),
+		        new ProxyBreakTimer(this.fop), true);
+		this.forwarder = this.fop.getEventForwarder();
+		this.event = new UIEvent.StartLifting(this.group, this, this.fop);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.fop.unregister();
+		OwlcmsFactory.getFopByName().remove(this.fop.getName());
+	}
+
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.apputils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+
+/**
+ * Counts of durations by power-of-two-ish buckets, with total and maximum. Lock-free, small enough to keep one per
+ * call site or per message type.
+ *
+ * @author Jean-François Lamy
+ */
+public class LatencyHistogram {
+
+	/** upper bounds of the buckets, the last bucket has no bound */
+	static final long[] BUCKET_LIMITS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+	private final LongAdder count = new LongAdder();
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_LIMITS_MILLIS.length + 1);
+	private final AtomicLong maxNanos = new AtomicLong();
+	private final LongAdder totalNanos = new LongAdder();
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	public long getTotalNanos() {
+		return this.totalNanos.sum();
+	}
+
+	/**
+	 * @param nanos a duration; negative values (clocks out of sync) are ignored
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			return;
+		}
+		this.count.increment();
+		this.totalNanos.add(nanos);
+		this.maxNanos.accumulateAndGet(nanos, Math::max);
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		int i = 0;
+		while (i < BUCKET_LIMITS_MILLIS.length && millis >= BUCKET_LIMITS_MILLIS[i]) {
+			i++;
+		}
+		this.counts.incrementAndGet(i);
+	}
+
+	/**
+	 * @return count, total, mean and maximum in milliseconds, and the non-empty buckets
+	 */
+	public JsonObject toJson() {
+		JsonObject json = Json.createObject();
+		long n = getCount();
+		json.put("count", n);
+		json.put("totalMillis", toMillis(getTotalNanos()));
+		json.put("meanMillis", n > 0 ? toMillis(getTotalNanos()) / n : 0.0);
+		json.put("maxMillis", toMillis(this.maxNanos.get()));
+		JsonObject buckets = Json.createObject();
+		for (int i = 0; i < this.counts.length(); i++) {
+			long c = this.counts.get(i);
+			if (c > 0) {
+				String label = i < BUCKET_LIMITS_MILLIS.length ? "<" + BUCKET_LIMITS_MILLIS[i] + "ms"
+				        : ">=" + BUCKET_LIMITS_MILLIS[BUCKET_LIMITS_MILLIS.length - 1] + "ms";
+				buckets.put(label, c);
+			}
+		}
+		json.put("histogram", buckets);
+		return json;
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / 1_000_000.0D;
+	}
+
+}
@@ -6,7 +6,6 @@
  *******************************************************************************/
 package app.owlcms.components;
 
-import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -249,8 +248,7 @@ public class JXLSDownloader {
 					current = Competition.getCurrent();
 					this.logger.debug("(2) template as stored {}", this.templateNameGetter.apply(current));
 
-					InputStream is = res.getStream();
-					this.xlsWriter.setInputStream(is);
+					this.xlsWriter.setTemplatePath(res.getFilePath());
 					this.logger.debug("(2) filter present = {} {} {}", this.xlsWriter.getGroup(),
 					        this.xlsWriter.getCategory(),
 					        this.xlsWriter.getChampionship());
@@ -23,6 +23,7 @@ import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
 import org.apache.commons.lang3.ObjectUtils;
+import org.hibernate.jpa.QueryHints;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.athlete.Athlete;
@@ -31,7 +32,9 @@ import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.category.Category;
 import app.owlcms.data.category.Participation;
 import app.owlcms.data.competition.Competition;
+import app.owlcms.data.competition.ScoringLeaderboard;
 import app.owlcms.data.group.Group;
+import app.owlcms.data.jpa.DataVersion;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.spreadsheet.PAthlete;
 import app.owlcms.utils.LoggerUtils;
@@ -416,11 +419,9 @@ public class AgeGroupRepository {
 	 * @param em entity manager
 	 * @return the group, null if not found
 	 */
-	@SuppressWarnings("unchecked")
 	public static AgeGroup getById(Long id, EntityManager em) {
-		Query query = em.createQuery("select u from CompetitionAgeGroup u where u.id=:id");
-		query.setParameter("id", id);
-		return (AgeGroup) query.getResultList().stream().findFirst().orElse(null);
+		// find goes through the second-level cache, a query would not
+		return id != null ? em.find(AgeGroup.class, id) : null;
 	}
 
 	public static void insertAgeGroups(EntityManager em, EnumSet<ChampionshipType> forcedInsertion) {
@@ -590,12 +591,14 @@ public class AgeGroupRepository {
 			Competition.getCurrent().setRankingsInvalid(true);
 			return null;
 		});
+		ScoringLeaderboard.getCurrent().invalidate();
 		JPAService.runInTransaction(em -> {
 			try {
 				Query upd = em.createQuery("delete from Category");
 				upd.executeUpdate();
 				upd = em.createQuery("delete from AgeGroup");
 				upd.executeUpdate();
+				DataVersion.changedByQuery(em);
 			} catch (Exception e) {
 				LoggerUtils.logError(logger, e);
 			}
@@ -618,8 +621,10 @@ public class AgeGroupRepository {
 	}
 
 	@SuppressWarnings("unchecked")
-	private static List<AgeGroup> doFindAll(EntityManager em) {
-		return em.createQuery("select c from AgeGroup c order by c.ageDivision,c.minAge,c.maxAge").getResultList();
+	public static List<AgeGroup> doFindAll(EntityManager em) {
+		return em.createQuery("select c from AgeGroup c order by c.ageDivision,c.minAge,c.maxAge")
+		        .setHint(QueryHints.HINT_CACHEABLE, true)
+		        .getResultList();
 	}
 
 	private static String filteringSelection(String name, Gender gender, Championship championship, Integer age,
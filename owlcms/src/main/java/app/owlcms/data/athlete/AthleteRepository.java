@@ -25,6 +25,7 @@ import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.category.Category;
 import app.owlcms.data.category.Participation;
 import app.owlcms.data.competition.Competition;
+import app.owlcms.data.competition.ScoringLeaderboard;
 import app.owlcms.data.group.Group;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.spreadsheet.PAthlete;
@@ -43,11 +44,8 @@ public class AthleteRepository {
 
 	public static void assignCategoryRanks() {
 		JPAService.runInTransaction(em -> {
-			// assign ranks to all groups.
-			List<Athlete> l = AthleteSorter.assignCategoryRanks(null);
-			for (Athlete a : l) {
-				em.merge(a);
-			}
+			// assign ranks to all groups; the athletes are managed, the flush only writes those whose ranks changed
+			AthleteSorter.assignCategoryRanks(em, null);
 			em.flush();
 			return null;
 		});
@@ -124,6 +122,7 @@ public class AthleteRepository {
 			Competition.getCurrent().setRankingsInvalid(true);
 			return null;
 		});
+		ScoringLeaderboard.getCurrent().invalidate();
 	}
 
 	public static Integer doCountFiltered(String lastName, Group group, Category category, AgeGroup ageGroup,
@@ -307,12 +306,9 @@ public class AthleteRepository {
 	 * @param em the em
 	 * @return the by id
 	 */
-	@SuppressWarnings("unchecked")
 	public static Athlete getById(Long id, EntityManager em) {
-		Query query = em.createQuery("select a from Athlete a where a.id=:id");
-		query.setParameter("id", id);
-
-		return (Athlete) query.getResultList().stream().findFirst().orElse(null);
+		// find goes through the second-level cache, a query would not
+		return id != null ? em.find(Athlete.class, id) : null;
 	}
 
 	/**
@@ -344,6 +340,7 @@ public class AthleteRepository {
 			Competition.getCurrent().setRankingsInvalid(true);
 			return null;
 		});
+		ScoringLeaderboard.getCurrent().invalidate();
 		assignCategoryRanks();
 	}
 
@@ -357,11 +354,14 @@ public class AthleteRepository {
 		if (athlete == null) {
 			return athlete;
 		}
-		return JPAService.runInTransaction((em) -> {
+		Athlete saved = JPAService.runInTransaction((em) -> {
 			Competition.getCurrent().setRankingsInvalid(true);
 			Athlete merged = em.merge(athlete);
 			return merged;
 		});
+		// only this athlete moves on the competition-wide leaderboard
+		ScoringLeaderboard.getCurrent().update(saved.getId());
+		return saved;
 	}
 
 	private static List<Athlete> doFindAthletesForGlobalRanking(Group g, EntityManager em, boolean onlyWeighedIn) {
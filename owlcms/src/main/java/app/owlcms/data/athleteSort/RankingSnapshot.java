@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.data.athleteSort;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.category.Participation;
+
+/**
+ * Category ranks and scores of a set of athletes at a point in time.
+ *
+ * Comparing two snapshots tells what a recomputation actually changed: the participations whose ranks moved, and
+ * whether any score used for the competition-wide ranking moved (if not, the competition-wide ranking cannot have
+ * changed either).
+ *
+ * @author Jean-François Lamy
+ */
+public class RankingSnapshot {
+
+	private record Ranks(int snatch, int cleanJerk, int total, int custom) {
+	}
+
+	/**
+	 * @param athletes      the athletes whose ranks have just been assigned
+	 * @param scoringSystem the ranking used for the competition-wide scores
+	 * @return the snapshot
+	 */
+	public static RankingSnapshot of(List<Athlete> athletes, Ranking scoringSystem) {
+		RankingSnapshot s = new RankingSnapshot(scoringSystem);
+		if (athletes == null) {
+			return s;
+		}
+		for (Athlete a : athletes) {
+			if (a == null || a.getId() == null) {
+				continue;
+			}
+			s.scores.put(a.getId(), scoringSystem != null ? Ranking.getRankingValue(a, scoringSystem) : 0.0D);
+			List<Participation> participations = a.getParticipations();
+			if (participations == null) {
+				continue;
+			}
+			for (Participation p : participations) {
+				Category c = p.getCategory();
+				s.ranks.put(a.getId() + "/" + (c != null ? c.getCode() : ""),
+				        new Ranks(p.getSnatchRank(), p.getCleanJerkRank(), p.getTotalRank(), p.getCustomRank()));
+			}
+		}
+		return s;
+	}
+
+	private final Map<String, Ranks> ranks = new HashMap<>();
+	private final Map<Long, Double> scores = new HashMap<>();
+	private final Ranking scoringSystem;
+
+	private RankingSnapshot(Ranking scoringSystem) {
+		this.scoringSystem = scoringSystem;
+	}
+
+	/**
+	 * @param previous an earlier snapshot, may be null
+	 * @return the number of participations whose ranks differ from the earlier snapshot, or that are new
+	 */
+	public int countRankChanges(RankingSnapshot previous) {
+		if (previous == null) {
+			return this.ranks.size();
+		}
+		int changes = 0;
+		for (Entry<String, Ranks> e : this.ranks.entrySet()) {
+			if (!e.getValue().equals(previous.ranks.get(e.getKey()))) {
+				changes++;
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * @param previous an earlier snapshot, may be null
+	 * @return true if the same athletes have the same scores for the same scoring system
+	 */
+	public boolean sameScores(RankingSnapshot previous) {
+		return previous != null && Objects.equals(this.scoringSystem, previous.scoringSystem)
+		        && this.scores.equals(previous.scores);
+	}
+
+}
@@ -8,10 +8,12 @@ package app.owlcms.data.category;
 
 import java.util.Objects;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
 import javax.persistence.MapsId;
 import javax.persistence.Table;
@@ -36,7 +38,8 @@ import ch.qos.logback.classic.Logger;
  * @author Jean-François Lamy
  */
 @Entity(name = "Participation")
-@Table(name = "participation")
+@Cacheable
+@Table(name = "participation", indexes = { @Index(name = "ix_participation_categ", columnList = "category_id") })
 @JsonIgnoreProperties(ignoreUnknown = true, value = { "hibernateLazyInitializer", "logger" })
 public class Participation implements IRankHolder {
 
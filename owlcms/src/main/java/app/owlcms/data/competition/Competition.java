@@ -99,6 +99,7 @@ public class Competition {
 
 	public static void setCurrent(Competition c) {
 		competition = c;
+		ScoringLeaderboard.getCurrent().invalidate();
 	}
 
 	public static void splitByGender(List<Athlete> athletes, List<Athlete> sortedMen, List<Athlete> sortedWomen) {
@@ -720,9 +721,9 @@ public class Competition {
 
 	@Transient
 	@JsonIgnore
-	synchronized public List<Athlete> getGlobalScoreRanking(Gender gender) {
-		return getListOrElseRecompute(
-		        gender == Gender.F ? getScoringSystem().getWReportingName() : getScoringSystem().getMReportingName());
+	public List<Athlete> getGlobalScoreRanking(Gender gender) {
+		// ranked when the scores change, no need to recompute all the reporting info
+		return ScoringLeaderboard.getCurrent().getLeaderboard(getScoringSystem(), gender);
 	}
 
 	/**
@@ -13,6 +13,7 @@ import javax.persistence.Query;
 
 import org.slf4j.LoggerFactory;
 
+import app.owlcms.data.jpa.DataVersion;
 import app.owlcms.data.jpa.JPAService;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
@@ -59,6 +60,7 @@ public class CompetitionRepository {
 		logger.info("deleted {} config", deletedCount);
 		deletedCount = em.createQuery("DELETE FROM Competition").executeUpdate();
 		logger.info("deleted {} competition", deletedCount);
+		DataVersion.changedByQuery(em);
 
 		em.flush();
 		em.clear();
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.data.competition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.athleteSort.Ranking;
+import app.owlcms.data.athleteSort.WinningOrderComparator;
+import app.owlcms.data.jpa.JPAService;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Competition-wide leaderboard for the scoring system (Sinclair, QPoints, GAMX, etc.)
+ *
+ * The weighed-in athletes are read and sorted once, then kept in leaderboard order. When a field of play has a score
+ * change, only its athletes are moved to their new place, and the ranks that moved as a consequence are written with
+ * the entity manager of the field of play. A saved athlete is moved the same way. The whole competition is only read
+ * and sorted again after a structural change: new competition, categories recomputed, athlete removed.
+ *
+ * The athletes kept are never handed out: the leaderboard is read back from the database (normally from the
+ * second-level cache) by id for each display, so nothing is shared between the sessions of the different platforms.
+ *
+ * @author Jean-François Lamy
+ */
+public class ScoringLeaderboard {
+
+	/**
+	 * The weighed-in athletes, in leaderboard order for each gender, and the ranks last written to the database.
+	 */
+	private static class Standings {
+		private final Map<Gender, List<Athlete>> athletes = new HashMap<>();
+		private final Comparator<Athlete> comparator;
+		private final Map<Long, Integer> persistedRanks = new HashMap<>();
+		private final Ranking ranking;
+
+		private Standings(Ranking ranking, List<Athlete> weighedIn) {
+			this.ranking = ranking;
+			this.comparator = new WinningOrderComparator(ranking, true);
+			for (Athlete a : weighedIn) {
+				this.persistedRanks.put(a.getId(), Ranking.getRanking(a, ranking));
+				this.athletes.computeIfAbsent(a.getGender(), g -> new ArrayList<>()).add(a);
+			}
+			for (List<Athlete> l : this.athletes.values()) {
+				l.sort(this.comparator);
+				AthleteSorter.assignOverallRanksAndPoints(l, ranking);
+			}
+		}
+
+		/**
+		 * Move an athlete to its place, given its current results.
+		 *
+		 * @param a     the athlete, kept from now on; removed if no longer weighed-in
+		 * @param moved the genders whose ranks must be assigned again
+		 */
+		private void place(Athlete a, Set<Gender> moved) {
+			List<Athlete> l = this.athletes.get(a.getGender());
+			int i = l != null ? indexOf(l, a.getId()) : -1;
+			if (i >= 0 && isWeighedIn(a)
+			        && (i == 0 || this.comparator.compare(l.get(i - 1), a) <= 0)
+			        && (i == l.size() - 1 || this.comparator.compare(a, l.get(i + 1)) <= 0)) {
+				// still in place, the score may have changed nonetheless
+				l.set(i, a);
+				moved.add(a.getGender());
+				return;
+			}
+			remove(a.getId(), moved);
+			if (!isWeighedIn(a)) {
+				return;
+			}
+			l = this.athletes.computeIfAbsent(a.getGender(), g -> new ArrayList<>());
+			int pos = Collections.binarySearch(l, a, this.comparator);
+			l.add(pos >= 0 ? pos : -pos - 1, a);
+			moved.add(a.getGender());
+		}
+
+		private void remove(Long id, Set<Gender> moved) {
+			for (Map.Entry<Gender, List<Athlete>> e : this.athletes.entrySet()) {
+				Iterator<Athlete> it = e.getValue().iterator();
+				while (it.hasNext()) {
+					if (it.next().getId().equals(id)) {
+						it.remove();
+						moved.add(e.getKey());
+					}
+				}
+			}
+		}
+
+		private void reassign(Collection<Gender> moved) {
+			for (Gender g : moved) {
+				List<Athlete> l = this.athletes.get(g);
+				if (l != null) {
+					AthleteSorter.assignOverallRanksAndPoints(l, this.ranking);
+				}
+			}
+		}
+
+		/**
+		 * Write the ranks that differ from those in the database.
+		 *
+		 * @return the number of athletes written
+		 */
+		private int writeRanks(EntityManager em) {
+			int written = 0;
+			for (List<Athlete> l : this.athletes.values()) {
+				for (Athlete a : l) {
+					int rank = Ranking.getRanking(a, this.ranking);
+					Integer persisted = this.persistedRanks.get(a.getId());
+					if (persisted != null && persisted == rank) {
+						continue;
+					}
+					// athletes of the caller are already updated, the others are read (normally from the cache)
+					Athlete managed = em.contains(a) ? a : em.find(Athlete.class, a.getId());
+					if (managed != null) {
+						setRank(managed, this.ranking, rank);
+					}
+					this.persistedRanks.put(a.getId(), rank);
+					written++;
+				}
+			}
+			return written;
+		}
+	}
+
+	private static final ScoringLeaderboard current = new ScoringLeaderboard();
+	private static final int MULTI_LOAD_BATCH_SIZE = 100;
+	private final static Logger logger = (Logger) LoggerFactory.getLogger(ScoringLeaderboard.class);
+
+	public static ScoringLeaderboard getCurrent() {
+		return current;
+	}
+
+	private static int indexOf(List<Athlete> l, Long id) {
+		for (int i = 0; i < l.size(); i++) {
+			if (l.get(i).getId().equals(id)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return true if the athlete is on the leaderboard, same criterion as when reading the weighed-in athletes
+	 */
+	private static boolean isWeighedIn(Athlete a) {
+		return a.getBodyWeight() != null && a.getBodyWeight() > 0.1;
+	}
+
+	private static void setRank(Athlete a, Ranking r, int rank) {
+		switch (r) {
+			case BW_SINCLAIR:
+				a.setSinclairRank(rank);
+				break;
+			case CAT_SINCLAIR:
+				a.setCatSinclairRank(rank);
+				break;
+			case ROBI:
+				a.setRobiRank(rank);
+				break;
+			case SMM:
+				a.setSmhfRank(rank);
+				break;
+			case QPOINTS:
+				a.setqPointsRank(rank);
+				break;
+			case QAGE:
+				a.setqAgeRank(rank);
+				break;
+			case GAMX:
+				a.setGamxRank(rank);
+				break;
+			case AGEFACTORS:
+				a.setAgeAdjustedTotalRank(rank);
+				break;
+			default:
+				throw new IllegalArgumentException("not an overall ranking " + r);
+		}
+	}
+
+	/** incremented on each invalidation, standings read before are not kept */
+	private long generation;
+	/** null when the athletes must be read and sorted again */
+	private Standings standings;
+
+	private ScoringLeaderboard() {
+	}
+
+	/**
+	 * @param r      a scoring system
+	 * @param gender
+	 * @return the weighed-in athletes of that gender, best score first; the athletes are read for this call and can be
+	 *         changed by the caller
+	 */
+	public List<Athlete> getLeaderboard(Ranking r, Gender gender) {
+		Standings s;
+		long startGeneration;
+		synchronized (this) {
+			s = this.standings;
+			startGeneration = this.generation;
+		}
+		if (s == null || s.ranking != r) {
+			// the athletes are detached once read, ranking them is not written to the database
+			s = new Standings(r,
+			        JPAService.runInTransaction(em -> AthleteRepository.doFindAllByGroupAndWeighIn(em, null, true, null)));
+			publish(s, startGeneration);
+		}
+
+		List<Long> ids = new ArrayList<>();
+		Map<Long, Integer> ranks = new HashMap<>();
+		synchronized (this) {
+			for (Athlete a : s.athletes.getOrDefault(gender, Collections.emptyList())) {
+				ids.add(a.getId());
+				ranks.put(a.getId(), Ranking.getRanking(a, r));
+			}
+		}
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<Athlete> loaded = JPAService.runInTransaction(em -> em.unwrap(Session.class)
+		        .byMultipleIds(Athlete.class)
+		        .withBatchSize(MULTI_LOAD_BATCH_SIZE)
+		        .multiLoad(ids));
+		List<Athlete> sorted = new ArrayList<>(loaded.size());
+		for (Athlete a : loaded) {
+			if (a != null) {
+				// the ranks may not have been written yet if no field of play has ranked since
+				setRank(a, r, ranks.get(a.getId()));
+				sorted.add(a);
+			}
+		}
+		return sorted;
+	}
+
+	/**
+	 * Read and sort all the athletes again before the next use, after a structural change (new competition,
+	 * categories recomputed, athlete removed).
+	 */
+	public synchronized void invalidate() {
+		this.generation++;
+		this.standings = null;
+	}
+
+	/**
+	 * Move the athletes whose results have changed, and write the overall ranks that changed for the scoring system.
+	 *
+	 * The athletes given are kept, and ranked with their current results; the ranks of other athletes that moved as a
+	 * consequence are written through the same entity manager, whatever the group they are in, by the flush of the
+	 * caller. If the standings must be built, the weighed-in athletes are read with the entity manager of the caller.
+	 *
+	 * @param em      the current entity manager
+	 * @param r       the scoring system
+	 * @param changed the athletes whose results may have changed, read with the entity manager
+	 */
+	public synchronized void rank(EntityManager em, Ranking r, Collection<Athlete> changed) {
+		Standings s = this.standings;
+		if (s == null || s.ranking != r) {
+			s = new Standings(r, AthleteRepository.doFindAllByGroupAndWeighIn(em, null, true, null));
+			this.standings = s;
+		} else {
+			Set<Gender> moved = new HashSet<>();
+			for (Athlete a : changed) {
+				s.place(a, moved);
+			}
+			s.reassign(moved);
+		}
+		int written = s.writeRanks(em);
+		logger.debug("{} ranks written for {}", written, r);
+	}
+
+	/**
+	 * Move a saved athlete to its place. The ranks that changed are written at the next ranking by a field of play.
+	 *
+	 * @param id the athlete, as now found in the database
+	 */
+	public void update(Long id) {
+		synchronized (this) {
+			if (this.standings == null) {
+				return;
+			}
+		}
+		Athlete a = JPAService.runInTransaction(em -> em.find(Athlete.class, id));
+		synchronized (this) {
+			Standings s = this.standings;
+			if (s == null) {
+				return;
+			}
+			Set<Gender> moved = new HashSet<>();
+			if (a != null) {
+				s.place(a, moved);
+			} else {
+				s.remove(id, moved);
+			}
+			s.reassign(moved);
+		}
+	}
+
+	private synchronized void publish(Standings s, long startGeneration) {
+		if (this.generation == startGeneration) {
+			this.standings = s;
+		}
+	}
+
+}
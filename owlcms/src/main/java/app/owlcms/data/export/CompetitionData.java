@@ -6,21 +6,45 @@
  *******************************************************************************/
 package app.owlcms.data.export;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import javax.persistence.EntityManager;
+
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.notification.Notification;
@@ -41,17 +65,69 @@ import app.owlcms.data.platform.Platform;
 import app.owlcms.data.platform.PlatformRepository;
 import app.owlcms.data.records.RecordConfig;
 import app.owlcms.data.records.RecordEvent;
+import app.owlcms.data.records.RecordIndex;
 import app.owlcms.data.records.RecordRepository;
 import app.owlcms.i18n.Translator;
 import app.owlcms.init.OwlcmsFactory;
 import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.ResourceWalker;
+import app.owlcms.utils.StartupUtils;
 import ch.qos.logback.classic.Logger;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class CompetitionData {
 
+	/**
+	 * Compression of an export. The import recognizes the compression from the first bytes of the file.
+	 */
+	public enum Compression {
+		NONE(".json"), GZIP(".json.gz"), ZSTD(".json.zst");
+
+		/**
+		 * @return the compression set by the <code>exportCompression</code> parameter, none by default
+		 */
+		public static Compression getDefault() {
+			return fromString(StartupUtils.getStringParam("exportCompression"));
+		}
+
+		/**
+		 * zstd needs the zstd-jni library; gzip is used when it is missing.
+		 *
+		 * @param name none, gzip or zstd, in any case
+		 * @return the compression, none if the name is empty or unknown
+		 */
+		public static Compression fromString(String name) {
+			if (name == null || name.isBlank()) {
+				return NONE;
+			}
+			Compression c;
+			try {
+				c = valueOf(name.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				logger.warn("unknown export compression {}, not compressing", name);
+				return NONE;
+			}
+			if (c == ZSTD && !ZstdUtils.isZstdCompressionAvailable()) {
+				logger.warn("zstd-jni library not available, using gzip");
+				return GZIP;
+			}
+			return c;
+		}
+
+		private final String extension;
+
+		Compression(String extension) {
+			this.extension = extension;
+		}
+
+		public String getExtension() {
+			return this.extension;
+		}
+	}
+
 	final static Logger logger = (Logger) LoggerFactory.getLogger(CompetitionData.class);
+	private static final int BATCH_SIZE = Math.max(1, StartupUtils.getIntegerParam("jdbcBatchSize", 50));
+	private static final int PAGE_SIZE = Math.max(1, StartupUtils.getIntegerParam("exportPageSize", 200));
 	private List<AgeGroup> ageGroups;
 	private List<Athlete> athletes;
 	private Competition competition;
@@ -65,51 +141,36 @@ public class CompetitionData {
 	}
 
 	public InputStream exportData() {
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.registerModule(new JavaTimeModule());
-		try {
-			ObjectWriter writerWithDefaultPrettyPrinter = mapper.writerWithDefaultPrettyPrinter();
-
-			PipedOutputStream out = new PipedOutputStream();
-			PipedInputStream in = new PipedInputStream(out);
-			new Thread(() -> {
-				try {
-					writerWithDefaultPrettyPrinter.writeValue(out, this.fromDatabase());
-					out.flush();
-					out.close();
-				} catch (Throwable e) {
-					LoggerUtils.logError(logger, e);
-				}
-			}).start();
-			return in;
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
+		return exportData(Compression.NONE, null, null);
 	}
-	
-	public InputStream exportData(UI ui, Notification notification) {
+
+	/**
+	 * Export the database, written by a separate thread as it is read.
+	 *
+	 * @param compression
+	 * @param ui           null if the export is not requested from the user interface
+	 * @param notification opened during the export
+	 * @return the exported data
+	 */
+	public InputStream exportData(Compression compression, UI ui, Notification notification) {
 		if (ui != null) {
 			ui.access(() -> notification.open());
 		}
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.registerModule(new JavaTimeModule());
 		try {
-			ObjectWriter writerWithDefaultPrettyPrinter = mapper.writerWithDefaultPrettyPrinter();
-
 			PipedOutputStream out = new PipedOutputStream();
-			PipedInputStream in = new PipedInputStream(out);
+			ExportInputStream in = new ExportInputStream(new PipedInputStream(out, 64 * 1024));
 			new Thread(() -> {
 				try {
-					writerWithDefaultPrettyPrinter.writeValue(out, this.fromDatabase());
-					out.flush();
-					out.close();
+					writeData(out, compression);
+				} catch (Throwable e) {
+					LoggerUtils.logError(logger, e);
+					in.fail(e, out);
+				} finally {
 					if (ui != null) {
 						ui.access(() -> notification.close());
 					}
-				} catch (Throwable e) {
-					LoggerUtils.logError(logger, e);
 				}
-			}).start();
+			}, "competition-export").start();
 			return in;
 		} catch (Exception e) {
 			throw new RuntimeException(e);
@@ -122,17 +183,13 @@ public class CompetitionData {
 	 * @return
 	 */
 	public String exportDataAsString() {
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.registerModule(new JavaTimeModule());
-		ObjectWriter writerWithDefaultPrettyPrinter = mapper.writerWithDefaultPrettyPrinter();
-		String serialized;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		try {
-			serialized = writerWithDefaultPrettyPrinter.writeValueAsString(this.fromDatabase());
-			// System.out.println(serialized);
-			return serialized;
-		} catch (JsonProcessingException e) {
-			throw new RuntimeException(e);
+			writeData(out, Compression.NONE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
+		return out.toString(StandardCharsets.UTF_8);
 	}
 
 	public CompetitionData fromDatabase() {
@@ -195,11 +252,10 @@ public class CompetitionData {
 	}
 
 	public CompetitionData importData(InputStream serialized) {
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.registerModule(new JavaTimeModule());
+		ObjectMapper mapper = newMapper();
 		CompetitionData newData;
 		try {
-			newData = mapper.readValue(serialized, CompetitionData.class);
+			newData = mapper.readValue(decompress(serialized), CompetitionData.class);
 			logger.debug("after unmarshall {}", newData.getPlatforms());
 			return newData;
 		} catch (Exception e) {
@@ -210,66 +266,28 @@ public class CompetitionData {
 
 	public CompetitionData importDataFromString(String serialized)
 	        throws JsonMappingException, JsonProcessingException {
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.registerModule(new JavaTimeModule());
+		ObjectMapper mapper = newMapper();
 		CompetitionData newData = mapper.readValue(serialized, CompetitionData.class);
 		// logger.debug("after unmarshall {}", newData.getPlatforms());
 		return newData;
 	}
 
+	/**
+	 * Replace the database with an export, compressed or not.
+	 *
+	 * The entities are persisted as they are read. Athletes and records are flushed every <code>jdbcBatchSize</code>
+	 * (default 50) so that the inserts go in JDBC batches, and are then detached; the persistence context only keeps
+	 * the platforms, groups, age groups and categories that the athletes refer to.
+	 *
+	 * @param inputStream an export, in the order written by {@link #writeData(OutputStream, Compression)}
+	 */
 	public void restore(InputStream inputStream) {
 		this.removeAll();
 		JPAService.runInTransaction(em -> {
 			try {
 				Athlete.setSkipValidationsDuringImport(true);
 				OwlcmsFactory.resetFOPByName();
-
-				CompetitionData updated = this.importData(inputStream);
-				Config config = updated.getConfig();
-				byte[] blob = config.getLocalZipBlob();
-				
-				if ( blob != null) {
-					logger.info("override zip found {} bytes", blob.length);
-				}
-				Config.setCurrent(config);
-				ResourceWalker.setInitializedLocalDir(false);
-				ResourceWalker.initLocalDir();
-
-				Locale defaultLocale = config.getDefaultLocale();
-				Translator.reset();
-				Translator.setForcedLocale(defaultLocale);
-
-				Competition competition = updated.getCompetition();
-
-				for (AgeGroup ag : updated.getAgeGroups()) {
-					em.persist(ag);
-				}
-
-				for (Athlete a : updated.getAthletes()) {
-					em.persist(a);
-				}
-
-				for (Group g : updated.getGroups()) {
-					em.merge(g);
-				}
-
-				if (updated.getRecords() != null) {
-					for (RecordEvent r : updated.getRecords()) {
-						em.merge(r);
-					}
-				}
-
-				if (updated.getPlatforms() != null) {
-					for (Platform p : updated.getPlatforms()) {
-						em.merge(p);
-					}
-				}
-
-				if (updated.getRecordConfig() != null) {
-						em.merge(updated.getRecordConfig());
-				}
-
-				em.merge(competition);
+				readData(em, inputStream);
 				em.flush();
 			} catch (Exception e) {
 				LoggerUtils.logError(logger, e);
@@ -281,6 +299,7 @@ public class CompetitionData {
 		});
 		Championship.reset();
 		CategoryRepository.resetCodeMap();
+		RecordIndex.getCurrent().invalidate();
 		// register the new FOPs for events and MQTT
 		OwlcmsFactory.initDefaultFOP();
 
@@ -338,6 +357,246 @@ public class CompetitionData {
 		this.records = records;
 	}
 
+	/**
+	 * Write the database one entity at a time. Athletes and records are read in pages of <code>exportPageSize</code>
+	 * (default 200), so that neither the entities nor the JSON text are all in memory.
+	 *
+	 * Everything is read in a single read-only transaction, at the repeatable read isolation level, so that the export
+	 * is a consistent snapshot even if the database changes while it is written.
+	 *
+	 * The content is that of a serialized {@link CompetitionData}, so uncompressed exports can still be read by
+	 * {@link #importDataFromString(String)} and by earlier versions.
+	 *
+	 * @param out         closed when done; left open if writing fails, so that the output is not completed as if the
+	 *                    export were whole
+	 * @param compression
+	 * @throws IOException
+	 */
+	public void writeData(OutputStream out, Compression compression) throws IOException {
+		ObjectMapper mapper = newMapper();
+		JsonGenerator generator = mapper.getFactory().createGenerator(compress(out, compression));
+		if (compression == Compression.NONE) {
+			generator.useDefaultPrettyPrinter();
+		}
+		try {
+			JPAService.runInTransaction(em -> {
+				Session session = em.unwrap(Session.class);
+				session.doWork(c -> c.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ));
+				session.setDefaultReadOnly(true);
+				session.setHibernateFlushMode(FlushMode.MANUAL);
+				// the second-level cache holds the latest values, not those of the snapshot
+				session.setCacheMode(CacheMode.IGNORE);
+				try {
+					generator.writeStartObject();
+					generator.writeObjectField("config", Config.getCurrent());
+					generator.writeObjectField("competition", Competition.getCurrent());
+					writeArray(generator, "platforms", PlatformRepository.doFindAll(em));
+					writeArray(generator, "groups", GroupRepository.doFindAll(em));
+					writeArray(generator, "ageGroups", AgeGroupRepository.doFindAll(em));
+					writeInPages(em, generator, "athletes", Athlete.class, Athlete::getId);
+					writeInPages(em, generator, "records", RecordEvent.class, RecordEvent::getId);
+					generator.writeObjectField("recordConfig", RecordConfig.getCurrent());
+					generator.writeEndObject();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return null;
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		generator.close();
+	}
+
+	private static OutputStream compress(OutputStream out, Compression compression) throws IOException {
+		switch (compression) {
+			case GZIP:
+				return new GZIPOutputStream(out, 64 * 1024);
+			case ZSTD:
+				return new ZstdCompressorOutputStream(out);
+			default:
+				return out;
+		}
+	}
+
+	private static InputStream decompress(InputStream in) throws IOException {
+		BufferedInputStream bin = new BufferedInputStream(in, 64 * 1024);
+		byte[] signature = new byte[4];
+		bin.mark(signature.length);
+		int n = bin.readNBytes(signature, 0, signature.length);
+		bin.reset();
+		if (n >= 2 && (signature[0] & 0xff) == 0x1f && (signature[1] & 0xff) == 0x8b) {
+			return new GZIPInputStream(bin, 64 * 1024);
+		}
+		if (ZstdUtils.matches(signature, n)) {
+			if (!ZstdUtils.isZstdCompressionAvailable()) {
+				throw new IOException("file is compressed with zstd, but the zstd-jni library is not available");
+			}
+			return new ZstdCompressorInputStream(bin);
+		}
+		return bin;
+	}
+
+	private static void flushBatch(EntityManager em, List<Object> batch) {
+		em.flush();
+		for (Object entity : batch) {
+			em.detach(entity);
+		}
+		batch.clear();
+	}
+
+	private static ObjectMapper newMapper() {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(new JavaTimeModule());
+		return mapper;
+	}
+
+	/**
+	 * Persist the elements of an array as they are read.
+	 *
+	 * @param batched flush and detach every {@link #BATCH_SIZE} elements, for the entities that nothing refers to
+	 */
+	private static <T> void readArray(JsonParser parser, DeserializationContext ctxt, EntityManager em,
+	        Class<T> entityClass, boolean batched) throws IOException {
+		if (parser.currentToken() != JsonToken.START_ARRAY) {
+			throw new IOException("expected a list of " + entityClass.getSimpleName());
+		}
+		List<Object> batch = new ArrayList<>();
+		int count = 0;
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			T entity = ctxt.readValue(parser, entityClass);
+			em.persist(entity);
+			count++;
+			if (batched) {
+				batch.add(entity);
+				if (batch.size() >= BATCH_SIZE) {
+					flushBatch(em, batch);
+				}
+			}
+		}
+		flushBatch(em, batch);
+		logger.info("restored {} {}", count, entityClass.getSimpleName());
+	}
+
+	private static void writeArray(JsonGenerator generator, String fieldName, List<?> values) throws IOException {
+		generator.writeArrayFieldStart(fieldName);
+		for (Object value : values) {
+			generator.writeObject(value);
+		}
+		generator.writeEndArray();
+	}
+
+	/**
+	 * Read the entities by increasing id, one page at a time; each page is detached once written.
+	 */
+	private static <T> void writeInPages(EntityManager em, JsonGenerator generator, String fieldName,
+	        Class<T> entityClass, Function<T, Long> idOf) throws IOException {
+		String query = "select e from " + entityClass.getSimpleName() + " e where e.id > :last order by e.id";
+		generator.writeArrayFieldStart(fieldName);
+		long last = Long.MIN_VALUE;
+		List<T> page;
+		do {
+			page = em.createQuery(query, entityClass).setParameter("last", last)
+			        .setMaxResults(PAGE_SIZE).getResultList();
+			for (T entity : page) {
+				generator.writeObject(entity);
+				last = idOf.apply(entity);
+			}
+			em.clear();
+		} while (page.size() == PAGE_SIZE);
+		generator.writeEndArray();
+	}
+
+	/**
+	 * The reading end of an export written by another thread. If the export fails, reading fails instead of reaching
+	 * the end of a truncated file.
+	 */
+	private static class ExportInputStream extends FilterInputStream {
+		private volatile Throwable failure;
+
+		ExportInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			return checked(super.read());
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return checked(super.read(b, off, len));
+		}
+
+		/**
+		 * Called by the writer; the pipe is closed so that a waiting reader wakes up.
+		 */
+		void fail(Throwable t, OutputStream out) {
+			this.failure = t;
+			try {
+				out.close();
+			} catch (IOException e) {
+				// the reader has gone
+			}
+		}
+
+		private int checked(int n) throws IOException {
+			if (this.failure != null) {
+				throw new IOException("export failed", this.failure);
+			}
+			return n;
+		}
+	}
+
+	private void readData(EntityManager em, InputStream inputStream) throws IOException {
+		ObjectMapper mapper = newMapper();
+		try (JsonParser parser = mapper.getFactory().createParser(decompress(inputStream))) {
+			// a single context for the whole file, so that athletes can refer to the groups and categories read
+			// before them
+			DeserializationContext ctxt = ((DefaultDeserializationContext) mapper.getDeserializationContext())
+			        .createInstance(mapper.getDeserializationConfig(), parser, mapper.getInjectableValues());
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("not a competition export");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				if (parser.nextToken() == JsonToken.VALUE_NULL) {
+					continue;
+				}
+				switch (field) {
+					case "config":
+						restoreConfig(ctxt.readValue(parser, Config.class));
+						break;
+					case "competition":
+						setCompetition(ctxt.readValue(parser, Competition.class));
+						em.merge(this.competition);
+						break;
+					case "platforms":
+						readArray(parser, ctxt, em, Platform.class, false);
+						break;
+					case "groups":
+						readArray(parser, ctxt, em, Group.class, false);
+						break;
+					case "ageGroups":
+						readArray(parser, ctxt, em, AgeGroup.class, false);
+						break;
+					case "athletes":
+						readArray(parser, ctxt, em, Athlete.class, true);
+						break;
+					case "records":
+						readArray(parser, ctxt, em, RecordEvent.class, true);
+						break;
+					case "recordConfig":
+						em.merge(ctxt.readValue(parser, RecordConfig.class));
+						break;
+					default:
+						parser.skipChildren();
+				}
+			}
+			ctxt.checkUnresolvedObjectId();
+		}
+	}
+
 	private void removeAll() {
 		JPAService.runInTransaction(em -> {
 			CompetitionRepository.doRemoveAll(em);
@@ -374,6 +633,20 @@ public class CompetitionData {
 		});
 	}
 
+	private void restoreConfig(Config config) {
+		byte[] blob = config.getLocalZipBlob();
+		if (blob != null) {
+			logger.info("override zip found {} bytes", blob.length);
+		}
+		setConfig(config);
+		ResourceWalker.setInitializedLocalDir(false);
+		ResourceWalker.initLocalDir();
+
+		Locale defaultLocale = config.getDefaultLocale();
+		Translator.reset();
+		Translator.setForcedLocale(defaultLocale);
+	}
+
 	/**
 	 * @param competition the competition to set
 	 */
@@ -12,6 +12,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
+import org.hibernate.jpa.QueryHints;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.athlete.Athlete;
@@ -77,7 +78,9 @@ public class GroupRepository {
 
 	@SuppressWarnings("unchecked")
 	public static List<Group> doFindAll(EntityManager em) {
-		return em.createQuery("select c from CompetitionGroup c order by c.name").getResultList();
+		return em.createQuery("select c from CompetitionGroup c order by c.name")
+		        .setHint(QueryHints.HINT_CACHEABLE, true)
+		        .getResultList();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -92,10 +95,8 @@ public class GroupRepository {
 	 *
 	 * @return the list
 	 */
-	@SuppressWarnings("unchecked")
 	public static List<Group> findAll() {
-		return JPAService.runInTransaction(
-		        em -> em.createQuery("select c from CompetitionGroup c order by c.name").getResultList());
+		return JPAService.runInTransaction(em -> doFindAll(em));
 	}
 
 	public static Group findByName(String name) {
@@ -117,11 +118,9 @@ public class GroupRepository {
 	 * @param em entity manager
 	 * @return the group, null if not found
 	 */
-	@SuppressWarnings("unchecked")
 	public static Group getById(Long id, EntityManager em) {
-		Query query = em.createQuery("select u from CompetitionGroup u where u.id=:id");
-		query.setParameter("id", id);
-		return (Group) query.getResultList().stream().findFirst().orElse(null);
+		// find goes through the second-level cache, a query would not
+		return id != null ? em.find(Group.class, id) : null;
 	}
 
 	/**
@@ -36,6 +36,8 @@ import ch.qos.logback.classic.Logger;
  */
 public class BenchmarkData {
 
+	/** 4 groups of 10 categories for each gender, one athlete per age group */
+	private static final int DEFAULT_NB_ATHLETES = 1120;
 	private static final double LENGTH_OF_WEIGHIN = 2.0;
 	private static final long LENGTH_OF_SESSION = 2;
 	private static Logger logger = (Logger) LoggerFactory.getLogger(BenchmarkData.class);
@@ -75,6 +77,18 @@ public class BenchmarkData {
 	 * @param championshipTypes
 	 */
 	public static void insertInitialData(EnumSet<ChampionshipType> championshipTypes) {
+		insertInitialData(championshipTypes, DEFAULT_NB_ATHLETES);
+	}
+
+	/**
+	 * Insert a competition of a given size if the database is empty.
+	 *
+	 * Sessions of 14 athletes are created as for the default benchmark, adding A-B-C-D... groups as needed.
+	 *
+	 * @param championshipTypes
+	 * @param nbAthletes        number of athletes to create
+	 */
+	public static void insertInitialData(EnumSet<ChampionshipType> championshipTypes, int nbAthletes) {
 		JPAService.runInTransaction(em -> {
 			Competition competition = createDefaultCompetition(championshipTypes);
 			CompetitionRepository.save(competition);
@@ -83,7 +97,7 @@ public class BenchmarkData {
 		});
 
 		JPAService.runInTransaction(em -> {
-			setupBenchmarkData(em, 4, 5);
+			setupBenchmarkData(em, 4, 5, nbAthletes);
 			return null;
 		});
 
@@ -231,12 +245,15 @@ public class BenchmarkData {
 	 * (target size of benchmark).
 	 *
 	 * @param sessionsPerDay
+	 * @param nbAthletes     stop once that many athletes have been created
 	 *
 	 */
-	private static void setupBenchmarkData(EntityManager em, int nbPlatforms, int sessionsPerDay) {
-		char lastGroup = 'D';
+	private static void setupBenchmarkData(EntityManager em, int nbPlatforms, int sessionsPerDay, int nbAthletes) {
+		int athletesPerGroupLetter = 2 * ageGroups[0].length * bwcats[0].length;
+		char lastGroup = (char) ('A' + Math.max(0, (nbAthletes - 1) / athletesPerGroupLetter));
 		LocalDateTime c = LocalDateTime.now();
-		nbAthletesPerGender = (lastGroup - 'A' + 1) * ageGroups[0].length * bwcats[0].length;
+		nbAthletesPerGender = Math.min(nbAthletes / 2, (lastGroup - 'A' + 1) * ageGroups[0].length * bwcats[0].length);
+		int nbCreated = 0;
 
 		LocalDateTime startOfCompetition = LocalDateTime.of(c.getYear(), c.getMonth(), c.getDayOfMonth(), 9, 00, 0);
 		c = startOfCompetition;
@@ -249,9 +266,9 @@ public class BenchmarkData {
 		int sessionCount = 0;
 		Random r = new Random(0);
 
-		for (char groupName = lastGroup; groupName >= 'A'; groupName--) {
-			for (int bwCatIndex = 0; bwCatIndex < 10; bwCatIndex++) {
-				for (int genderIndex = 0; genderIndex < 2; genderIndex++) {
+		for (char groupName = lastGroup; groupName >= 'A' && nbCreated < nbAthletes; groupName--) {
+			for (int bwCatIndex = 0; bwCatIndex < 10 && nbCreated < nbAthletes; bwCatIndex++) {
+				for (int genderIndex = 0; genderIndex < 2 && nbCreated < nbAthletes; genderIndex++) {
 					Gender g = Gender.values()[genderIndex];
 
 					int platformIndex = sessionCount % nbPlatforms;
@@ -278,18 +295,19 @@ public class BenchmarkData {
 					// group B is 50% JR and 50% SR
 					// group A is 75% SR and 25% JR
 					logger.info(sessionName);
-					for (int ageGroupIndex = 0; ageGroupIndex < ageGroups[genderIndex].length; ageGroupIndex++) {
+					for (int ageGroupIndex = 0; ageGroupIndex < ageGroups[genderIndex].length
+					        && nbCreated < nbAthletes; ageGroupIndex++) {
 						// add an athlete to the session
 						createAthlete(em, session, r, g, genderIndex, ageGroups[genderIndex][ageGroupIndex],
 						        bwcats[genderIndex][bwCatIndex]);
+						nbCreated++;
 						em.flush();
 					}
 
 				}
 			}
 		}
-		int nbSess = sessionCount + 1;
-		logger.info("sessions: " + nbSess + " athletes: " + nbSess * ageGroups[0].length);
+		logger.info("sessions: " + sessionCount + " athletes: " + nbCreated);
 
 		for (Platform p : platforms) {
 			em.persist(p);
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.data.jpa;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * A number that changes whenever an entity or a collection is written to the database. Whatever is computed from the
+ * database (for example a generated document) can be kept as long as the version has not changed.
+ *
+ * The version changes once the transaction that wrote has committed, never before: something computed from the rows
+ * as they were before the commit must not be kept under the new version. Writes made with bulk queries are not seen
+ * by Hibernate's listeners and must be reported with {@link #changedByQuery(EntityManager)}.
+ *
+ * @author Jean-François Lamy
+ */
+@SuppressWarnings("serial")
+public class DataVersion implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+        PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+	private static final DataVersion listener = new DataVersion();
+	private static volatile boolean listening = true;
+	private final static Logger logger = (Logger) LoggerFactory.getLogger(DataVersion.class);
+	private static final AtomicLong version = new AtomicLong();
+
+	/**
+	 * Report a write made with a bulk query (<code>executeUpdate</code>); the version changes when the transaction
+	 * commits.
+	 *
+	 * @param em the entity manager of the transaction
+	 */
+	public static void changedByQuery(EntityManager em) {
+		afterCommit(em.unwrap(SessionImplementor.class));
+	}
+
+	public static long get() {
+		return version.get();
+	}
+
+	/**
+	 * Listen to the writes made through a new factory.
+	 *
+	 * @param factory
+	 */
+	static void register(EntityManagerFactory factory) {
+		version.incrementAndGet();
+		try {
+			EventListenerRegistry registry = factory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+			        .getService(EventListenerRegistry.class);
+			registry.appendListeners(EventType.POST_INSERT, listener);
+			registry.appendListeners(EventType.POST_UPDATE, listener);
+			registry.appendListeners(EventType.POST_DELETE, listener);
+			registry.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+			registry.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+			registry.appendListeners(EventType.POST_COLLECTION_REMOVE, listener);
+		} catch (RuntimeException e) {
+			// without the listeners, documents are always regenerated
+			logger.error("cannot track database changes: {}", e.toString());
+			listening = false;
+		}
+	}
+
+	/**
+	 * @return false if the changes cannot be tracked, and nothing should be kept based on the version
+	 */
+	public static boolean isTracking() {
+		return listening;
+	}
+
+	private static void afterCommit(SessionImplementor session) {
+		session.getActionQueue().registerProcess((success, s) -> {
+			if (success) {
+				version.incrementAndGet();
+			}
+		});
+	}
+
+	private DataVersion() {
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		afterCommit(event.getSession());
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		afterCommit(event.getSession());
+	}
+
+	@Override
+	public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+		afterCommit(event.getSession());
+	}
+
+	@Override
+	public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+		afterCommit(event.getSession());
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		afterCommit(event.getSession());
+	}
+
+	@Override
+	public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+		afterCommit(event.getSession());
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+
+}
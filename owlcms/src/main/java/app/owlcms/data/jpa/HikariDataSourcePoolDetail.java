@@ -39,7 +39,26 @@ public class HikariDataSourcePoolDetail {
         }
     }
 
+    public int getIdle() {
+        try {
+            return getHikariPool().getIdleConnections();
+        } catch (Exception ex) {
+            return -1;
+        }
+    }
+
     public int getMax() {
         return dataSource.getMaximumPoolSize();
     }
+
+    /**
+     * @return number of threads waiting for a connection
+     */
+    public int getPending() {
+        try {
+            return getHikariPool().getThreadsAwaitingConnection();
+        } catch (Exception ex) {
+            return -1;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.data.jpa;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import org.hibernate.Session;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Check at startup that the secondary indexes declared on the entities (<code>@Table(indexes=...)</code>) exist.
+ *
+ * Hibernate creates them when it updates the schema, on H2 and PostgreSQL alike; they can still be missing if the
+ * schema is managed separately or if the creation failed. The queries work without them, but the ranking and session
+ * queries get slower as the number of participations grows, so missing ones are reported.
+ *
+ * @author Jean-François Lamy
+ */
+class IndexCheck {
+
+	private final static Logger logger = (Logger) LoggerFactory.getLogger(IndexCheck.class);
+
+	static void check(List<String> entityClassNames) {
+		try {
+			List<String> missing = JPAService.runInTransaction(
+			        em -> em.unwrap(Session.class).doReturningWork(c -> missingIndexes(c, entityClassNames)));
+			if (missing == null) {
+				return;
+			}
+			if (missing.isEmpty()) {
+				logger.info("database indexes present");
+			} else {
+				logger.warn("missing database indexes {}, queries will be slower on large competitions", missing);
+			}
+		} catch (Exception e) {
+			LoggerUtils.logError(logger, e);
+		}
+	}
+
+	/**
+	 * @param c                a connection
+	 * @param entityClassNames the entities to check
+	 * @return table.index for the declared indexes not found in the database
+	 * @throws SQLException
+	 */
+	static List<String> missingIndexes(Connection c, List<String> entityClassNames) throws SQLException {
+		DatabaseMetaData metaData = c.getMetaData();
+		List<String> missing = new ArrayList<>();
+		for (String className : entityClassNames) {
+			Class<?> entityClass;
+			try {
+				entityClass = Class.forName(className);
+			} catch (ClassNotFoundException e) {
+				continue;
+			}
+			Table table = entityClass.getAnnotation(Table.class);
+			if (table == null || table.indexes().length == 0) {
+				continue;
+			}
+			String tableName = tableName(entityClass, table);
+			Set<String> present = existingIndexes(metaData, tableName);
+			for (Index index : table.indexes()) {
+				if (!present.contains(index.name().toLowerCase(Locale.ROOT))) {
+					missing.add(tableName + "." + index.name());
+				}
+			}
+		}
+		return missing;
+	}
+
+	private static Set<String> existingIndexes(DatabaseMetaData metaData, String tableName) throws SQLException {
+		// unquoted identifiers are stored upper case by H2, lower case by PostgreSQL
+		String storedName = tableName;
+		if (metaData.storesUpperCaseIdentifiers()) {
+			storedName = tableName.toUpperCase(Locale.ROOT);
+		} else if (metaData.storesLowerCaseIdentifiers()) {
+			storedName = tableName.toLowerCase(Locale.ROOT);
+		}
+		Set<String> names = new TreeSet<>();
+		try (ResultSet rs = metaData.getIndexInfo(null, null, storedName, false, true)) {
+			while (rs.next()) {
+				String indexName = rs.getString("INDEX_NAME");
+				if (indexName != null) {
+					names.add(indexName.toLowerCase(Locale.ROOT));
+				}
+			}
+		}
+		return names;
+	}
+
+	private static String tableName(Class<?> entityClass, Table table) {
+		if (!table.name().isBlank()) {
+			return table.name();
+		}
+		Entity entity = entityClass.getAnnotation(Entity.class);
+		if (entity != null && !entity.name().isBlank()) {
+			return entity.name();
+		}
+		return entityClass.getSimpleName();
+	}
+
+}
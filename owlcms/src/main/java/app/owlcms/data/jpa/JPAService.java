@@ -6,6 +6,8 @@
  *******************************************************************************/
 package app.owlcms.data.jpa;
 
+import static org.hibernate.cfg.AvailableSettings.AUTO_EVICT_COLLECTION_CACHE;
+import static org.hibernate.cfg.AvailableSettings.BATCH_VERSIONED_DATA;
 import static org.hibernate.cfg.AvailableSettings.CACHE_REGION_FACTORY;
 import static org.hibernate.cfg.AvailableSettings.DIALECT;
 import static org.hibernate.cfg.AvailableSettings.GENERATE_STATISTICS;
@@ -14,6 +16,8 @@ import static org.hibernate.cfg.AvailableSettings.JPA_JDBC_DRIVER;
 import static org.hibernate.cfg.AvailableSettings.JPA_JDBC_PASSWORD;
 import static org.hibernate.cfg.AvailableSettings.JPA_JDBC_URL;
 import static org.hibernate.cfg.AvailableSettings.JPA_JDBC_USER;
+import static org.hibernate.cfg.AvailableSettings.ORDER_INSERTS;
+import static org.hibernate.cfg.AvailableSettings.ORDER_UPDATES;
 import static org.hibernate.cfg.AvailableSettings.QUERY_STARTUP_CHECKING;
 import static org.hibernate.cfg.AvailableSettings.SHOW_SQL;
 import static org.hibernate.cfg.AvailableSettings.STATEMENT_BATCH_SIZE;
@@ -27,6 +31,7 @@ import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.Properties;
 import java.util.function.Function;
 
@@ -41,12 +46,14 @@ import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
 import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
 import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
 import org.hibernate.jpa.boot.internal.PersistenceUnitInfoDescriptor;
+import org.hibernate.stat.Statistics;
 import org.postgresql.util.PSQLException;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
 
 import app.owlcms.Main;
 import app.owlcms.data.agegroup.AgeGroup;
@@ -124,6 +131,9 @@ public class JPAService {
 				hibernateLogger.setLevel(prevHibernateLevel);
 			}
 			setFactory(factory2);
+			DataVersion.register(factory2);
+			TransactionStatistics.init();
+			IndexCheck.check(entityClassNames());
 		}
 	}
 
@@ -206,7 +216,8 @@ public class JPAService {
 		}
 	}
 
-	static Map<EntityManager, String> whereFrom = new HashMap<>();
+	/** call sites of the open entity managers, only kept when tracing leaks */
+	static Map<EntityManager, String> whereFrom = new ConcurrentHashMap<>();
 
 	/**
 	 * Run in transaction.
@@ -217,13 +228,15 @@ public class JPAService {
 	 */
 	public static <T> T runInTransaction(Function<EntityManager, T> function) {
 		EntityManager entityManager = null;
-		String whereFromString = LoggerUtils.whereFrom();
+		long start = TransactionStatistics.start();
 		try {
 			if (getFactory() == null) {
 				logger.debug("JPAService {}", LoggerUtils./**/stackTrace());
 			}
 			entityManager = getFactory().createEntityManager();
-			whereFrom.put(entityManager, whereFromString);
+			if (logger.isTraceEnabled()) {
+				whereFrom.put(entityManager, LoggerUtils.whereFrom());
+			}
 			entityManager.getTransaction().begin();
 			T result = function.apply(entityManager);
 			entityManager.getTransaction().commit();
@@ -244,8 +257,8 @@ public class JPAService {
 				entityManager.close();
 				whereFrom.remove(entityManager);
 			}
+			TransactionStatistics.end(start);
 			traceLeak();
-
 		}
 	}
 
@@ -258,13 +271,15 @@ public class JPAService {
 	 */
 	public static List<Object[]> runInTransactionMultipleResults(Function<EntityManager, List<Object[]>> function) {
 		EntityManager entityManager = null;
-		String whereFromString = LoggerUtils.whereFrom();
+		long start = TransactionStatistics.start();
 		try {
 			if (getFactory() == null) {
 				logger.debug("JPAService {}", LoggerUtils./**/stackTrace());
 			}
 			entityManager = getFactory().createEntityManager();
-			whereFrom.put(entityManager, whereFromString);
+			if (logger.isTraceEnabled()) {
+				whereFrom.put(entityManager, LoggerUtils.whereFrom());
+			}
 			entityManager.getTransaction().begin();
 
 			List<Object[]> result = function.apply(entityManager);
@@ -279,6 +294,7 @@ public class JPAService {
 				entityManager.close();
 				whereFrom.remove(entityManager);
 			}
+			TransactionStatistics.end(start);
 			traceLeak();
 		}
 	}
@@ -361,12 +377,33 @@ public class JPAService {
 		return factory;
 	}
 
+	/**
+	 * Empty the second-level cache and the query cache. Needed only when the database is changed behind Hibernate's
+	 * back; merges, removes and bulk queries keep the cache consistent.
+	 */
+	public static void evictCaches() {
+		if (factory != null) {
+			factory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+		}
+	}
+
+	/**
+	 * @return Hibernate statistics (cache hits and misses), null if the database is not open
+	 */
+	public static Statistics getHibernateStatistics() {
+		return factory != null ? factory.unwrap(SessionFactory.class).getStatistics() : null;
+	}
+
+	/**
+	 * @return details of the connection pool, null if the database is not open
+	 */
+	public static HikariDataSourcePoolDetail getPoolDetail() {
+		HikariDataSource dataSource = getDataSource();
+		return dataSource != null ? new HikariDataSourcePoolDetail(dataSource) : null;
+	}
+
 	public static int getPoolStatistics() {
-		SessionFactory sessionFactory = factory.unwrap(SessionFactory.class);
-		ConnectionProvider connectionProvider = sessionFactory.getSessionFactoryOptions().getServiceRegistry()
-		        .getService(ConnectionProvider.class);
-		HikariDataSource dataSource = connectionProvider.unwrap(HikariDataSource.class);
-		HikariDataSourcePoolDetail dsd = new HikariDataSourcePoolDetail(dataSource);
+		HikariDataSourcePoolDetail dsd = new HikariDataSourcePoolDetail(getDataSource());
 		int active = dsd.getActive();
 		if (logger.isTraceEnabled()) {
 			logger.trace("HikariDataSource details: max={} active={}", dsd.getMax(), active);
@@ -374,6 +411,31 @@ public class JPAService {
 		return active;
 	}
 
+	/**
+	 * Track the connection pool (can only be done once per pool).
+	 *
+	 * @param metricsTrackerFactory
+	 * @return false if the database is not open
+	 */
+	static boolean setPoolMetricsTrackerFactory(MetricsTrackerFactory metricsTrackerFactory) {
+		HikariDataSource dataSource = getDataSource();
+		if (dataSource == null) {
+			return false;
+		}
+		dataSource.setMetricsTrackerFactory(metricsTrackerFactory);
+		return true;
+	}
+
+	private static HikariDataSource getDataSource() {
+		if (factory == null) {
+			return null;
+		}
+		SessionFactory sessionFactory = factory.unwrap(SessionFactory.class);
+		ConnectionProvider connectionProvider = sessionFactory.getSessionFactoryOptions().getServiceRegistry()
+		        .getService(ConnectionProvider.class);
+		return connectionProvider.unwrap(HikariDataSource.class);
+	}
+
 	private static Properties h2FileProperties(String schemaGeneration, String dbUrl, String userName,
 	        String password) {
 		setLocalDb(true);
@@ -434,12 +496,20 @@ public class JPAService {
 		ImmutableMap<String, Object> vals = new ImmutableMap.Builder<String, Object>()
 		        .put(HBM2DDL_AUTO, "update")
 		        .put(SHOW_SQL, false)
-		        .put(QUERY_STARTUP_CHECKING, false).put(GENERATE_STATISTICS, false)
-		        .put(USE_REFLECTION_OPTIMIZER, false).put(USE_SECOND_LEVEL_CACHE, true).put(USE_QUERY_CACHE, false)
-		        .put(USE_STRUCTURED_CACHE, false).put(STATEMENT_BATCH_SIZE, 20)
+		        .put(QUERY_STARTUP_CHECKING, false).put(GENERATE_STATISTICS, TransactionStatistics.isEnabled())
+		        .put(USE_REFLECTION_OPTIMIZER, false).put(USE_SECOND_LEVEL_CACHE, true).put(USE_QUERY_CACHE, true)
+		        .put(USE_STRUCTURED_CACHE, false)
+		        // group the inserts and updates by entity so that the rank updates after a decision go in a few
+		        // JDBC batches instead of one statement per athlete
+		        .put(STATEMENT_BATCH_SIZE, StartupUtils.getIntegerParam("jdbcBatchSize", 50))
+		        .put(ORDER_INSERTS, true).put(ORDER_UPDATES, true).put(BATCH_VERSIONED_DATA, true)
 		        .put(CACHE_REGION_FACTORY, "org.hibernate.cache.jcache.JCacheRegionFactory")
 		        .put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider")
 		        .put("hibernate.javax.cache.missing_cache_strategy", "create")
+		        // region sizes
+		        .put("hibernate.javax.cache.uri", "ehcache.xml")
+		        // participations changed from their side also evict the cached collection of their athlete
+		        .put(AUTO_EVICT_COLLECTION_CACHE, true)
 		        .put("javax.persistence.sharedCache.mode", "ALL").put("hibernate.c3p0.min_size", 5)
 		        .put("hibernate.enable_lazy_load_no_trans", true)
 		        // .put("hibernate.c3p0.max_size", 20).put("hibernate.c3p0.acquire_increment", 5)
@@ -529,6 +599,8 @@ public class JPAService {
 		}
 
 		props.put(JPA_JDBC_DRIVER, org.postgresql.Driver.class.getName());
+		// send a batch of inserts as a single multi-row statement
+		props.put("hibernate.hikari.dataSource.reWriteBatchedInserts", "true");
 		props.put(DIALECT, org.hibernate.dialect.PostgreSQL95Dialect.class.getName());
 		props.put("javax.persistence.schema-generation.database.action", schemaGeneration);
 
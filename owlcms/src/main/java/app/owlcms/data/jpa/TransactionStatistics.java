@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.data.jpa;
+
+import java.lang.StackWalker.StackFrame;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+
+import app.owlcms.apputils.LatencyHistogram;
+import app.owlcms.utils.StartupUtils;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+/**
+ * Counters and latency histograms for the transactions run through {@link JPAService}, by call site, and waiting
+ * times for a connection from the Hikari pool.
+ *
+ * Off by default; enabled with the <code>transactionStatistics</code> parameter (OWLCMS_TRANSACTIONSTATISTICS
+ * environment variable or -DtransactionStatistics=true) or at run time from the
+ * {@link app.owlcms.endpoints.TransactionStatisticsServlet} endpoint. When off, a transaction only reads the clock
+ * twice for the slow transaction check. The call site is the first caller outside the data package (the screen or
+ * the field of play), followed by the repository method that ran the transaction; the stack is only walked when the
+ * statistics are on, or for slow transactions when requested.
+ *
+ * When on, the Hibernate statistics are also turned on, and the hits and misses of the second-level cache regions
+ * are reported.
+ *
+ * Transactions slower than <code>slowTransactionMillis</code> (default 2000, 0 to disable) are logged as warnings,
+ * with their call site if <code>slowTransactionCallSite</code> is true.
+ *
+ * @author Jean-François Lamy
+ */
+public class TransactionStatistics {
+
+	private static final Map<String, LatencyHistogram> callSites = new ConcurrentHashMap<>();
+	private static final boolean captureSlowCallSite = StartupUtils.getBooleanParam("slowTransactionCallSite");
+	private static volatile boolean enabled = StartupUtils.getBooleanParam("transactionStatistics");
+	private final static Logger logger = (Logger) LoggerFactory.getLogger(TransactionStatistics.class);
+	private static volatile LatencyHistogram poolWaits = new LatencyHistogram();
+	private static final LongAdder poolTimeouts = new LongAdder();
+	private static boolean poolTrackerInstalled = false;
+	private static final long slowNanos = TimeUnit.MILLISECONDS
+	        .toNanos(StartupUtils.getIntegerParam("slowTransactionMillis", 2000));
+	private static final StackWalker walker = StackWalker.getInstance();
+
+	/**
+	 * @return true if transactions are counted
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void reset() {
+		callSites.clear();
+		poolWaits = new LatencyHistogram();
+		poolTimeouts.reset();
+		Statistics hibernateStatistics = JPAService.getHibernateStatistics();
+		if (hibernateStatistics != null) {
+			hibernateStatistics.clear();
+		}
+	}
+
+	/**
+	 * Turn the statistics on or off. The pool listener is installed the first time; it then stays, but records
+	 * nothing while the statistics are off.
+	 *
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		TransactionStatistics.enabled = enabled;
+		if (enabled) {
+			installPoolTracker();
+		}
+		Statistics hibernateStatistics = JPAService.getHibernateStatistics();
+		if (hibernateStatistics != null) {
+			hibernateStatistics.setStatisticsEnabled(enabled);
+		}
+		logger.info("transaction statistics {}", enabled ? "enabled" : "disabled");
+	}
+
+	/**
+	 * @return the call sites sorted by decreasing total time, with the state of the connection pool
+	 */
+	public static JsonObject toJson() {
+		JsonObject json = Json.createObject();
+		json.put("enabled", enabled);
+		json.put("slowTransactionMillis", TimeUnit.NANOSECONDS.toMillis(slowNanos));
+
+		List<Map.Entry<String, LatencyHistogram>> sorted = new ArrayList<>(callSites.entrySet());
+		sorted.sort(Comparator.comparingLong((Map.Entry<String, LatencyHistogram> e) -> e.getValue().getTotalNanos())
+		        .reversed());
+		JsonArray sites = Json.createArray();
+		int i = 0;
+		for (Map.Entry<String, LatencyHistogram> e : sorted) {
+			JsonObject site = e.getValue().toJson();
+			site.put("callSite", e.getKey());
+			sites.set(i++, site);
+		}
+		json.put("transactions", sites);
+
+		JsonObject pool = Json.createObject();
+		HikariDataSourcePoolDetail detail = JPAService.getPoolDetail();
+		if (detail != null) {
+			pool.put("active", detail.getActive());
+			pool.put("idle", detail.getIdle());
+			pool.put("pending", detail.getPending());
+			pool.put("max", detail.getMax());
+		}
+		pool.put("timeouts", poolTimeouts.sum());
+		pool.put("wait", poolWaits.toJson());
+		json.put("pool", pool);
+
+		Statistics hibernateStatistics = JPAService.getHibernateStatistics();
+		if (hibernateStatistics != null && hibernateStatistics.isStatisticsEnabled()) {
+			json.put("cache", cacheJson(hibernateStatistics));
+		}
+		return json;
+	}
+
+	/**
+	 * Called when the database is opened, the pool is new.
+	 */
+	static synchronized void init() {
+		poolTrackerInstalled = false;
+		if (enabled) {
+			installPoolTracker();
+		}
+	}
+
+	/**
+	 * @return a start time for {@link #end(long)}, 0 when nothing will be recorded
+	 */
+	static long start() {
+		return enabled || slowNanos > 0 ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Record a transaction started at startNanos.
+	 *
+	 * @param startNanos value returned by {@link #start()}
+	 */
+	static void end(long startNanos) {
+		if (startNanos == 0L) {
+			return;
+		}
+		long elapsed = System.nanoTime() - startNanos;
+		boolean slow = slowNanos > 0 && elapsed >= slowNanos;
+		if (!enabled && !slow) {
+			return;
+		}
+		String callSite = enabled || captureSlowCallSite ? callSite() : null;
+		if (enabled) {
+			callSites.computeIfAbsent(callSite, (k) -> new LatencyHistogram()).record(elapsed);
+		}
+		if (slow) {
+			logger.warn("slow transaction {}ms {}", TimeUnit.NANOSECONDS.toMillis(elapsed),
+			        callSite != null ? callSite : "");
+		}
+	}
+
+	private static JsonObject cacheJson(Statistics hibernateStatistics) {
+		JsonObject cache = Json.createObject();
+		cache.put("hits", hibernateStatistics.getSecondLevelCacheHitCount());
+		cache.put("misses", hibernateStatistics.getSecondLevelCacheMissCount());
+		cache.put("puts", hibernateStatistics.getSecondLevelCachePutCount());
+		cache.put("queryHits", hibernateStatistics.getQueryCacheHitCount());
+		cache.put("queryMisses", hibernateStatistics.getQueryCacheMissCount());
+		JsonObject regions = Json.createObject();
+		for (String regionName : hibernateStatistics.getSecondLevelCacheRegionNames()) {
+			CacheRegionStatistics rs = hibernateStatistics.getCacheRegionStatistics(regionName);
+			if (rs == null) {
+				continue;
+			}
+			JsonObject region = Json.createObject();
+			region.put("hits", rs.getHitCount());
+			region.put("misses", rs.getMissCount());
+			region.put("puts", rs.getPutCount());
+			region.put("entries", rs.getElementCountInMemory());
+			regions.put(regionName, region);
+		}
+		cache.put("regions", regions);
+		return cache;
+	}
+
+	private static String callSite() {
+		return walker.walk(frames -> {
+			List<StackFrame> callers = frames
+			        .dropWhile(f -> f.getClassName().startsWith(JPAService.class.getName())
+			                || f.getClassName().equals(TransactionStatistics.class.getName()))
+			        .limit(30)
+			        .toList();
+			if (callers.isEmpty()) {
+				return "?";
+			}
+			StackFrame direct = callers.get(0);
+			Optional<StackFrame> origin = callers.stream()
+			        .filter(f -> !f.getClassName().startsWith("app.owlcms.data."))
+			        .findFirst();
+			if (origin.isEmpty() || origin.get() == direct) {
+				return frameName(direct);
+			}
+			return frameName(origin.get()) + " > " + frameName(direct);
+		});
+	}
+
+	private static String frameName(StackFrame f) {
+		String className = f.getClassName();
+		return className.substring(className.lastIndexOf('.') + 1) + "." + f.getMethodName() + ":"
+		        + f.getLineNumber();
+	}
+
+	private static synchronized void installPoolTracker() {
+		if (poolTrackerInstalled) {
+			return;
+		}
+		MetricsTrackerFactory factory = (poolName, poolStats) -> new IMetricsTracker() {
+			@Override
+			public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+				if (enabled) {
+					poolWaits.record(elapsedAcquiredNanos);
+				}
+			}
+
+			@Override
+			public void recordConnectionTimeout() {
+				if (enabled) {
+					poolTimeouts.increment();
+				}
+			}
+		};
+		try {
+			poolTrackerInstalled = JPAService.setPoolMetricsTrackerFactory(factory);
+		} catch (IllegalStateException e) {
+			// another tracker was set, we do without pool waits
+			logger.warn("cannot track connection pool: {}", e.getMessage());
+			poolTrackerInstalled = true;
+		}
+	}
+
+}
@@ -137,15 +137,18 @@ public class PlatformRepository {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	public static List<Platform> doFindAll(EntityManager em) {
+		return em.createQuery("select c from Platform c order by c.id").getResultList();
+	}
+
 	/**
 	 * Find all.
 	 *
 	 * @return the list
 	 */
-	@SuppressWarnings("unchecked")
 	public static List<Platform> findAll() {
-		return JPAService
-		        .runInTransaction(em -> em.createQuery("select c from Platform c order by c.id").getResultList());
+		return JPAService.runInTransaction(em -> doFindAll(em));
 	}
 
 	/**
@@ -63,7 +63,7 @@ public class RecordDefinitionReader {
 		DateTimeFormatter ymFormatter = DateTimeFormatter.ofPattern("yyyy-MM");
 		DateTimeFormatter yFormatter = DateTimeFormatter.ofPattern("yyyy");
 
-		return JPAService.runInTransaction(em -> {
+		List<String> result = JPAService.runInTransaction(em -> {
 			int iRecord = 0;
 			List<String> errors = new ArrayList<>();
 
@@ -336,6 +336,8 @@ public class RecordDefinitionReader {
 			errors.add(Translator.translate("Records.Inserted", iRecord));
 			return errors;
 		});
+		RecordIndex.getCurrent().invalidate();
+		return result;
 	}
 
 	public static void loadRecords() {
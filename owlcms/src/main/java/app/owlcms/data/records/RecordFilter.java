@@ -4,10 +4,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
@@ -227,24 +225,12 @@ public class RecordFilter {
 	}
 
 	public static List<RecordEvent> computeDisplayableRecordsForAthlete(Athlete curAthlete) {
-		List<RecordEvent> records = RecordRepository.findFiltered(curAthlete.getGender(), curAthlete.getAge(),
-		        curAthlete.getBodyWeight(), null, null);
-		logger.debug("initial records fetched {} {} {} {}", curAthlete.getGender(), curAthlete.getAge(),
+		// the index only keeps the largest record for each kind of record (federation taken into account)
+		List<RecordEvent> records = RecordIndex.getCurrent().findDisplayable(curAthlete.getGender(),
+		        curAthlete.getAge(), curAthlete.getBodyWeight());
+		logger.debug("records found {} {} {} {}", curAthlete.getGender(), curAthlete.getAge(),
 		        curAthlete.getBodyWeight(), records);
-
-		// remove duplicates for each kind of record, keep largest.
-		// Beware: must take federation into account.
-		Map<String, RecordEvent> cleanMap = new HashMap<>();
-		for (RecordEvent r : records) {
-			RecordEvent curMax = cleanMap.get(r.getKey());
-			if (curMax == null || r.getRecordValue() > curMax.getRecordValue()) {
-				logger.debug("updating {} {}", r.getKey(), r.getRecordValue());
-				cleanMap.put(r.getKey(), r);
-			} else {
-				logger.debug("DISCARDING {} {}", r.getKey(), r.getRecordValue());
-			}
-		}
-		return new ArrayList<>(cleanMap.values());
+		return records;
 	}
 
 	public static List<RecordEvent> computeEligibleRecordsForAthlete(Athlete curAthlete) {
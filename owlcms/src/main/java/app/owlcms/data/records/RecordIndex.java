@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.data.records;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Gender;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * In-memory index of the records, by gender, age group band and body weight band.
+ *
+ * The records are read once, and each lookup is then a walk over the few distinct age and body weight bands instead
+ * of a query. Only the largest record for each kind of record is kept (see {@link RecordEvent#getKey()}), which is
+ * what {@link RecordFilter#computeDisplayableRecordsForAthlete} retains anyway.
+ *
+ * Any change to the records (loading definition files, new records, clearing) must call {@link #invalidate()}; the
+ * index is rebuilt on the next lookup.
+ *
+ * @author Jean-François Lamy
+ */
+public class RecordIndex {
+
+	private record Band(int lower, Integer upper) {
+	}
+
+	private static final RecordIndex current = new RecordIndex();
+	private final static Logger logger = (Logger) LoggerFactory.getLogger(RecordIndex.class);
+
+	public static RecordIndex getCurrent() {
+		return current;
+	}
+
+	/** gender, then age band, then body weight band; null when the records must be read again */
+	private Map<Gender, Map<Band, Map<Band, List<RecordEvent>>>> index;
+
+	private RecordIndex() {
+	}
+
+	/**
+	 * Same selection as {@link RecordRepository#findFiltered(Gender, Integer, Double, String, Boolean)} without
+	 * group, keeping only the largest record of each kind. A null argument does not filter.
+	 *
+	 * @param gender
+	 * @param age
+	 * @param bw
+	 * @return the records displayable for an athlete with these characteristics
+	 */
+	public synchronized List<RecordEvent> findDisplayable(Gender gender, Integer age, Double bw) {
+		if (this.index == null) {
+			build(RecordRepository.findAll());
+		}
+		List<RecordEvent> found = new ArrayList<>();
+		for (Entry<Gender, Map<Band, Map<Band, List<RecordEvent>>>> g : this.index.entrySet()) {
+			if (gender != null && gender != g.getKey()) {
+				continue;
+			}
+			for (Entry<Band, Map<Band, List<RecordEvent>>> a : g.getValue().entrySet()) {
+				Band ageBand = a.getKey();
+				if (age != null && (ageBand.lower() > age || ageBand.upper() < age)) {
+					continue;
+				}
+				for (Entry<Band, List<RecordEvent>> w : a.getValue().entrySet()) {
+					Band bwBand = w.getKey();
+					if (bw != null && (bwBand.lower() * 1.0 >= bw || bwBand.upper() == null
+					        || bwBand.upper() * 1.0 < bw)) {
+						continue;
+					}
+					found.addAll(w.getValue());
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Read the records again before the next lookup.
+	 */
+	public synchronized void invalidate() {
+		this.index = null;
+	}
+
+	private void build(List<RecordEvent> records) {
+		// keep the largest record for each kind, as done for an individual athlete
+		Map<String, RecordEvent> largest = new LinkedHashMap<>();
+		for (RecordEvent r : records) {
+			RecordEvent curMax = largest.get(r.getKey());
+			if (curMax == null || (r.getRecordValue() != null
+			        && (curMax.getRecordValue() == null || r.getRecordValue() > curMax.getRecordValue()))) {
+				largest.put(r.getKey(), r);
+			}
+		}
+
+		Map<Gender, Map<Band, Map<Band, List<RecordEvent>>>> newIndex = new HashMap<>();
+		for (RecordEvent r : largest.values()) {
+			newIndex.computeIfAbsent(r.getGender(), g -> new LinkedHashMap<>())
+			        .computeIfAbsent(new Band(r.getAgeGrpLower(), r.getAgeGrpUpper()), a -> new LinkedHashMap<>())
+			        .computeIfAbsent(new Band(r.getBwCatLower(), r.getBwCatUpper()), w -> new ArrayList<>())
+			        .add(r);
+		}
+		this.index = newIndex;
+		logger.debug("indexed {} records out of {}", largest.size(), records.size());
+	}
+
+}
@@ -18,6 +18,7 @@ import javax.persistence.Query;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.jpa.DataVersion;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.ResourceWalker;
@@ -43,8 +44,10 @@ public class RecordRepository {
 			q.setParameter("rn", re.getRecordName());
 			q.setParameter("ag", re.getAgeGrp());
 			q.executeUpdate();
+			DataVersion.changedByQuery(em);
 			return null;
 		});
+		RecordIndex.getCurrent().invalidate();
 	}
 
 	/**
@@ -56,6 +59,7 @@ public class RecordRepository {
 				// do not delete records set in the current competition.
 				int deletedCount = em.createQuery("DELETE FROM RecordEvent rec WHERE rec.groupNameString IS NULL")
 				        .executeUpdate();
+				DataVersion.changedByQuery(em);
 				if (deletedCount > 0) {
 					logger.info("deleted {} record entries", deletedCount);
 				}
@@ -64,6 +68,7 @@ public class RecordRepository {
 			}
 			return null;
 		});
+		RecordIndex.getCurrent().invalidate();
 	}
 
 	/**
@@ -75,6 +80,7 @@ public class RecordRepository {
 				// do not delete records set in the current competition.
 				int deletedCount = em.createQuery("DELETE FROM RecordEvent rec WHERE rec.groupNameString IS NOT NULL")
 				        .executeUpdate();
+				DataVersion.changedByQuery(em);
 				if (deletedCount >= 0) {
 					logger.info("deleted {} provisional record entries", deletedCount);
 				}
@@ -83,6 +89,7 @@ public class RecordRepository {
 			}
 			return null;
 		});
+		RecordIndex.getCurrent().invalidate();
 	}
 
 	// public static JsonValue computeRecords(Gender gender, Integer age, Double bw, Integer snatchRequest,
@@ -100,6 +107,7 @@ public class RecordRepository {
 				// do not delete records set in the current competition.
 				int deletedCount = em.createQuery("DELETE FROM RecordEvent rec WHERE rec.groupNameString IS NULL")
 				        .executeUpdate();
+				DataVersion.changedByQuery(em);
 				if (deletedCount >= 0) {
 					logger.info("deleted {} official record entries", deletedCount);
 				}
@@ -108,6 +116,7 @@ public class RecordRepository {
 			}
 			return null;
 		});
+		RecordIndex.getCurrent().invalidate();
 	}
 
 	public static void clearRecordsOriginallyFromFile(String fileName) {
@@ -117,8 +126,10 @@ public class RecordRepository {
 			        + "AND a.groupNameString IS NULL");
 			q.setParameter("fn", fileName);
 			q.executeUpdate();
+			DataVersion.changedByQuery(em);
 			return null;
 		});
+		RecordIndex.getCurrent().invalidate();
 	}
 
 	/**
@@ -141,6 +152,7 @@ public class RecordRepository {
 			}
 			return null;
 		});
+		RecordIndex.getCurrent().invalidate();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -236,6 +248,7 @@ public class RecordRepository {
 		clearLoadedRecords();
 		InputStream is = ResourceWalker.getResourceAsStream(localizedFileName);
 		RecordDefinitionReader.readZip(is);
+		RecordIndex.getCurrent().invalidate();
 	}
 
 	/**
@@ -256,6 +269,7 @@ public class RecordRepository {
 			}
 			return null;
 		});
+		RecordIndex.getCurrent().invalidate();
 
 		return nRecord;
 	}
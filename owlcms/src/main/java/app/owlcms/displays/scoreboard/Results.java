@@ -584,6 +584,7 @@ public class Results extends LitTemplate
 
 	protected void computeLeaders(boolean done) {
 		OwlcmsSession.withFop(fop -> {
+			long version = fop.getModelVersion();
 			Athlete curAthlete = fop.getCurAthlete();
 			if (curAthlete != null && curAthlete.getGender() != null) {
 				this.getElement().setProperty("categoryName", curAthlete.getCategory().getDisplayName());
@@ -601,7 +602,8 @@ public class Results extends LitTemplate
 				        && this.displayOrder.size() > 0) {
 					// null as second argument because we do not highlight current athletes in the
 					// leaderboard
-					this.getElement().setPropertyJson("leaders", getAthletesJson(this.displayOrder, null, fop));
+					this.getElement().setPropertyJson("leaders",
+					        getSharedAthletesJson("leaders", this.displayOrder, null, fop, version));
 					this.getElement().setProperty("leaderLines", this.displayOrder.size() + 2); // spacer + title
 				} else {
 					// nothing to show
@@ -951,6 +953,17 @@ public class Results extends LitTemplate
 		return "";
 	}
 
+	/**
+	 * Scoreboards with the same key show the same athlete lists for a given state of the field of play and share them.
+	 * Subclasses whose lists depend on other settings must add them to the key.
+	 *
+	 * @return the display options that change the content of the athlete lists
+	 */
+	protected String getModelKey() {
+		return getClass().getName() + "/" + isAbbreviatedName() + "/" + this.teamFlags + "/" + isPublicDisplay() + "/"
+		        + Translator.getLocaleSupplier().get();
+	}
+
 	protected List<Athlete> getOrder(FieldOfPlay fop) {
 		return fop.getDisplayOrder();
 	}
@@ -1039,6 +1052,7 @@ public class Results extends LitTemplate
 	}
 
 	protected void updateDisplay(String liftType, FieldOfPlay fop) {
+		long version = fop.getModelVersion();
 		this.curGroup = fop.getGroup();
 		this.displayOrder = getOrder(fop);
 		spotlightRecords(fop);
@@ -1049,7 +1063,7 @@ public class Results extends LitTemplate
 		updateGroupInfo(liftType);
 		this.getElement().setPropertyJson("ageGroups", getAgeGroupNamesJson(fop.getAgeGroupMap()));
 		this.getElement().setPropertyJson("athletes",
-		        getAthletesJson(this.displayOrder, fop.getLiftingOrder(), fop));
+		        getSharedAthletesJson("athletes", this.displayOrder, fop.getLiftingOrder(), fop, version));
 
 		List<Athlete> order = getOrder(fop);
 		int resultLines = (order != null ? order.size() : 0) + countSubsets(order);
@@ -1231,6 +1245,30 @@ public class Results extends LitTemplate
 		this.getElement().setProperty("teamWidthClass", (wide ? "wideTeams" : "narrowTeams"));
 	}
 
+	/**
+	 * Get the athlete list computed by another scoreboard showing the same list with the same options, or compute it.
+	 *
+	 * @param kind      which list
+	 * @param order     athletes to show
+	 * @param liftOrder lifting order, used to highlight the current and next athletes
+	 * @param fop
+	 * @param version   model version of the field of play, read before the order was computed
+	 * @return the shared athlete list
+	 */
+	private JsonValue getSharedAthletesJson(String kind, List<Athlete> order, List<Athlete> liftOrder,
+	        FieldOfPlay fop, long version) {
+		ScoreboardModelCache.Model model = ScoreboardModelCache.get(fop, version, kind + "/" + getModelKey(), () -> {
+			JsonValue json = getAthletesJson(order, liftOrder, fop);
+			boolean wide = order != null && order.stream()
+			        .anyMatch(a -> a.getTeam() != null && a.getTeam().trim().length() > Competition.SHORT_TEAM_LENGTH);
+			return new ScoreboardModelCache.Model(json, wide);
+		});
+		if (model.wideTeamNames()) {
+			setWideTeamNames(true);
+		}
+		return model.json();
+	}
+
 	private boolean showCurrent(FieldOfPlay fop) {
 		if (isPublicDisplay() && fop.getState() == FOPState.BREAK && fop.getCeremonyType() != null) {
 			return false;
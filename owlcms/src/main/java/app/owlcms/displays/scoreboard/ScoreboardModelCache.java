@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.displays.scoreboard;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import app.owlcms.fieldofplay.FieldOfPlay;
+import elemental.json.JsonValue;
+
+/**
+ * Athlete lists shared by all the scoreboards of a field of play.
+ *
+ * The JSON for the athletes and the leaders only depends on the state of the field of play and on a few display
+ * options. It is computed by the first scoreboard that needs it after a change (see
+ * {@link FieldOfPlay#getModelVersion()}), and the other scoreboards with the same options reuse it as is. The values
+ * are shared between sessions and must not be modified.
+ *
+ * The computation is done outside the lock of the cache: only the scoreboards that need the same list wait for it.
+ *
+ * @author Jean-François Lamy
+ */
+class ScoreboardModelCache {
+
+	/**
+	 * @param json          the athlete list
+	 * @param wideTeamNames true if a team name is too long for the narrow team column
+	 */
+	record Model(JsonValue json, boolean wideTeamNames) {
+	}
+
+	private static final Map<String, ScoreboardModelCache> caches = new ConcurrentHashMap<>();
+
+	/**
+	 * Get the model for a state of the field of play, computing it if no other scoreboard has done so.
+	 *
+	 * @param fop
+	 * @param version  {@link FieldOfPlay#getModelVersion()}, read before anything the model is computed from
+	 * @param key      the kind of list and the display options that affect it
+	 * @param computer computes the model, called at most once per key and version
+	 * @return the model
+	 */
+	static Model get(FieldOfPlay fop, long version, String key, Supplier<Model> computer) {
+		ScoreboardModelCache cache = caches.computeIfAbsent(fop.getName(), (n) -> new ScoreboardModelCache());
+		return cache.doGet(version, key, computer);
+	}
+
+	private final Map<String, CompletableFuture<Model>> models = new HashMap<>();
+	private long version = -1;
+
+	private Model doGet(long curVersion, String key, Supplier<Model> computer) {
+		CompletableFuture<Model> future;
+		boolean mustCompute = false;
+		synchronized (this) {
+			if (curVersion < this.version) {
+				// late computation for a state that has already changed, do not keep
+				future = null;
+			} else {
+				if (curVersion > this.version) {
+					this.models.clear();
+					this.version = curVersion;
+				}
+				future = this.models.get(key);
+				if (future == null) {
+					future = new CompletableFuture<>();
+					this.models.put(key, future);
+					mustCompute = true;
+				}
+			}
+		}
+		if (future == null) {
+			return computer.get();
+		}
+		if (mustCompute) {
+			try {
+				future.complete(computer.get());
+			} catch (RuntimeException e) {
+				synchronized (this) {
+					this.models.remove(key, future);
+				}
+				future.completeExceptionally(e);
+				throw e;
+			}
+		}
+		try {
+			// other scoreboards with the same key wait and reuse the result.
+			return future.join();
+		} catch (CompletionException e) {
+			// the scoreboard that computed it has reported the error
+			return computer.get();
+		}
+	}
+
+}
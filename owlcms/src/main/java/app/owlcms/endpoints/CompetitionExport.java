@@ -21,15 +21,13 @@
 package app.owlcms.endpoints;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
 
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.apputils.AccessUtils;
 import app.owlcms.data.export.CompetitionData;
+import app.owlcms.data.export.CompetitionData.Compression;
 import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.ProxyUtils;
 import ch.qos.logback.classic.Logger;
@@ -120,38 +118,32 @@ public class CompetitionExport extends HttpServlet {
 		// Initialize response.
 		response.reset();
 
-		// Prepare streams.
-		InputStream inputStream = null;
-		OutputStream output = null;
-		PrintWriter printWriter = null;
+		// ?compression=gzip or zstd for a compressed export
+		Compression compression = Compression.fromString(request.getParameter("compression"));
 
 		try {
 			// Open streams.
-			output = response.getOutputStream();
-			printWriter = new PrintWriter(output, true, StandardCharsets.UTF_8);
-			response.setContentType("application/json");
-			response.setCharacterEncoding("UTF-8");
-
-			inputStream = new CompetitionData().exportData();
-			inputStream.transferTo(output);
-			output.flush();
-			printWriter.flush();
-
+			OutputStream output = response.getOutputStream();
+			if (compression == Compression.NONE) {
+				response.setContentType("application/json");
+				response.setCharacterEncoding("UTF-8");
+			} else {
+				response.setContentType("application/octet-stream");
+			}
 			response.setStatus(200);
-			response.flushBuffer();
+
+			// written directly to the response as the database is read, closed when complete
+			new CompetitionData().writeData(output, compression);
 		} catch (Throwable t) {
 			logger.error("{}", LoggerUtils.stackTrace(t));
-			response.setStatus(500);
-		} finally {
-			if (output != null) {
-				output.close();
-			}
-			if (printWriter != null) {
-				printWriter.close();
-			}
-			if (inputStream != null) {
-				inputStream.close();
+			if (!response.isCommitted()) {
+				response.reset();
+				response.sendError(500);
+				return;
 			}
+			// the status has already been sent: abort the response so that the truncated export is not taken as
+			// complete
+			throw new IOException("competition export failed", t);
 		}
 	}
 
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.endpoints;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.apputils.AccessUtils;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.data.jpa.TransactionStatistics;
+import app.owlcms.fieldofplay.FanOutEventBus;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.init.OwlcmsFactory;
+import app.owlcms.spreadsheet.ReportJobs;
+import app.owlcms.utils.ProxyUtils;
+import app.owlcms.utils.SharedScheduler;
+import app.owlcms.utils.SharedScheduler.Jitter;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import elemental.json.impl.JsonUtil;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Database transaction statistics, as JSON, for the hosts in the backdoor list.
+ *
+ * <ul>
+ * <li>GET returns the counts and latencies by call site, the connection pool waits, and the lateness of the tasks
+ * run by the shared scheduler (clocks and delayed notifications), the delivery of the UI events to the displays
+ * of each field of play, and the documents being produced in the background</li>
+ * <li>POST with <code>enabled=true</code> or <code>enabled=false</code> turns the statistics on or off, with
+ * <code>reset=true</code> clears them, with <code>evictCaches=true</code> empties the second-level cache (after
+ * editing the database directly, for example from the H2 console), with <code>resetScheduler=true</code> clears the
+ * scheduler lateness, with <code>resetEvents=true</code> clears the UI event statistics, with
+ * <code>resetReports=true</code> clears the document statistics and the finished documents, with
+ * <code>cancelReport=</code><i>id</i> cancels a document in progress; the statistics are returned as for GET</li>
+ * </ul>
+ *
+ * @see TransactionStatistics
+ * @author Jean-François Lamy
+ */
+@SuppressWarnings("serial")
+@WebServlet("/transactions")
+public class TransactionStatisticsServlet extends HttpServlet {
+
+	private static Logger logger = (Logger) LoggerFactory.getLogger(TransactionStatisticsServlet.class);
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+	        throws ServletException, IOException {
+		if (!checkAccess(request, response)) {
+			return;
+		}
+		sendStatistics(response);
+	}
+
+	@Override
+	protected void doPost(HttpServletRequest request, HttpServletResponse response)
+	        throws ServletException, IOException {
+		if (!checkAccess(request, response)) {
+			return;
+		}
+		String enabled = request.getParameter("enabled");
+		if (enabled != null) {
+			TransactionStatistics.setEnabled(Boolean.parseBoolean(enabled));
+		}
+		if (Boolean.parseBoolean(request.getParameter("reset"))) {
+			TransactionStatistics.reset();
+		}
+		if (Boolean.parseBoolean(request.getParameter("evictCaches"))) {
+			JPAService.evictCaches();
+		}
+		if (Boolean.parseBoolean(request.getParameter("resetScheduler"))) {
+			SharedScheduler.resetJitter();
+		}
+		if (Boolean.parseBoolean(request.getParameter("resetEvents"))) {
+			for (FieldOfPlay fop : OwlcmsFactory.getFOPs()) {
+				if (fop.getUiEventBus() instanceof FanOutEventBus bus) {
+					bus.resetStatistics();
+				}
+			}
+		}
+		if (Boolean.parseBoolean(request.getParameter("resetReports"))) {
+			ReportJobs.resetStatistics();
+			ReportJobs.clearCache();
+		}
+		String cancelReport = request.getParameter("cancelReport");
+		if (cancelReport != null) {
+			try {
+				ReportJobs.cancel(Long.parseLong(cancelReport));
+			} catch (NumberFormatException e) {
+				logger.warn("cancelReport: not a job number {}", cancelReport);
+			}
+		}
+		sendStatistics(response);
+	}
+
+	private boolean checkAccess(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		// use proxyutils because this is a plain servlet, not a Vaadin servlet
+		String host = ProxyUtils.getClientIp(request);
+		if (!AccessUtils.checkBackdoor(host)) {
+			logger.error("{} not in backdoor list, denied transaction statistics access", host);
+			response.setStatus(403);
+			response.flushBuffer();
+			return false;
+		}
+		return true;
+	}
+
+	private void sendStatistics(HttpServletResponse response) throws IOException {
+		response.reset();
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		response.setStatus(200);
+		PrintWriter writer = new PrintWriter(response.getOutputStream(), true, StandardCharsets.UTF_8);
+		JsonObject json = TransactionStatistics.toJson();
+		Jitter jitter = SharedScheduler.getJitter();
+		JsonObject scheduler = Json.createObject();
+		scheduler.put("count", jitter.count());
+		scheduler.put("meanLatenessMillis", jitter.meanMillis());
+		scheduler.put("maxLatenessMillis", jitter.maxMillis());
+		scheduler.put("late", jitter.lateCount());
+		json.put("scheduler", scheduler);
+		JsonObject uiEvents = Json.createObject();
+		for (FieldOfPlay fop : OwlcmsFactory.getFOPs()) {
+			if (fop.getUiEventBus() instanceof FanOutEventBus bus) {
+				uiEvents.put(fop.getName(), bus.toJson());
+			}
+		}
+		json.put("uiEvents", uiEvents);
+		json.put("reports", ReportJobs.toJson());
+		writer.print(JsonUtil.stringify(json, 2));
+		writer.flush();
+		response.flushBuffer();
+	}
+
+}
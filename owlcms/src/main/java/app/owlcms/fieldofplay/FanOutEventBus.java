@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.fieldofplay;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.apputils.LatencyHistogram;
+import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.StartupUtils;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+
+/**
+ * Event bus that delivers the UI events of a field of play to the displays through a bounded pool of threads.
+ *
+ * Registration, posting and the <code>@Subscribe</code> methods work as with a Guava {@link EventBus}. Each listener
+ * gets its own mailbox, drained by one pool thread at a time, so a listener sees the events in the order they were
+ * posted and a slow display only delays itself. The pool is shared by all the fields of play and its size is fixed
+ * (<code>uiEventThreads</code> parameter), instead of one new thread per listener and per event.
+ *
+ * An event still waiting in a mailbox is dropped when a newer event supersedes it (for example a lifting order update
+ * made obsolete by the next one). A mailbox holds at most <code>uiEventMailboxSize</code> events (default 200); past
+ * that the listener is not keeping up and its oldest events are dropped.
+ *
+ * @author Jean-François Lamy
+ */
+public class FanOutEventBus extends EventBus {
+
+	/**
+	 * The subscriber methods of a listener class, and which of them apply to each event class.
+	 */
+	private static final class Handlers {
+		private final Map<Class<?>, Method[]> byEventType = new ConcurrentHashMap<>();
+		private final List<Method> methods;
+
+		Handlers(Class<?> listenerClass) {
+			// most derived first, an overridden method is only called once
+			Set<Class<?>> types = new LinkedHashSet<>();
+			for (Class<?> c = listenerClass; c != null; c = c.getSuperclass()) {
+				types.add(c);
+			}
+			for (Class<?> c : new ArrayList<>(types)) {
+				addInterfaces(c, types);
+			}
+			Map<String, Method> found = new LinkedHashMap<>();
+			for (Class<?> c : types) {
+				for (Method m : c.getDeclaredMethods()) {
+					if (m.isAnnotationPresent(Subscribe.class) && !m.isSynthetic() && m.getParameterCount() == 1) {
+						String key = m.getName() + "(" + m.getParameterTypes()[0].getName() + ")";
+						if (!found.containsKey(key)) {
+							m.setAccessible(true);
+							found.put(key, m);
+						}
+					}
+				}
+			}
+			this.methods = List.copyOf(found.values());
+		}
+
+		Method[] forEvent(Class<?> eventType) {
+			return this.byEventType.computeIfAbsent(eventType, (t) -> this.methods.stream()
+			        .filter(m -> m.getParameterTypes()[0].isAssignableFrom(t))
+			        .toArray(Method[]::new));
+		}
+
+		private static void addInterfaces(Class<?> c, Set<Class<?>> types) {
+			for (Class<?> i : c.getInterfaces()) {
+				if (types.add(i)) {
+					addInterfaces(i, types);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The events waiting for one listener.
+	 */
+	private final class Mailbox implements Runnable {
+		private boolean closed;
+		private long droppedHere;
+		private final Handlers handlers;
+		private final Object listener;
+		private final ArrayDeque<Queued> queue = new ArrayDeque<>();
+		private boolean scheduled;
+
+		Mailbox(Object listener) {
+			this.listener = listener;
+			this.handlers = HANDLERS.get(listener.getClass());
+		}
+
+		@Override
+		public void run() {
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				Queued q;
+				synchronized (this) {
+					q = this.queue.pollFirst();
+					if (q == null || this.closed) {
+						this.queue.clear();
+						this.scheduled = false;
+						return;
+					}
+				}
+				long startNanos = System.nanoTime();
+				FanOutEventBus.this.dispatchLatency.record(startNanos - q.postedNanos());
+				for (Method m : q.methods()) {
+					invoke(m, q.event());
+				}
+				FanOutEventBus.this.handlingTime.record(System.nanoTime() - startNanos);
+			}
+			synchronized (this) {
+				if (this.queue.isEmpty() || this.closed) {
+					this.scheduled = false;
+					return;
+				}
+			}
+			// let the other listeners have a turn
+			executor.execute(this);
+		}
+
+		synchronized void close() {
+			this.closed = true;
+			this.queue.clear();
+		}
+
+		void offer(Object event, Method[] methods, long postedNanos) {
+			synchronized (this) {
+				if (this.closed) {
+					return;
+				}
+				if (FanOutEventBus.this.supersedes != null) {
+					Iterator<Queued> it = this.queue.iterator();
+					while (it.hasNext()) {
+						if (FanOutEventBus.this.supersedes.test(event, it.next().event())) {
+							it.remove();
+							FanOutEventBus.this.coalesced.increment();
+						}
+					}
+				}
+				if (this.queue.size() >= MAILBOX_SIZE) {
+					this.queue.pollFirst();
+					FanOutEventBus.this.dropped.increment();
+					if (this.droppedHere++ % 100 == 0) {
+						logger.warn("{} {} not keeping up, {} events dropped", identifier(),
+						        this.listener.getClass().getSimpleName(), this.droppedHere);
+					}
+				}
+				this.queue.addLast(new Queued(event, methods, postedNanos));
+				if (this.scheduled) {
+					return;
+				}
+				this.scheduled = true;
+			}
+			executor.execute(this);
+		}
+
+		private void invoke(Method m, Object event) {
+			try {
+				m.invoke(this.listener, event);
+			} catch (InvocationTargetException e) {
+				LoggerUtils.logError(logger, e.getCause() != null ? e.getCause() : e);
+			} catch (Exception e) {
+				LoggerUtils.logError(logger, e);
+			}
+		}
+	}
+
+	private record Queued(Object event, Method[] methods, long postedNanos) {
+	}
+
+	private static final int BATCH_SIZE = 16;
+	private static final ClassValue<Handlers> HANDLERS = new ClassValue<>() {
+		@Override
+		protected Handlers computeValue(Class<?> type) {
+			return new Handlers(type);
+		}
+	};
+	private final static Logger logger = (Logger) LoggerFactory.getLogger(FanOutEventBus.class);
+	private static final int MAILBOX_SIZE = StartupUtils.getIntegerParam("uiEventMailboxSize", 200);
+	private static final ThreadPoolExecutor executor;
+
+	static {
+		int nbThreads = StartupUtils.getIntegerParam("uiEventThreads",
+		        Math.max(8, 2 * Runtime.getRuntime().availableProcessors()));
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(nbThreads, nbThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+		        r -> {
+			        Thread t = new Thread(r, "ui-event-" + threadNumber.incrementAndGet());
+			        t.setDaemon(true);
+			        return t;
+		        });
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	private final LongAdder coalesced = new LongAdder();
+	private volatile LatencyHistogram dispatchLatency = new LatencyHistogram();
+	private final LongAdder dropped = new LongAdder();
+	private volatile LatencyHistogram handlingTime = new LatencyHistogram();
+	private final List<Mailbox> mailboxes = new CopyOnWriteArrayList<>();
+	private final BiPredicate<Object, Object> supersedes;
+
+	/**
+	 * @param identifier name of the bus, for logging
+	 * @param supersedes (newer, pending) returns true if the pending event can be dropped because the newer one is
+	 *                   queued behind it; null if events are never dropped
+	 */
+	public FanOutEventBus(String identifier, BiPredicate<Object, Object> supersedes) {
+		super(identifier);
+		this.supersedes = supersedes;
+	}
+
+	/**
+	 * Queue the event for each listener that has a <code>@Subscribe</code> method for it, and return immediately.
+	 */
+	@Override
+	public void post(Object event) {
+		long now = System.nanoTime();
+		for (Mailbox mb : this.mailboxes) {
+			Method[] methods = mb.handlers.forEvent(event.getClass());
+			if (methods.length > 0) {
+				mb.offer(event, methods, now);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void register(Object listener) {
+		if (find(listener) == null) {
+			this.mailboxes.add(new Mailbox(listener));
+		}
+	}
+
+	public void resetStatistics() {
+		this.dispatchLatency = new LatencyHistogram();
+		this.handlingTime = new LatencyHistogram();
+		this.coalesced.reset();
+		this.dropped.reset();
+	}
+
+	/**
+	 * @return the listener count, the time spent waiting in the mailboxes and in the listeners, and the coalesced and
+	 *         dropped events
+	 */
+	public JsonObject toJson() {
+		JsonObject json = Json.createObject();
+		json.put("listeners", this.mailboxes.size());
+		json.put("dispatch", this.dispatchLatency.toJson());
+		json.put("handling", this.handlingTime.toJson());
+		json.put("coalesced", this.coalesced.sum());
+		json.put("dropped", this.dropped.sum());
+		return json;
+	}
+
+	/**
+	 * Pending events for the listener are discarded.
+	 *
+	 * @throws IllegalArgumentException if the listener is not registered, as for {@link EventBus}
+	 */
+	@Override
+	public synchronized void unregister(Object listener) {
+		Mailbox mb = find(listener);
+		if (mb == null) {
+			throw new IllegalArgumentException("missing event subscriber for an annotated method. Is " + listener
+			        + " registered?");
+		}
+		this.mailboxes.remove(mb);
+		mb.close();
+	}
+
+	private Mailbox find(Object listener) {
+		for (Mailbox mb : this.mailboxes) {
+			if (mb.listener == listener) {
+				return mb;
+			}
+		}
+		return null;
+	}
+
+}
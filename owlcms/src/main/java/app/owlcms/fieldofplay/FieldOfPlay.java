@@ -27,12 +27,14 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
-import java.util.TimerTask;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
@@ -55,9 +57,11 @@ import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.athlete.LiftDefinition;
 import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.athleteSort.Ranking;
+import app.owlcms.data.athleteSort.RankingSnapshot;
 import app.owlcms.data.category.Category;
 import app.owlcms.data.category.Participation;
 import app.owlcms.data.competition.Competition;
+import app.owlcms.data.competition.ScoringLeaderboard;
 import app.owlcms.data.config.Config;
 import app.owlcms.data.group.Group;
 import app.owlcms.data.jpa.JPAService;
@@ -65,6 +69,7 @@ import app.owlcms.data.platform.Platform;
 import app.owlcms.data.records.RecordConfig;
 import app.owlcms.data.records.RecordEvent;
 import app.owlcms.data.records.RecordFilter;
+import app.owlcms.data.records.RecordIndex;
 import app.owlcms.fieldofplay.FOPEvent.BarbellOrPlatesChanged;
 import app.owlcms.fieldofplay.FOPEvent.CeremonyDone;
 import app.owlcms.fieldofplay.FOPEvent.CeremonyStarted;
@@ -101,6 +106,7 @@ import app.owlcms.uievents.UIEvent.BreakStarted;
 import app.owlcms.uievents.UIEvent.JuryNotification;
 import app.owlcms.utils.DelayTimer;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.SharedScheduler;
 import ch.qos.logback.classic.Logger;
 import elemental.json.Json;
 import elemental.json.JsonValue;
@@ -200,7 +206,9 @@ public class FieldOfPlay implements IUnregister {
 	final private Logger timingLogger = (Logger) LoggerFactory.getLogger(this.logger.getName() + "_Timing");
 	private EventBus uiEventBus = null;
 	final private Logger uiEventLogger = (Logger) LoggerFactory.getLogger(this.logger.getName() + "_UI");
-	private Thread wakeUpRef;
+	private volatile ScheduledFuture<?> wakeUpRef;
+	/** index of the referee being reminded, -1 if none */
+	private final AtomicInteger wokenUpRef = new AtomicInteger(-1);
 	private Integer weightAtLastStart;
 	private int prevWeight;
 	private JsonValue recordsJson;
@@ -226,7 +234,7 @@ public class FieldOfPlay implements IUnregister {
 	private FieldOfPlay existingFOP;
 	private Queue<FOPEvent.WeightChange> deferredWeightChanges = new LinkedList<>();
 	private Athlete nextAthlete;
-	private TimerTask decisionDisplayTimer;
+	private ScheduledFuture<?> decisionDisplayTimer;
 	private boolean singleReferee;
 	private Sound finalWarningSound;
 	private Sound initialWarningSound;
@@ -234,6 +242,8 @@ public class FieldOfPlay implements IUnregister {
 	private boolean useCollarsIfAvailable;
 	private int barWeight;
 	private boolean lightBarInUse;
+	private final AtomicLong modelVersion = new AtomicLong();
+	private RankingSnapshot lastRankingSnapshot;
 
 	public FieldOfPlay() {
 	}
@@ -493,6 +503,16 @@ public class FieldOfPlay implements IUnregister {
 		return this.previousAthlete;
 	}
 
+	/**
+	 * The version changes whenever the state shown on the scoreboards may have changed (new order, new state, any UI
+	 * event). Computations that only depend on the field of play can be shared for a given version.
+	 *
+	 * @return the current version of the field of play state
+	 */
+	public long getModelVersion() {
+		return this.modelVersion.get();
+	}
+
 	public JsonValue getRecordsJson() {
 		if (this.recordsJson == null) {
 			return Json.createNull();
@@ -975,7 +995,7 @@ public class FieldOfPlay implements IUnregister {
 	private void restartTimer(FOPEvent e) {
 		cancelWakeUpRef();
 		if (decisionDisplayTimer != null) {
-			decisionDisplayTimer.cancel();
+			decisionDisplayTimer.cancel(false);
 		}
 		resetDecisions();
 		pushOutUIEvent(new UIEvent.DecisionReset(getCurAthlete(), this, this));
@@ -1040,9 +1060,8 @@ public class FieldOfPlay implements IUnregister {
 
 		// we post on these buses
 
-		this.uiEventBus = new AsyncEventBus("UI-" + this.name, new ThreadPoolExecutor(8, Integer.MAX_VALUE,
-		        60L, TimeUnit.SECONDS,
-		        new SynchronousQueue<>()));
+		this.uiEventBus = new FanOutEventBus("UI-" + this.name,
+		        (newer, pending) -> pending instanceof UIEvent.LiftingOrderUpdated lou && lou.isSupersededBy(newer));
 		this.eventForwardingBus = new AsyncEventBus("POST-" + this.name, new ThreadPoolExecutor(1, Integer.MAX_VALUE,
 		        60L, TimeUnit.SECONDS,
 		        new SynchronousQueue<>()));
@@ -1458,6 +1477,7 @@ public class FieldOfPlay implements IUnregister {
 
 	public void pushOutUIEvent(UIEvent event) {
 		// logger.debug("!!!! {}",event);
+		this.modelVersion.incrementAndGet();
 		getUiEventBus().post(event);
 		getEventForwardingBus().post(event);
 	}
@@ -1498,10 +1518,22 @@ public class FieldOfPlay implements IUnregister {
 	}
 
 	private void cancelWakeUpRef() {
-		if (this.wakeUpRef != null) {
-			this.wakeUpRef.interrupt();
+		ScheduledFuture<?> w = this.wakeUpRef;
+		if (w != null) {
+			w.cancel(false);
 		}
 		this.wakeUpRef = null;
+		endWakeUpRef();
+	}
+
+	/**
+	 * Turn off the reminder, if one is on.
+	 */
+	private void endWakeUpRef() {
+		int lastRef = this.wokenUpRef.getAndSet(-1);
+		if (lastRef != -1) {
+			this.uiEventBus.post(new UIEvent.WakeUpRef(lastRef + 1, false, this, this));
+		}
 	}
 
 	private void checkDeferredWeightChanges() {
@@ -1678,6 +1710,7 @@ public class FieldOfPlay implements IUnregister {
 	}
 
 	private void doSetState(FOPState state) {
+		this.modelVersion.incrementAndGet();
 		if (state == CURRENT_ATHLETE_DISPLAYED) {
 			Athlete a = getCurAthlete();
 			if (getGroup() != null) {
@@ -1987,15 +2020,9 @@ public class FieldOfPlay implements IUnregister {
 		final int reds = nbRed;
 		final int whites = nbWhite;
 		if (nbDecisions == jurySize) {
-			new Thread(() -> {
-				try {
-					// make sure all greens are shown before showing decisions.
-					Thread.sleep(200);
-				} catch (InterruptedException e) {
-				}
-				showJuryMemberDecisionsNow(origin, (reds == jurySize || whites == jurySize), jurySize,
-				        getJuryMemberDecision());
-			}).start();
+			// make sure all greens are shown before showing decisions.
+			SharedScheduler.schedule(() -> showJuryMemberDecisionsNow(origin, (reds == jurySize || whites == jurySize),
+			        jurySize, getJuryMemberDecision()), 200);
 		}
 	}
 
@@ -2024,35 +2051,18 @@ public class FieldOfPlay implements IUnregister {
 				this.downEmitted = true;
 			}
 		}
-		if (nbDecisions == 2) {
-			// 2 decisions, reminder for last referee
-			this.wakeUpRef = new Thread(() -> {
-				int lastRef = -1;
-				try {
-					// wait a bit. If the decision comes in while waiting, this thread will be
-					// cancelled anyway
-					Thread.sleep(Competition.getCurrent().getRefereeWakeUpDelay());
-					lastRef = ArrayUtils.indexOf(getRefereeDecision(), null);
-					if (lastRef != -1 && !Thread.currentThread().isInterrupted()) {
-						// logger.debug("posting");
-						this.uiEventBus.post(new UIEvent.WakeUpRef(lastRef + 1, true, this, this));
-					} else {
-						// logger.debug("not posting");
-					}
-					Thread.sleep(WAKEUP_DURATION_MS);
-				} catch (InterruptedException e1) {
-					// ignore interruption, finally handles clean up
-				} finally {
-					// if we are here, either the last ref has entered a decision, or we've
-					// exhausted the reminder
-					// duration
-					// in either case, we turn the reminder off.
-					if (lastRef != -1) {
-						this.uiEventBus.post(new UIEvent.WakeUpRef(lastRef + 1, false, this, this));
-					}
+		if (nbDecisions == 2 && (this.wakeUpRef == null || this.wakeUpRef.isDone())) {
+			// 2 decisions, reminder for last referee after a bit. If the decision comes in while waiting, the
+			// reminder is cancelled.
+			this.wakeUpRef = SharedScheduler.schedule(() -> {
+				int lastRef = ArrayUtils.indexOf(getRefereeDecision(), null);
+				if (lastRef != -1 && this.wakeUpRef != null) {
+					this.wokenUpRef.set(lastRef);
+					this.uiEventBus.post(new UIEvent.WakeUpRef(lastRef + 1, true, this, this));
+					// turn the reminder off after a while if the last referee does not react
+					this.wakeUpRef = SharedScheduler.schedule(this::endWakeUpRef, WAKEUP_DURATION_MS);
 				}
-			});
-			this.wakeUpRef.start();
+			}, Competition.getCurrent().getRefereeWakeUpDelay());
 		}
 		if (nbDecisions == 3) {
 			if (this.wakeUpRef != null) {
@@ -2303,12 +2313,23 @@ public class FieldOfPlay implements IUnregister {
 	}
 
 	private List<Athlete> updateScoringSystemRanking(EntityManager em, List<Athlete> l) {
-		if (Competition.getCurrent().isDisplayScoreRanks()) {
+		Ranking scoringSystem = Competition.getCurrent().getScoringSystem();
+		RankingSnapshot snapshot = RankingSnapshot.of(l, scoringSystem);
+		boolean sameScores = snapshot.sameScores(this.lastRankingSnapshot);
+		this.logger.debug("{}rank changes={} score changes={}", FieldOfPlay.getLoggingName(this),
+		        snapshot.countRankChanges(this.lastRankingSnapshot), !sameScores);
+
+		boolean scoresRanked = Competition.getCurrent().isDisplayScoreRanks();
+		if (scoresRanked && !sameScores) {
+			// the competition-wide ranking can only move if a score in our categories has moved
+			// (a no lift, a weight change, a ranking-only recomputation do not change any score)
 			// long beforeRanks = System.currentTimeMillis();
 			try {
-				// this only computes the current scoring system
-				Competition.getCurrent().scoringSystemRankings(em);
+				// this only moves our athletes for the current scoring system; the flush below writes back the ranks
+				// that changed
+				ScoringLeaderboard.getCurrent().rank(em, scoringSystem, l);
 			} catch (Exception e) {
+				scoresRanked = false;
 				this.logger.error("{} scoringSystemRankings exception {}\n ", FieldOfPlay.getLoggingName(this),
 				        e,
 				        LoggerUtils.stackTrace(e));
@@ -2317,12 +2338,11 @@ public class FieldOfPlay implements IUnregister {
 			// logger.debug("-------------------- scoringSystemRankings {}ms", afterRanks - beforeRanks);
 		}
 
-		List<Athlete> nl = new LinkedList<>();
-		for (Athlete a : l) {
-			nl.add(em.merge(a));
-		}
+		// the athletes were read with this entity manager and are managed, no merge is needed;
+		// the flush only writes the rows whose ranks or scores have actually changed.
 		em.flush();
-		return nl;
+		this.lastRankingSnapshot = scoresRanked ? snapshot : null;
+		return l;
 	}
 
 	private void recomputeRecordsMap(List<Athlete> athletes) {
@@ -2454,6 +2474,7 @@ public class FieldOfPlay implements IUnregister {
 	 */
 	private void setDisplayOrder(List<Athlete> displayOrder) {
 		this.displayOrder = displayOrder;
+		this.modelVersion.incrementAndGet();
 	}
 
 	private synchronized void setDownEmitted(boolean downEmitted) {
@@ -2494,6 +2515,7 @@ public class FieldOfPlay implements IUnregister {
 
 	private void setLiftingOrder(List<Athlete> liftingOrder) {
 		this.liftingOrder = liftingOrder;
+		this.modelVersion.incrementAndGet();
 	}
 
 	private void setPreviousAthlete(Athlete athlete) {
@@ -3091,6 +3113,7 @@ public class FieldOfPlay implements IUnregister {
 				}
 				return null;
 			});
+			RecordIndex.getCurrent().invalidate();
 			recomputeRecordsMap(this.displayOrder);
 			return newRecords;
 		} else {
@@ -3103,6 +3126,7 @@ public class FieldOfPlay implements IUnregister {
 					}
 					return null;
 				});
+				RecordIndex.getCurrent().invalidate();
 				recomputeRecordsMap(this.displayOrder);
 			}
 			return new ArrayList<>();
@@ -6,8 +6,7 @@
  *******************************************************************************/
 package app.owlcms.fieldofplay;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.slf4j.LoggerFactory;
@@ -15,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import app.owlcms.data.config.Config;
 import app.owlcms.uievents.UIEvent;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.SharedScheduler;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
@@ -33,7 +33,9 @@ public class ProxyAthleteTimer implements IProxyTimer {
 	private long stopMillis;
 	private int timeRemaining;
 	private int timeRemainingAtLastStop;
-	private Timer serverTimer;
+	private ScheduledFuture<?> serverTimer;
+	/** incremented on each cancellation, so that a step already running does not schedule the next one */
+	private int serverTimerGeneration;
 	{
 		this.logger.setLevel(Level.INFO);
 	}
@@ -168,69 +170,72 @@ public class ProxyAthleteTimer implements IProxyTimer {
 		this.running = true;
 
 		if (!Config.getCurrent().featureSwitch("oldTimers")) {
-			this.serverTimer = new Timer();
-			serverTimer.schedule(computeTask(timeRemaining), timeRemaining % 30000);
+			// a restart replaces the pending task
+			int generation = cancelServerTimer();
+			scheduleNext(generation, this.timeRemaining, this.timeRemaining % 30000);
 		}
 	}
 
-	private TimerTask computeTask(int timeRemaining2) {
+	/**
+	 * @return the generation of the tasks scheduled from now on
+	 */
+	private synchronized int cancelServerTimer() {
+		if (this.serverTimer != null) {
+			this.serverTimer.cancel(false);
+			this.serverTimer = null;
+		}
+		return ++this.serverTimerGeneration;
+	}
+
+	private synchronized void scheduleNext(int generation, int timeRemaining, long delay) {
+		if (generation == this.serverTimerGeneration) {
+			this.serverTimer = SharedScheduler.schedule(computeTask(generation, timeRemaining), delay);
+		}
+	}
+
+	private Runnable computeTask(int generation, int timeRemaining2) {
 		final int timeRemaining = timeRemaining2;
 		int nbStops = (timeRemaining) / 30000;
 		switch (nbStops) {
 			case 0 -> {
 				logger.debug("{}+++++ scheduling serverTimer timeOver {}", FieldOfPlay.getLoggingName(fop), timeRemaining);
-				return new TimerTask() {
-					@Override
-					public void run() {
-						logger.info("{}+++++ running time over", FieldOfPlay.getLoggingName(fop));
-						timeOver(this);
-					}
+				return () -> {
+					logger.info("{}+++++ running time over", FieldOfPlay.getLoggingName(fop));
+					timeOver(this);
 				};
 			}
 			case 1 -> {
 				logger.debug("{}+++++ scheduling serverTimer finalWarning {}", FieldOfPlay.getLoggingName(fop), timeRemaining);
-				return new TimerTask() {
-					@Override
-					public void run() {
-						logger.info("{}+++++ running final warning", FieldOfPlay.getLoggingName(fop));
-						finalWarning(this);
-						// next task is time over, in 30sec.
-						serverTimer.schedule(computeTask(0), 30000);
-					}
+				return () -> {
+					logger.info("{}+++++ running final warning", FieldOfPlay.getLoggingName(fop));
+					finalWarning(this);
+					// next task is time over, in 30sec.
+					scheduleNext(generation, 0, 30000);
 				};
 			}
 			case 2 -> {
 				logger.debug("{}+++++ scheduling serverTimer 1:00 {}", FieldOfPlay.getLoggingName(fop), timeRemaining);
-				return new TimerTask() {
-					@Override
-					public void run() {
-						logger.info("{}running 1:00", FieldOfPlay.getLoggingName(fop));
-						// nothing to do, next task is final warning, in 30s.
-						serverTimer.schedule(computeTask(30000), 30000);
-					}
+				return () -> {
+					logger.info("{}running 1:00", FieldOfPlay.getLoggingName(fop));
+					// nothing to do, next task is final warning, in 30s.
+					scheduleNext(generation, 30000, 30000);
 				};
 			}
 			case 3 -> {
 				logger.debug("{}+++++ scheduling server serverTimer initialWarning {}", FieldOfPlay.getLoggingName(fop), timeRemaining);
-				return new TimerTask() {
-					@Override
-					public void run() {
-						logger.info("{}+++++ running initial warning", FieldOfPlay.getLoggingName(fop));
-						initialWarning(this);
-						// next task is final warning, in 60 seconds.
-						serverTimer.schedule(computeTask(30000), 60000);
-					}
+				return () -> {
+					logger.info("{}+++++ running initial warning", FieldOfPlay.getLoggingName(fop));
+					initialWarning(this);
+					// next task is final warning, in 60 seconds.
+					scheduleNext(generation, 30000, 60000);
 				};
 			}
 			case 4 -> {
 				logger.debug("{}+++++ scheduling server serverTimer 2:00 {}", FieldOfPlay.getLoggingName(fop), timeRemaining);
-				return new TimerTask() {
-					@Override
-					public void run() {
-						logger.info("{}+++++ running 2:00", FieldOfPlay.getLoggingName(fop));
-						// next task is initial warning, in 30s.
-						serverTimer.schedule(computeTask(90000), 30000);
-					}
+				return () -> {
+					logger.info("{}+++++ running 2:00", FieldOfPlay.getLoggingName(fop));
+					// next task is initial warning, in 30s.
+					scheduleNext(generation, 90000, 30000);
 				};
 			}
 			default -> {
@@ -253,10 +258,8 @@ public class ProxyAthleteTimer implements IProxyTimer {
 			        LoggerUtils.whereFrom());
 		}
 		this.timeRemainingAtLastStop = this.timeRemaining;
-		if (this.serverTimer != null) {
-			logger.info("{}+++++ stopping serverTimer", FieldOfPlay.getLoggingName(fop));
-			this.serverTimer.cancel();
-		}
+		logger.info("{}+++++ stopping serverTimer", FieldOfPlay.getLoggingName(fop));
+		cancelServerTimer();
 		getFop().pushOutUIEvent(new UIEvent.StopTime(this.timeRemaining, null, getFop()));
 		this.running = false;
 	}
@@ -271,12 +274,12 @@ public class ProxyAthleteTimer implements IProxyTimer {
 		}
 		// leave enough time for buzzer event to propagate allowing for some clock drift
 		if (this.running) {
-			try {
-				// timers that are more than 1 sec. late will now stop silently.
-				Thread.sleep(1000);
-				this.stop();
-			} catch (InterruptedException e) {
-			}
+			// timers that are more than 1 sec. late will now stop silently.
+			SharedScheduler.schedule(() -> {
+				if (this.running) {
+					this.stop();
+				}
+			}, 1000);
 		}
 	}
 
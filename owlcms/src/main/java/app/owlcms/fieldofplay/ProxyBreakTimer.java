@@ -8,8 +8,7 @@ package app.owlcms.fieldofplay;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.slf4j.LoggerFactory;
@@ -19,6 +18,7 @@ import app.owlcms.uievents.BreakType;
 import app.owlcms.uievents.CeremonyType;
 import app.owlcms.uievents.UIEvent;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.SharedScheduler;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
@@ -46,7 +46,7 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
 	private long stopMillis;
 	private int timeRemaining;
 	private int timeRemainingAtLastStop;
-	private Timer serverTimer;
+	private ScheduledFuture<?> serverTimer;
 
 	{
 		this.logger.setLevel(Level.INFO);
@@ -242,24 +242,24 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
 		}
 		
 		// if a break is running, need to stop it before starting another.
+		cancelServerTimer();
+		this.serverTimer = SharedScheduler.schedule(computeTask(timeRemaining), timeRemaining);
+
+	}
+
+	private synchronized void cancelServerTimer() {
 		if (this.serverTimer != null) {
-			//logger.debug("Cancelling running timer");
-			serverTimer.cancel();
+			// logger.debug("Cancelling running timer");
+			this.serverTimer.cancel(false);
+			this.serverTimer = null;
 		}
-		this.serverTimer = new Timer();
-		TimerTask timerTask = computeTask(timeRemaining);
-		serverTimer.schedule(timerTask, timeRemaining);
-
 	}
 
-	private TimerTask computeTask(int timeRemaining2) {
+	private Runnable computeTask(int timeRemaining2) {
 		logger.info("{}+++++ scheduling serverTimer break over {}", FieldOfPlay.getLoggingName(fop), timeRemaining);
-		return new TimerTask() {
-			@Override
-			public void run() {
-				logger.info("{}+++++ running break over", FieldOfPlay.getLoggingName(fop));
-				timeOver(this);
-			}
+		return () -> {
+			logger.info("{}+++++ running break over", FieldOfPlay.getLoggingName(fop));
+			timeOver(this);
 		};
 	}
 
@@ -276,9 +276,7 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
 		// logger.debug("*** stopping Break -- timeRemaining = {} [{}]", getTimeRemaining(), LoggerUtils.whereFrom());
 		this.timeRemainingAtLastStop = getTimeRemaining();
 		// logger.debug("break stop = {} [{}]", liveTimeRemaining(), LoggerUtils.whereFrom());
-		if (this.serverTimer != null) {
-			this.serverTimer.cancel();
-		}
+		cancelServerTimer();
 		UIEvent.BreakPaused event = new UIEvent.BreakPaused(isIndefinite() ? null : getTimeRemaining(), getOrigin(),
 		        false,
 		        getFop().getBreakType(), getFop().getCountdownType(), getFop());
@@ -39,6 +39,8 @@ public class OwlcmsSession {
 	private static final String LOCALE = "locale";
 	private final static Logger logger = (Logger) LoggerFactory.getLogger(OwlcmsSession.class);
 	private static OwlcmsSession owlcmsSessionSingleton = null;
+	/** locale of the session on whose behalf a background thread is working */
+	private static final ThreadLocal<Locale> threadLocale = new ThreadLocal<>();
 
 	static {
 		logger.setLevel(Level.INFO);
@@ -159,6 +161,23 @@ public class OwlcmsSession {
 		setAttribute(REQUESTED_URL, url);
 	}
 
+	/**
+	 * Run on a thread that has no Vaadin session (for example when producing a document in the background) as if the
+	 * session locale was current.
+	 *
+	 * @param locale  the locale of the session that requested the work
+	 * @param command the work
+	 */
+	public static void withLocale(Locale locale, Runnable command) {
+		Locale prev = threadLocale.get();
+		threadLocale.set(locale);
+		try {
+			command.run();
+		} finally {
+			threadLocale.set(prev);
+		}
+	}
+
 	public static void withFop(Consumer<FieldOfPlay> command) {
 		FieldOfPlay fop = getFop();
 		if (fop == null) {
@@ -170,7 +189,11 @@ public class OwlcmsSession {
 	}
 
 	public static Locale computeLocale() {
-		Locale locale = (Locale) getAttribute(LOCALE);
+		Locale locale = threadLocale.get();
+		if (locale != null) {
+			return locale;
+		}
+		locale = (Locale) getAttribute(LOCALE);
 		if (locale != null) {
 			return locale;
 		}
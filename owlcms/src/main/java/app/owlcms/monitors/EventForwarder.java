@@ -8,28 +8,30 @@ package app.owlcms.monitors;
 
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.NameValuePair;
 import org.apache.http.StatusLine;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.LoggerFactory;
@@ -74,7 +76,9 @@ import app.owlcms.uievents.UIEvent.SetTime;
 import app.owlcms.uievents.UIEvent.StartTime;
 import app.owlcms.uievents.UIEvent.StopTime;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.PostBody;
 import app.owlcms.utils.ResourceWalker;
+import app.owlcms.utils.UpdateDelta;
 import app.owlcms.utils.URLUtils;
 import ch.qos.logback.classic.Logger;
 import elemental.json.Json;
@@ -117,7 +121,9 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 	private String teamName;
 	private Integer timeAllowed;
 	private JsonObject translationMap;
+	private String translationMapJson;
 	private long translatorResetTimeStamp;
+	private Locale translationLocale;
 	private Integer weight;
 	private boolean wideTeamNames;
 	private JsonValue records;
@@ -693,12 +699,8 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 
 	protected void setTranslationMap() {
 		JsonObject translations = Json.createObject();
-		Enumeration<String> keys = Translator.getKeys();
-		while (keys.hasMoreElements()) {
-			String curKey = keys.nextElement();
-			if (curKey.startsWith("Scoreboard.")) {
-				translations.put(curKey.replace("Scoreboard.", ""), Translator.translate(curKey));
-			}
+		for (Map.Entry<String, String> e : Translator.getMap("Scoreboard.").entrySet()) {
+			translations.put(e.getKey(), e.getValue());
 		}
 		setTranslationMap(translations);
 	}
@@ -1028,6 +1030,19 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 		return sb;
 	}
 
+	/**
+	 * Recompute the scoreboard information for a group and build the corresponding update, without posting it.
+	 * Used by the benchmarks to measure what every update costs.
+	 *
+	 * @param g     the group being displayed
+	 * @param event the event that triggers the update
+	 * @return the parameters that would be posted
+	 */
+	Map<String, String> computeUpdate(Group g, UIEvent event) {
+		computeCurrentGroup(g);
+		return createUpdate(event);
+	}
+
 	private synchronized Map<String, String> createUpdate(UIEvent event) {
 		updateState();
 		Map<String, String> sb = new LinkedHashMap<>();
@@ -1048,8 +1063,12 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 		String paramStylesDir = Config.getCurrent().getParamStylesDir();
 		mapPut(sb, "stylesDir", paramStylesDir);
 
-		if (this.translatorResetTimeStamp != Translator.getResetTimeStamp()) {
+		Locale locale = Translator.getLocaleSupplier().get();
+		if (this.translationMap == null || this.translatorResetTimeStamp != Translator.getResetTimeStamp()
+		        || !Objects.equals(locale, this.translationLocale)) {
 			// translation map has been updated (reload or language change)
+			this.translatorResetTimeStamp = Translator.getResetTimeStamp();
+			this.translationLocale = locale;
 			setTranslationMap();
 		}
 
@@ -1115,7 +1134,7 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 		createRecord(sb);
 
 		// presentation information
-		mapPut(sb, "translationMap", this.translationMap.toJson());
+		mapPut(sb, "translationMap", this.translationMapJson);
 		mapPut(sb, "hidden", String.valueOf(this.hidden));
 		mapPut(sb, "wideTeamNames", String.valueOf(this.wideTeamNames));
 		mapPut(sb, "sinclairMeet", Boolean.toString(Competition.getCurrent().isSinclair()));
@@ -1163,55 +1182,59 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 		pushUpdate(e);
 	}
 
-	private void doPost(String url, String updateKey, Map<String, String> parameters) {
+	/**
+	 * Post once. If the local configuration files are missing, we are sent back a 412 code and we send the
+	 * configuration files; the caller retries.
+	 *
+	 * @param jsonBody send a compressed JSON body instead of a url-encoded form
+	 */
+	private ForwardingQueue.Response doPost(String url, String updateKey, Map<String, String> parameters,
+	        boolean jsonBody) {
 		HttpPost post = new HttpPost(url);
-		// add request parameters or form parameters
-		List<NameValuePair> urlParameters = new ArrayList<>();
-		parameters.entrySet().stream()
-		        .forEach((e) -> urlParameters.add(new BasicNameValuePair(e.getKey(), e.getValue())));
-
-		boolean done = false;
-		int nbTries = 0;
-		// send post. if the local configuration files are missing, we are sent back a
-		// 412 code.
-		// we send the configuration files as well.
-		while (!done && nbTries <= 1) {
-			try {
+		try {
+			if (jsonBody) {
+				ByteArrayEntity entity = new ByteArrayEntity(PostBody.encode(parameters),
+				        ContentType.create(PostBody.getContentType(), StandardCharsets.UTF_8));
+				entity.setContentEncoding(PostBody.getContentEncoding());
+				post.setEntity(entity);
+			} else {
+				// add request parameters or form parameters
+				List<NameValuePair> urlParameters = new ArrayList<>();
+				parameters.entrySet().stream()
+				        .forEach((e) -> urlParameters.add(new BasicNameValuePair(e.getKey(), e.getValue())));
 				post.setEntity(new UrlEncodedFormEntity(urlParameters, "UTF-8"));
-				try (CloseableHttpClient httpClient = HttpClients.createDefault();
-				        CloseableHttpResponse response = httpClient.execute(post)) {
-					StatusLine statusLine = response.getStatusLine();
-					Integer statusCode = statusLine != null ? statusLine.getStatusCode() : null;
-					if (statusCode != null && statusCode != 200) {
-						synchronized (singleThreadLock) {
-							if (nbTries == 0 && statusCode != null && statusCode == 412) {
-								logger.error("{}missing remote configuration {} {} {}",
-								        FieldOfPlay.getLoggingName(getFop()), url,
-								        statusLine,
-								        LoggerUtils.whereFrom(1));
-								sendConfig(url, updateKey);
-								nbTries++;
-							} else {
-								logger.error("{}could not post to {} {} {}", FieldOfPlay.getLoggingName(getFop()), url,
-								        statusLine,
-								        LoggerUtils.whereFrom(1));
-								done = true;
-							}
-						}
-					} else {
-						done = true;
+			}
+			try (CloseableHttpResponse response = ForwarderHttpClient.getHttpClient().execute(post)) {
+				StatusLine statusLine = response.getStatusLine();
+				int statusCode = statusLine != null ? statusLine.getStatusCode() : -1;
+				// fully read the response so the connection goes back to the pool
+				EntityUtils.consume(response.getEntity());
+				if (statusCode == 412) {
+					synchronized (singleThreadLock) {
+						logger.error("{}missing remote configuration {} {} {}",
+						        FieldOfPlay.getLoggingName(getFop()), url,
+						        statusLine,
+						        LoggerUtils.whereFrom(1));
+						sendConfig(url, updateKey);
 					}
-				} catch (Exception e1) {
-					logger.error("{}could not post to {} {}", FieldOfPlay.getLoggingName(getFop()), url,
-					        LoggerUtils.exceptionMessage(e1));
-					done = true;
+				} else if (statusCode == UpdateDelta.NEED_SNAPSHOT) {
+					logger.info("{}full update requested by {}", FieldOfPlay.getLoggingName(getFop()), url);
+				} else if (statusCode != 200) {
+					logger.error("{}could not post to {} {} {}", FieldOfPlay.getLoggingName(getFop()), url,
+					        statusLine,
+					        LoggerUtils.whereFrom(1));
+				} else {
+					logger.trace("{}posted to {} {}", FieldOfPlay.getLoggingName(getFop()), url,
+					        ForwarderHttpClient.getPoolStatisticsString());
 				}
-			} catch (UnsupportedEncodingException e2) {
-				// can't happen.
-				logger.error("{}could not post to {} {}", FieldOfPlay.getLoggingName(getFop()), url,
-				        LoggerUtils.exceptionMessage(e2));
-				done = true;
+				Header body = response.getFirstHeader(PostBody.BODY_HEADER);
+				return new ForwardingQueue.Response(statusCode, response.containsHeader(UpdateDelta.DELTA_HEADER),
+				        body != null && body.getValue().contains(PostBody.JSON_GZIP));
 			}
+		} catch (Exception e1) {
+			logger.error("{}could not post to {} {} {}", FieldOfPlay.getLoggingName(getFop()), url,
+			        LoggerUtils.exceptionMessage(e1), ForwarderHttpClient.getPoolStatisticsString());
+			return new ForwardingQueue.Response(-1, false, false);
 		}
 	}
 
@@ -1496,8 +1519,8 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 		if (decisionUrl == null && videoUrl == null) {
 			return;
 		}
-		sendPost(videoUrl, current.getParamVideoDataKey(), getLastDecisionMap());
-		sendPost(decisionUrl, current.getUpdatekey(), getLastDecisionMap());
+		sendPost(ForwardingQueue.Kind.DECISION, videoUrl, current.getParamVideoDataKey(), getLastDecisionMap());
+		sendPost(ForwardingQueue.Kind.DECISION, decisionUrl, current.getUpdatekey(), getLastDecisionMap());
 	}
 
 	private void pushDecision(JuryNotification e) {
@@ -1509,8 +1532,8 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 			return;
 		}
 		setLastDecisionMap(createJuryEvent(e));
-		sendPost(videoUrl, current.getParamVideoDataKey(), getLastDecisionMap());
-		sendPost(decisionUrl, current.getUpdatekey(), getLastDecisionMap());
+		sendPost(ForwardingQueue.Kind.DECISION, videoUrl, current.getParamVideoDataKey(), getLastDecisionMap());
+		sendPost(ForwardingQueue.Kind.DECISION, decisionUrl, current.getUpdatekey(), getLastDecisionMap());
 	}
 
 	private synchronized void pushTimer(UIEvent e) {
@@ -1523,8 +1546,8 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 			return;
 		}
 
-		sendPost(videoUrl, current.getParamVideoDataKey(), getLastTimerMap());
-		sendPost(timerUrl, current.getUpdatekey(), getLastTimerMap());
+		sendPost(ForwardingQueue.Kind.TIMER, videoUrl, current.getParamVideoDataKey(), getLastTimerMap());
+		sendPost(ForwardingQueue.Kind.TIMER, timerUrl, current.getUpdatekey(), getLastTimerMap());
 	}
 
 	/**
@@ -1566,8 +1589,8 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 			return;
 		}
 
-		sendPost(videoUrl, current.getParamVideoDataKey(), this.lastUpdate);
-		sendPost(updateUrl, current.getParamUpdateKey(), this.lastUpdate);
+		sendPost(ForwardingQueue.Kind.UPDATE, videoUrl, current.getParamVideoDataKey(), this.lastUpdate);
+		sendPost(ForwardingQueue.Kind.UPDATE, updateUrl, current.getParamUpdateKey(), this.lastUpdate);
 	}
 
 	private void sendConfig(String url, String updateKey) {
@@ -1608,8 +1631,7 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 				HttpEntity entity = builder.build();
 
 				post.setEntity(entity);
-				try (CloseableHttpClient httpClient = HttpClients.createDefault();
-				        CloseableHttpResponse response = httpClient.execute(post)) {
+				try (CloseableHttpResponse response = ForwarderHttpClient.getHttpClient().execute(post)) {
 					StatusLine statusLine = response.getStatusLine();
 					Integer statusCode = statusLine != null ? statusLine.getStatusCode() : null;
 					if (statusCode != null && statusCode != 200) {
@@ -1629,27 +1651,24 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 		}
 	}
 
-	Map<String, Integer> debouncingHash = new HashMap<>();
-	Map<String, Long> debouncingMillis = new HashMap<>();
+	private Map<String, ForwardingQueue> forwardingQueues = new ConcurrentHashMap<>();
 
-	private void sendPost(String url, String updateKey, Map<String, String> parameters) {
+	/**
+	 * Queue the post for the destination. Posts to a given destination are sent one at a time, in order.
+	 *
+	 * @param kind       updates waiting to be sent are replaced by newer ones; timers and decisions are always sent
+	 * @param url
+	 * @param updateKey
+	 * @param parameters
+	 */
+	private void sendPost(ForwardingQueue.Kind kind, String url, String updateKey, Map<String, String> parameters) {
 		if (url == null) {
 			return;
 		}
-		Integer previousDebounceHash = debouncingHash.get(url);
-		Long previousDebounceMillis = debouncingMillis.get(url);
-		Long deltaMillis = System.currentTimeMillis() - (previousDebounceMillis != null ? previousDebounceMillis : 0);
-		Integer hashCode = parameters.hashCode();
-
-		// debounce, sometimes several identical updates in a rapid succession
-		// identical updates are ok after 1 sec.
-		if (hashCode != previousDebounceHash || (deltaMillis > 1000)) {
-			new Thread(() -> doPost(url, updateKey, parameters)).start();
-
-			this.debouncingHash.put(url, hashCode);
-			this.debouncingMillis.put(url, System.currentTimeMillis());
-		}
-
+		this.forwardingQueues
+		        .computeIfAbsent(url,
+		                (u) -> new ForwardingQueue(u, this::doPost, !Config.getCurrent().featureSwitch("noForwarderDelta")))
+		        .enqueue(kind, updateKey, parameters);
 	}
 
 	private void setBreakType(BreakType breakType) {
@@ -1731,6 +1750,8 @@ public class EventForwarder implements BreakDisplay, HasBoardMode, IUnregister {
 
 	private void setTranslationMap(JsonObject translations) {
 		this.translationMap = translations;
+		// serialized once per language change, not on every update
+		this.translationMapJson = translations != null ? translations.toJson() : null;
 	}
 
 	private void setWideTeamNames(boolean b) {
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.monitors;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import app.owlcms.utils.StartupUtils;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Shared HTTP client used by the {@link EventForwarder}s to push to publicresults and to the video data consumers.
+ *
+ * A single connection-pooled client is kept for the life of the application so that the TCP (and TLS) connections are
+ * kept alive and reused across updates, timer and decision posts. The posts themselves are run on a dedicated
+ * executor instead of a new thread per post.
+ *
+ * Each {@link ForwardingQueue} has at most one task running on the executor, which sends its posts one after the
+ * other. The executor therefore grows to one thread per destination that has posts waiting, so that a slow or dead
+ * destination only delays its own posts; forwarderThreads threads are kept when idle.
+ *
+ * The pool sizes can be overridden with the forwarderMaxPerRoute, forwarderMaxTotal and forwarderThreads parameters
+ * (OWLCMS_FORWARDERMAXPERROUTE etc. as environment variables).
+ *
+ * @author Jean-François Lamy
+ */
+public class ForwarderHttpClient {
+
+	private static final int CONNECT_TIMEOUT = 5000;
+	private static final int SOCKET_TIMEOUT = 15000;
+	private static final int IDLE_EVICTION_SECONDS = 30;
+
+	private final static Logger logger = (Logger) LoggerFactory.getLogger(ForwarderHttpClient.class);
+
+	private static PoolingHttpClientConnectionManager connectionManager;
+	private static ThreadPoolExecutor executor;
+	private static CloseableHttpClient httpClient;
+
+	/**
+	 * @return the executor on which the posts are performed.
+	 */
+	public synchronized static ExecutorService getExecutor() {
+		if (executor == null) {
+			int nbThreads = StartupUtils.getIntegerParam("forwarderThreads", 4);
+			// no queue: a destination never waits for a thread held by another one
+			executor = new ThreadPoolExecutor(nbThreads, Integer.MAX_VALUE,
+			        60L, TimeUnit.SECONDS,
+			        new SynchronousQueue<>(),
+			        new ThreadFactoryBuilder().setNameFormat("forwarder-%d").setDaemon(true).build());
+		}
+		return executor;
+	}
+
+	/**
+	 * The returned client is shared and must not be closed by the caller. Responses must be closed (or their entity
+	 * consumed) so that the connection goes back to the pool.
+	 *
+	 * @return the shared pooled client.
+	 */
+	public synchronized static CloseableHttpClient getHttpClient() {
+		if (httpClient == null) {
+			connectionManager = new PoolingHttpClientConnectionManager();
+			connectionManager.setDefaultMaxPerRoute(StartupUtils.getIntegerParam("forwarderMaxPerRoute", 4));
+			connectionManager.setMaxTotal(StartupUtils.getIntegerParam("forwarderMaxTotal", 32));
+			connectionManager.setValidateAfterInactivity(2000);
+
+			RequestConfig requestConfig = RequestConfig.custom()
+			        .setConnectTimeout(CONNECT_TIMEOUT)
+			        .setConnectionRequestTimeout(CONNECT_TIMEOUT)
+			        .setSocketTimeout(SOCKET_TIMEOUT)
+			        .build();
+
+			httpClient = HttpClients.custom()
+			        .setConnectionManager(connectionManager)
+			        .setDefaultRequestConfig(requestConfig)
+			        .evictExpiredConnections()
+			        .evictIdleConnections(IDLE_EVICTION_SECONDS, TimeUnit.SECONDS)
+			        .build();
+			logger.info("created pooled forwarding client {}", getPoolStatisticsString());
+		}
+		return httpClient;
+	}
+
+	/**
+	 * @return the total statistics for the connection pool, null if no post has been made yet.
+	 */
+	public static PoolStats getPoolStatistics() {
+		PoolingHttpClientConnectionManager cm = connectionManager;
+		return cm != null ? cm.getTotalStats() : null;
+	}
+
+	/**
+	 * @return a printable summary of the connection pool and of the posting executor
+	 */
+	public static String getPoolStatisticsString() {
+		PoolStats stats = getPoolStatistics();
+		ThreadPoolExecutor ex = executor;
+		StringBuilder sb = new StringBuilder();
+		if (stats != null) {
+			sb.append("connections leased=").append(stats.getLeased())
+			        .append(" available=").append(stats.getAvailable())
+			        .append(" pending=").append(stats.getPending())
+			        .append(" max=").append(stats.getMax());
+		}
+		if (ex != null) {
+			sb.append(sb.length() > 0 ? " " : "")
+			        .append("posts active=").append(ex.getActiveCount())
+			        .append(" threads=").append(ex.getPoolSize())
+			        .append(" completed=").append(ex.getCompletedTaskCount());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Run the posts of a queue on the shared executor.
+	 *
+	 * @param post
+	 */
+	public static void submit(Runnable post) {
+		getExecutor().execute(post);
+	}
+
+}
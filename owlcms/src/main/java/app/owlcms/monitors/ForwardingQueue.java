@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.monitors;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.utils.PostBody;
+import app.owlcms.utils.UpdateDelta;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Ordered outbound queue for one field of play and one destination URL.
+ *
+ * At most one post is in flight at any time, so the receiver sees the events in the order they were produced. Updates
+ * carry the full scoreboard state, so an update that has not been sent yet is superseded by a newer one and dropped.
+ * Timer and decision posts are always sent.
+ *
+ * Once the receiver has shown that it understands them, updates are sent as deltas against the last update it
+ * acknowledged (see {@link UpdateDelta}). Any failure, or a request from the receiver, causes the next update to be
+ * sent in full.
+ *
+ * Likewise, the body is sent as compressed JSON (see {@link PostBody}) once the receiver has shown that it accepts it,
+ * and as a url-encoded form otherwise or after an error.
+ *
+ * @author Jean-François Lamy
+ */
+class ForwardingQueue {
+
+	enum Kind {
+		DECISION,
+		TIMER,
+		UPDATE
+	}
+
+	/**
+	 * Outcome of a post.
+	 *
+	 * @param status       the HTTP status, -1 if the post could not be made
+	 * @param deltaCapable true if the receiver accepts deltas
+	 * @param jsonCapable  true if the receiver accepts a compressed JSON body
+	 */
+	record Response(int status, boolean deltaCapable, boolean jsonCapable) {
+	}
+
+	@FunctionalInterface
+	interface Sender {
+		Response doPost(String url, String updateKey, Map<String, String> parameters, boolean jsonBody);
+	}
+
+	private record Pending(Kind kind, String updateKey, Map<String, String> parameters) {
+	}
+
+	private static final long DEBOUNCE_MILLIS = 1000;
+	private final static Logger logger = (Logger) LoggerFactory.getLogger(ForwardingQueue.class);
+
+	private long coalesced;
+	private boolean deltaAccepted;
+	private final boolean deltaEnabled;
+	private boolean jsonAccepted;
+	private Map<String, String> lastAcknowledged;
+	private long lastAcknowledgedSeq;
+	private long seq;
+	private Integer lastUpdateHash;
+	private long lastUpdateMillis;
+	private final Deque<Pending> pending = new ArrayDeque<>();
+	private final Sender sender;
+	private boolean sending;
+	private final String url;
+
+	ForwardingQueue(String url, Sender sender, boolean deltaEnabled) {
+		this.url = url;
+		this.sender = sender;
+		this.deltaEnabled = deltaEnabled;
+	}
+
+	/**
+	 * Queue a post. Identical updates less than one second apart are ignored, and any update still waiting is
+	 * replaced by this one.
+	 *
+	 * @param kind
+	 * @param updateKey
+	 * @param parameters
+	 */
+	void enqueue(Kind kind, String updateKey, Map<String, String> parameters) {
+		boolean mustStart = false;
+		synchronized (this) {
+			if (kind == Kind.UPDATE) {
+				int hashCode = parameters.hashCode();
+				long now = System.currentTimeMillis();
+				if (this.lastUpdateHash != null && this.lastUpdateHash == hashCode
+				        && now - this.lastUpdateMillis <= DEBOUNCE_MILLIS) {
+					return;
+				}
+				this.lastUpdateHash = hashCode;
+				this.lastUpdateMillis = now;
+
+				Iterator<Pending> it = this.pending.iterator();
+				while (it.hasNext()) {
+					if (it.next().kind() == Kind.UPDATE) {
+						it.remove();
+						this.coalesced++;
+					}
+				}
+			}
+			this.pending.addLast(new Pending(kind, updateKey, parameters));
+			if (!this.sending) {
+				this.sending = true;
+				mustStart = true;
+			}
+		}
+		if (mustStart) {
+			// the executor has no bound, one thread per destination at most, so this is never rejected
+			ForwarderHttpClient.submit(this::drain);
+		}
+	}
+
+	/**
+	 * @return number of updates that were replaced by a newer one before being sent
+	 */
+	synchronized long getCoalesced() {
+		return this.coalesced;
+	}
+
+	synchronized int size() {
+		return this.pending.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return this.url + " queued=" + this.pending.size() + " coalesced=" + this.coalesced;
+	}
+
+	private void drain() {
+		while (true) {
+			Pending p;
+			synchronized (this) {
+				p = this.pending.pollFirst();
+				if (p == null) {
+					this.sending = false;
+					return;
+				}
+			}
+			try {
+				send(p);
+			} catch (Throwable t) {
+				logger.error("could not post to {} {}", this.url, t);
+				resetDelta();
+			}
+		}
+	}
+
+	/**
+	 * Only called from the drain loop, so there is a single update in flight for the destination.
+	 */
+	private Map<String, String> encode(Pending p) {
+		if (p.kind() != Kind.UPDATE) {
+			return p.parameters();
+		}
+		this.seq++;
+		if (this.deltaEnabled && this.deltaAccepted && this.lastAcknowledged != null) {
+			return UpdateDelta.diff(this.lastAcknowledged, p.parameters(), this.lastAcknowledgedSeq, this.seq);
+		}
+		Map<String, String> full = new LinkedHashMap<>(p.parameters());
+		full.put(UpdateDelta.SEQ, Long.toString(this.seq));
+		return full;
+	}
+
+	private Response post(Pending p, Map<String, String> parameters) {
+		Response r = this.sender.doPost(this.url, p.updateKey(), parameters, this.jsonAccepted);
+		if (r.status() == 200) {
+			this.jsonAccepted = r.jsonCapable();
+		} else if (this.jsonAccepted) {
+			// play safe, the next post will use a form; the receiver will tell us again if it accepts JSON
+			this.jsonAccepted = false;
+		}
+		return r;
+	}
+
+	private void resetDelta() {
+		this.lastAcknowledged = null;
+	}
+
+	private void send(Pending p) {
+		Map<String, String> parameters = encode(p);
+		Response r = post(p, parameters);
+		if (r.status() == 412 || r.status() == UpdateDelta.NEED_SNAPSHOT) {
+			// configuration has been sent, or the receiver lost its state; retry once with a full update
+			resetDelta();
+			parameters = encode(p);
+			r = post(p, parameters);
+		}
+		if (p.kind() != Kind.UPDATE) {
+			return;
+		}
+		if (r.status() == 200) {
+			this.deltaAccepted = r.deltaCapable();
+			this.lastAcknowledged = p.parameters();
+			this.lastAcknowledgedSeq = this.seq;
+		} else {
+			resetDelta();
+		}
+	}
+
+}
@@ -9,6 +9,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
@@ -27,6 +31,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.eventbus.Subscribe;
 
 import app.owlcms.Main;
+import app.owlcms.apputils.LatencyHistogram;
 import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.config.Config;
@@ -45,6 +50,9 @@ import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.StartupUtils;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import elemental.json.impl.JsonUtil;
 
 /**
  * This class receives and emits MQTT events.
@@ -53,6 +61,12 @@ import ch.qos.logback.classic.Logger;
  * other devices. They listen to MQTT events that come from the field of play. These events are of the form
  * (owlcms/fop). The field of play is always the last element in the topic.
  *
+ * Incoming messages are handled one at a time, in arrival order, by a single thread per field of play, so that a
+ * decision cannot overtake the clock stop that preceded it. The time from arrival to the end of the processing is
+ * recorded by topic; the timings, together with the transit time of the messages on the test topic
+ * (owlcms/test/fop, whose payload is the sending time in milliseconds), are published as JSON on
+ * owlcms/fop/diagnostics/fop each time a test message is received.
+ *
  * @author Jean-François Lamy
  */
 public class MQTTMonitor extends Thread implements IUnregister {
@@ -126,34 +140,65 @@ public class MQTTMonitor extends Thread implements IUnregister {
 
 		@Override
 		public void messageArrived(String topic, MqttMessage message) throws Exception {
-			new Thread(() -> {
-				String messageStr = new String(message.getPayload(), StandardCharsets.UTF_8);
-				logger.info("{}MQTT received {} : {}", FieldOfPlay.getLoggingName(MQTTMonitor.this.getFop()), topic, messageStr.trim());
-
-				if (topic.endsWith(this.decisionTopicName) || topic.endsWith(this.deprecatedDecisionTopicName)) {
-					postFopEventRefereeDecisionUpdate(topic, messageStr);
-				} else if (topic.endsWith(this.downEmittedTopicName)) {
-					postFopEventDownEmitted(topic, messageStr);
-				} else if (topic.endsWith(this.clockTopicName)) {
-					postFopTimeEvents(topic, messageStr);
-				} else if (topic.endsWith(this.juryBreakTopicName)) {
-					postFopJuryBreakEvents(topic, messageStr);
-				} else if (topic.endsWith(this.juryMemberDecisionTopicName)) {
-					postFopEventJuryMemberDecisionUpdate(topic, messageStr);
-				} else if (topic.endsWith(this.juryDecisionTopicName)) {
-					postFopEventJuryDecision(topic, messageStr);
-				} else if (topic.endsWith(this.jurySummonTopicName)) {
-					postFopEventSummonReferee(topic, messageStr);
-				} else if (topic.endsWith(this.configTopicName)) {
-					publishMqttConfig("owlcms/fop/config");
-				} else if (topic.endsWith(this.testTopicName)) {
-					long before = Long.parseLong(messageStr);
-					logger.info("{} timing = {}", getFop(), System.currentTimeMillis() - before);
-				} else {
-					logger.error("{}Malformed MQTT unrecognized topic message topic='{}' message='{}'",
+			// do not block the MQTT client thread, but keep the arrival order
+			long arrivalNanos = System.nanoTime();
+			MQTTMonitor.this.inbound.execute(() -> {
+				try {
+					dispatch(topic, message.getPayload(), arrivalNanos);
+				} catch (Exception e) {
+					LoggerUtils.logError(logger, e);
+				}
+			});
+		}
+
+		private void dispatch(String topic, byte[] payload, long arrivalNanos) {
+			String messageStr = new String(payload, StandardCharsets.UTF_8).trim();
+			logger.info("{}MQTT received {} : {}", FieldOfPlay.getLoggingName(MQTTMonitor.this.getFop()), topic,
+			        messageStr);
+
+			String kind;
+			if (topic.endsWith(this.decisionTopicName) || topic.endsWith(this.deprecatedDecisionTopicName)) {
+				kind = "decision";
+				postFopEventRefereeDecisionUpdate(topic, messageStr);
+			} else if (topic.endsWith(this.downEmittedTopicName)) {
+				kind = "downEmitted";
+				postFopEventDownEmitted(topic, messageStr);
+			} else if (topic.endsWith(this.clockTopicName)) {
+				kind = "clock";
+				postFopTimeEvents(topic, messageStr);
+			} else if (topic.endsWith(this.juryBreakTopicName)) {
+				kind = "juryBreak";
+				postFopJuryBreakEvents(topic, messageStr);
+			} else if (topic.endsWith(this.juryMemberDecisionTopicName)) {
+				kind = "juryMemberDecision";
+				postFopEventJuryMemberDecisionUpdate(topic, messageStr);
+			} else if (topic.endsWith(this.juryDecisionTopicName)) {
+				kind = "juryDecision";
+				postFopEventJuryDecision(topic, messageStr);
+			} else if (topic.endsWith(this.jurySummonTopicName)) {
+				kind = "jurySummon";
+				postFopEventSummonReferee(topic, messageStr);
+			} else if (topic.endsWith(this.configTopicName)) {
+				kind = "config";
+				publishMqttConfig("owlcms/fop/config");
+			} else if (topic.endsWith(this.testTopicName)) {
+				try {
+					long transitMillis = System.currentTimeMillis() - Long.parseLong(messageStr);
+					MQTTMonitor.this.testTransit.record(TimeUnit.MILLISECONDS.toNanos(transitMillis));
+					logger.info("{} timing = {}", getFop(), transitMillis);
+				} catch (NumberFormatException e) {
+					logger.error("{}Malformed MQTT test message topic='{}' message='{}'",
 					        FieldOfPlay.getLoggingName(MQTTMonitor.this.getFop()), topic, messageStr);
 				}
-			}).start();
+				publishMqttDiagnostics();
+				return;
+			} else {
+				logger.error("{}Malformed MQTT unrecognized topic message topic='{}' message='{}'",
+				        FieldOfPlay.getLoggingName(MQTTMonitor.this.getFop()), topic, messageStr);
+				return;
+			}
+			MQTTMonitor.this.inboundLatency.computeIfAbsent(kind, (k) -> new LatencyHistogram())
+			        .record(System.nanoTime() - arrivalNanos);
 		}
 
 		/**
@@ -170,12 +215,10 @@ public class MQTTMonitor extends Thread implements IUnregister {
 		 * @param messageStr
 		 */
 		private void postFopEventDownEmitted(String topic, String messageStr) {
-			messageStr = messageStr.trim();
 			MQTTMonitor.this.getFop().fopEventPost(new FOPEvent.DownSignal(this));
 		}
 
 		private void postFopEventJuryDecision(String topic, String messageStr) {
-			messageStr = messageStr.trim();
 			try {
 				MQTTMonitor.this.getFop().fopEventPost(
 				        new FOPEvent.JuryDecision(this.athleteUnderReview, this, messageStr.contentEquals("good"),
@@ -187,13 +230,11 @@ public class MQTTMonitor extends Thread implements IUnregister {
 		}
 
 		private void postFopEventJuryMemberDecisionUpdate(String topic, String messageStr) {
-			messageStr = messageStr.trim();
 			try {
-				String[] parts = messageStr.split(" ");
-				int refIndex = Integer.parseInt(parts[0]) - 1;
-				logger.debug("JuryMemberDecisionUpdate {} {}", parts, refIndex);
+				int refIndex = firstNumber(messageStr) - 1;
+				logger.debug("JuryMemberDecisionUpdate {} {}", messageStr, refIndex);
 				MQTTMonitor.this.getFop().fopEventPost(new FOPEvent.JuryMemberDecisionUpdate(MQTTMonitor.this, refIndex,
-				        parts[parts.length - 1].contentEquals("good")));
+				        lastWordIsGood(messageStr)));
 			} catch (NumberFormatException e) {
 				logger.error("{}Malformed MQTT jury member decision message topic='{}' message='{}'",
 				        FieldOfPlay.getLoggingName(MQTTMonitor.this.getFop()), topic, messageStr);
@@ -201,12 +242,10 @@ public class MQTTMonitor extends Thread implements IUnregister {
 		}
 
 		private void postFopEventRefereeDecisionUpdate(String topic, String messageStr) {
-			messageStr = messageStr.trim();
 			try {
-				String[] parts = messageStr.split(" ");
-				int refIndex = Integer.parseInt(parts[0]) - 1;
+				int refIndex = firstNumber(messageStr) - 1;
 				MQTTMonitor.this.getFop().fopEventPost(new FOPEvent.DecisionUpdate(this, refIndex,
-				        parts[parts.length - 1].contentEquals("good")));
+				        lastWordIsGood(messageStr)));
 
 			} catch (NumberFormatException e) {
 				logger.error("{}Malformed MQTT referee decision message topic='{}' message='{}'",
@@ -215,7 +254,6 @@ public class MQTTMonitor extends Thread implements IUnregister {
 		}
 
 		private void postFopEventSummonReferee(String topic, String messageStr) {
-			messageStr = messageStr.trim();
 			try {
 				String[] parts = messageStr.split(" ");
 				int refIndex = 0;
@@ -242,7 +280,6 @@ public class MQTTMonitor extends Thread implements IUnregister {
 		}
 
 		private void postFopJuryBreakEvents(String topic, String messageStr) {
-			messageStr = messageStr.trim();
 			if (messageStr.equalsIgnoreCase("technical")) {
 				MQTTMonitor.this.getFop().fopEventPost(
 				        new FOPEvent.BreakStarted(BreakType.TECHNICAL, CountdownType.INDEFINITE, 0, null, true, this));
@@ -262,7 +299,6 @@ public class MQTTMonitor extends Thread implements IUnregister {
 		}
 
 		private void postFopTimeEvents(String topic, String messageStr) {
-			messageStr = messageStr.trim();
 			if (messageStr.equalsIgnoreCase("start")) {
 				MQTTMonitor.this.getFop().fopEventPost(new FOPEvent.TimeStarted(this));
 			} else if (messageStr.equalsIgnoreCase("stop")) {
@@ -283,6 +319,24 @@ public class MQTTMonitor extends Thread implements IUnregister {
 		logger.setLevel(Level.DEBUG);
 	}
 
+	/**
+	 * @param messageStr a message of the form "2 good"
+	 * @return the number before the first space, parsed in place
+	 */
+	static int firstNumber(String messageStr) {
+		int end = messageStr.indexOf(' ');
+		return Integer.parseInt(messageStr, 0, end < 0 ? messageStr.length() : end, 10);
+	}
+
+	/**
+	 * @param messageStr a message of the form "2 good"
+	 * @return true if the word after the last space is "good"
+	 */
+	static boolean lastWordIsGood(String messageStr) {
+		int start = messageStr.lastIndexOf(' ') + 1;
+		return messageStr.length() - start == 4 && messageStr.startsWith("good", start);
+	}
+
 	public static MqttAsyncClient createMQTTClient(FieldOfPlay fop) throws MqttException {
 		String server = Config.getCurrent().getParamMqttServer();
 		server = (server != null && !server.isBlank() ? server : "127.0.0.1");
@@ -305,10 +359,20 @@ public class MQTTMonitor extends Thread implements IUnregister {
 	private MQTTCallback callback;
 	private Long prevRefereeTimeStamp = 0L;
 	private String monitoredFopName;
+	/** single consumer, unbounded: the devices send a few messages per lift */
+	private final ThreadPoolExecutor inbound;
+	private final Map<String, LatencyHistogram> inboundLatency = new ConcurrentHashMap<>();
+	private final LatencyHistogram testTransit = new LatencyHistogram();
 
 	private MQTTMonitor(String monitorName, FieldOfPlay fop) {
 		this.setMonitoredFopName(monitorName);
 		this.setFop(fop);
+		this.inbound = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+			Thread t = new Thread(r, "mqtt-in-" + monitorName);
+			t.setDaemon(true);
+			t.setPriority(Thread.MAX_PRIORITY);
+			return t;
+		});
 	}
 
 	public FieldOfPlay getFop() {
@@ -667,6 +731,23 @@ public class MQTTMonitor extends Thread implements IUnregister {
 		}
 	}
 
+	private void publishMqttDiagnostics() {
+		JsonObject json = Json.createObject();
+		json.put("queued", this.inbound.getQueue().size());
+		json.put("test", this.testTransit.toJson());
+		JsonObject latencies = Json.createObject();
+		for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(this.inboundLatency).entrySet()) {
+			latencies.put(e.getKey(), e.getValue().toJson());
+		}
+		json.put("inbound", latencies);
+		try {
+			this.client.publish("owlcms/fop/diagnostics/" + this.getFop().getName(),
+			        new MqttMessage(JsonUtil.stringify(json).getBytes(StandardCharsets.UTF_8)));
+		} catch (MqttException e1) {
+			logger.error("could not publish diagnostics {}", e1.getCause());
+		}
+	}
+
 	private void publishMqttDownSignal() throws MqttException, MqttPersistenceException {
 		String topic = "owlcms/fop/down/" + this.getFop().getName();
 		this.client.publish(topic, new MqttMessage());
@@ -11,14 +11,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiConsumer;
@@ -83,6 +84,7 @@ import app.owlcms.data.group.Group;
 import app.owlcms.data.group.GroupRepository;
 import app.owlcms.data.platform.Platform;
 import app.owlcms.i18n.Translator;
+import app.owlcms.init.OwlcmsSession;
 import app.owlcms.nui.crudui.OwlcmsCrudFormFactory;
 import app.owlcms.nui.crudui.OwlcmsGridLayout;
 import app.owlcms.nui.shared.DownloadButtonFactory;
@@ -97,6 +99,8 @@ import app.owlcms.spreadsheet.JXLSStartingListDocs;
 import app.owlcms.spreadsheet.JXLSWeighInSheet;
 import app.owlcms.spreadsheet.JXLSWorkbookStreamSource;
 import app.owlcms.spreadsheet.PAthlete;
+import app.owlcms.spreadsheet.ReportJobs;
+import app.owlcms.spreadsheet.ReportJobs.ReportJob;
 import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.ResourceWalker;
 import app.owlcms.utils.ZipUtils;
@@ -116,6 +120,10 @@ public class DocumentsContent extends BaseContent implements CrudListener<Group>
 	        BiFunction<List<Athlete>, Group, JXLSWorkbookStreamSource> writerFactory) {
 	}
 
+	/** a document of the kit, being produced, and its name in the zip */
+	private record KitPart(String name, ReportJob job) {
+	}
+
 	final static Logger logger = (Logger) LoggerFactory.getLogger(DocumentsContent.class);
 
 	static {
@@ -937,7 +945,7 @@ public class DocumentsContent extends BaseContent implements CrudListener<Group>
 		        });
 	}
 
-	private void doKitElement(KitElement elem, String seq, ZipOutputStream zipOut, Group g, List<Athlete> athletes) throws IOException {
+	private KitPart startKitElement(KitElement elem, String seq, Group g, List<Athlete> athletes) {
 		JXLSWorkbookStreamSource xlsWriter = elem.writerFactory.apply(athletes, g);
 
 		// apply default if the factory did not set
@@ -948,12 +956,17 @@ public class DocumentsContent extends BaseContent implements CrudListener<Group>
 			xlsWriter.setSortedAthletes(athletes);
 		}
 
-		InputStream is = Files.newInputStream(elem.isp);
-		xlsWriter.setInputStream(is);
+		xlsWriter.setTemplatePath(elem.isp);
 		xlsWriter.setTemplateFileName(elem.name);
-		InputStream in = xlsWriter.createInputStream();
+		// the document is queued on the report pool, its stream waits for it
+		ReportJob job;
+		try {
+			job = ReportJobs.submit(xlsWriter, OwlcmsSession.getLocale());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 		String name = seq + "_" + elem.id + "_" + g.getName() + "." + elem.extension;
-		ZipUtils.zipStream(in, name, false, zipOut);
+		return new KitPart(name, job);
 	}
 
 	private void doNotification(String text) {
@@ -999,8 +1012,7 @@ public class DocumentsContent extends BaseContent implements CrudListener<Group>
 			xlsWriter.setGroup(g);
 		}
 
-		InputStream is = Files.newInputStream(elem.isp);
-		xlsWriter.setInputStream(is);
+		xlsWriter.setTemplatePath(elem.isp);
 		xlsWriter.setTemplateFileName(elem.name);
 
 		if (doneCallback == null) {
@@ -1338,22 +1350,41 @@ public class DocumentsContent extends BaseContent implements CrudListener<Group>
 	private ZipOutputStream zipKit(List<Group> selectedItems, List<KitElement> elements, PipedOutputStream os) throws IOException {
 		int i = 1;
 		ZipOutputStream zipOut = null;
+		ArrayDeque<KitPart> started = new ArrayDeque<>();
 		try {
 			zipOut = new ZipOutputStream(os);
 			doPrintScript(zipOut);
 
+			// the documents are produced in parallel on the report pool, a few ahead of the one being zipped,
+			// and added to the zip in order.
+			int ahead = 2 * ReportJobs.getPoolSize();
 			for (Group g : selectedItems) {
-				// get current version of athletes.
-				List<Athlete> athletes = groupAthletes(g, true);
-
 				for (KitElement elem : elements) {
 					String seq = String.format("%02d", i);
-					doKitElement(elem, seq, zipOut, g, athletes);
+					// get current version of athletes, a separate copy for each document since they are
+					// produced at the same time.
+					started.addLast(startKitElement(elem, seq, g, groupAthletes(g, true)));
 					i++;
+					if (started.size() > ahead) {
+						KitPart part = started.removeFirst();
+						try (InputStream in = part.job().newInputStream()) {
+							ZipUtils.zipStream(in, part.name(), false, zipOut);
+						}
+					}
+				}
+			}
+			while (!started.isEmpty()) {
+				KitPart part = started.removeFirst();
+				try (InputStream in = part.job().newInputStream()) {
+					ZipUtils.zipStream(in, part.name(), false, zipOut);
 				}
 			}
 			return zipOut;
 		} finally {
+			// zipping was aborted (download closed, document failed): the documents not yet zipped are not needed
+			for (KitPart part : started) {
+				part.job().discard();
+			}
 			if (zipOut != null) {
 				zipOut.finish();
 				zipOut.close();
@@ -1383,9 +1414,11 @@ public class DocumentsContent extends BaseContent implements CrudListener<Group>
 			});
 		}
 		final var dc = doneCallback;
+		// the documents are queued from this thread, they must use the user's locale
+		Locale locale = OwlcmsSession.getLocale();
 		new Thread(() -> {
 			try {
-				zipKitToOutputStream(selectedItems, elements, errorProcessor, out);
+				OwlcmsSession.withLocale(locale, () -> zipKitToOutputStream(selectedItems, elements, errorProcessor, out));
 			} finally {
 				dc.accept("");
 			}
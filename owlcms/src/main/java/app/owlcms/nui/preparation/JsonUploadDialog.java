@@ -20,7 +20,7 @@ import com.vaadin.flow.component.html.H5;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
+import com.vaadin.flow.component.upload.receivers.FileBuffer;
 
 import app.owlcms.data.export.CompetitionData;
 import app.owlcms.i18n.Translator;
@@ -39,10 +39,11 @@ public class JsonUploadDialog extends Dialog {
 		H5 label = new H5(Translator.translate("ExportDatabase.WarningWillReplaceAll"));
 		label.getStyle().set("color", "red");
 
-		MemoryBuffer buffer = new MemoryBuffer();
+		// kept on disk, a large export is not held in memory during the restore
+		FileBuffer buffer = new FileBuffer();
 		Upload upload = new Upload(buffer);
 		upload.setWidth("40em");
-		upload.setAcceptedFileTypes("application/json");
+		upload.setAcceptedFileTypes("application/json", ".json", ".gz", ".zst");
 
 		TextArea ta = new TextArea(Translator.translate("Errors"));
 		ta.setHeight("20ex");
@@ -50,10 +51,12 @@ public class JsonUploadDialog extends Dialog {
 		ta.setVisible(false);
 
 		upload.addSucceededListener(event -> {
-			try {
-				processInput(event.getFileName(), buffer.getInputStream(), ta);
+			try (InputStream in = buffer.getInputStream()) {
+				processInput(event.getFileName(), in, ta);
 			} catch (Throwable e) {
 				ta.setValue(LoggerUtils./**/stackTrace(e));
+			} finally {
+				buffer.getFileData().getFile().delete();
 			}
 		});
 
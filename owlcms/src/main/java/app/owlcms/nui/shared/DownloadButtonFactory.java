@@ -22,6 +22,7 @@ import com.vaadin.flow.server.InputStreamFactory;
 
 import app.owlcms.components.elements.LazyDownloadButton;
 import app.owlcms.data.export.CompetitionData;
+import app.owlcms.data.export.CompetitionData.Compression;
 import app.owlcms.spreadsheet.JXLSWorkbookStreamSource;
 import app.owlcms.spreadsheet.XLSXWorkbookStreamSource;
 import ch.qos.logback.classic.Logger;
@@ -36,6 +37,7 @@ public class DownloadButtonFactory {
 
 	public static Div createDynamicJsonDownloadButton(String prefix, String label, Notification notification) {
 		UI ui = UI.getCurrent();
+		Compression compression = Compression.getDefault();
 		final LazyDownloadButton downloadButton = new LazyDownloadButton(
 		        label,
 		        new Icon(VaadinIcon.DOWNLOAD_ALT),
@@ -43,10 +45,10 @@ public class DownloadButtonFactory {
 			        LocalDateTime now = LocalDateTime.now().withNano(0);
 			        return prefix
 			                + "_" + now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH'h'mm"))
-			                + ".json";
+			                + compression.getExtension();
 		        },
 		        () -> {
-			        return new CompetitionData().exportData(ui, notification);
+			        return new CompetitionData().exportData(compression, ui, notification);
 		        });
 		downloadButton.setNotification(notification);
 		return new Div(downloadButton);
@@ -8,6 +8,7 @@ package app.owlcms.spreadsheet;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 import org.apache.poi.ss.usermodel.Sheet;
@@ -60,6 +61,12 @@ public class JXLSCompetitionBook extends JXLSWorkbookStreamSource {
 		return this.ageGroupPrefix;
 	}
 
+	@Override
+	protected String getCacheKey(Locale locale) {
+		String key = baseCacheKey(locale);
+		return key != null ? key + "|" + isIncludeUnfinished() + "|" + footerCacheKey() : null;
+	}
+
 	@Override
 	public List<Athlete> getSortedAthletes() {
 		// not used (setReportingInfo does all the work)
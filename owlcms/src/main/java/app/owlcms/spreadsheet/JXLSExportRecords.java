@@ -50,6 +50,13 @@ public class JXLSExportRecords extends JXLSWorkbookStreamSource {
 		this.allRecords = allRecords;
 	}
 
+	@Override
+	protected String getCacheKey(Locale locale) {
+		String key = baseCacheKey(locale);
+		return key != null ? key + "|" + (this.group != null ? this.group.getId() : null) + "|" + this.allRecords
+		        : null;
+	}
+
 	@Override
 	public Group getGroup() {
 		return this.group;
@@ -9,6 +9,7 @@ package app.owlcms.spreadsheet;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -50,6 +51,12 @@ public class JXLSResultSheet extends JXLSWorkbookStreamSource {
 		this.resultsByCategory = b;
 	}
 
+	@Override
+	protected String getCacheKey(Locale locale) {
+		String key = baseCacheKey(locale);
+		return key != null ? key + "|" + this.resultsByCategory + "|" + footerCacheKey() : null;
+	}
+
 	@Override
 	public List<Athlete> getSortedAthletes() {
 		if (this.sortedAthletes != null) {
@@ -7,6 +7,7 @@
 package app.owlcms.spreadsheet;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.function.Consumer;
 
 import org.apache.poi.ss.usermodel.Cell;
@@ -213,6 +214,15 @@ public class JXLSStartingListDocs extends JXLSWorkbookStreamSource {
 		return true;
 	}
 	
+	/**
+	 * The post-processor is code supplied by the caller, the document cannot be reused.
+	 */
+	@Override
+	protected String getCacheKey(Locale locale) {
+		String key = this.postProcessor != null ? null : baseCacheKey(locale);
+		return key != null ? key + "|" + footerCacheKey() : null;
+	}
+
 	public Consumer<Workbook> getPostProcessor() {
 		return this.postProcessor;
 	}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.spreadsheet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.utils.ResourceCache;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Templates read and inspected once, instead of copied to a temporary file and parsed for every document.
+ *
+ * A template is identified by its resolved path (the locale-specific variant has already been chosen by
+ * {@link JXLSWorkbookStreamSource#getLocalizedTemplate(String, String, java.util.Locale)} or by the template
+ * selection). It is read again when the file modification time changes, or when the override directory changes
+ * (new directory, zip of overrides unpacked, files changed under it).
+ *
+ * @author Jean-François Lamy
+ */
+class JXLSTemplateCache {
+
+	/**
+	 * The bytes of a template and whether it is a JXLS3 template.
+	 */
+	static final class Template {
+		private final String areaComment;
+		private final byte[] bytes;
+		private final long generation;
+		private final FileTime lastModified;
+
+		private Template(byte[] bytes, String areaComment, FileTime lastModified, long generation) {
+			this.bytes = bytes;
+			this.areaComment = areaComment;
+			this.lastModified = lastModified;
+			this.generation = generation;
+		}
+
+		/**
+		 * @return the text of the <code>jx:area</code> comment in the first cell, null for a JXLS1 template
+		 */
+		String getAreaComment() {
+			return this.areaComment;
+		}
+
+		boolean isJxls3() {
+			return this.areaComment != null;
+		}
+
+		InputStream newInputStream() {
+			return new ByteArrayInputStream(this.bytes);
+		}
+
+		/**
+		 * @return a new workbook, since JXLS1 transforms the workbook in place
+		 */
+		Workbook newWorkbook() throws IOException {
+			return WorkbookFactory.create(newInputStream());
+		}
+	}
+
+	private static final Map<Path, Template> templates = new ConcurrentHashMap<>();
+	private final static Logger logger = (Logger) LoggerFactory.getLogger(JXLSTemplateCache.class);
+
+	/**
+	 * @param path resolved template, in the override directory or on the classpath
+	 * @return the template, read again if it has changed
+	 * @throws IOException
+	 */
+	static Template get(Path path) throws IOException {
+		long generation = ResourceCache.getGeneration();
+		FileTime lastModified = Files.getLastModifiedTime(path);
+		Template t = templates.get(path);
+		if (t == null || t.generation != generation || !t.lastModified.equals(lastModified)) {
+			long start = System.currentTimeMillis();
+			t = read(Files.readAllBytes(path), lastModified, generation);
+			templates.put(path, t);
+			logger.debug("compiled template {} jxls3={} {}ms", path, t.isJxls3(), System.currentTimeMillis() - start);
+		}
+		return t;
+	}
+
+	/**
+	 * For a template given as a stream, with no path to remember it by.
+	 *
+	 * @param is template content
+	 * @return the template
+	 * @throws IOException
+	 */
+	static Template read(InputStream is) throws IOException {
+		return read(is.readAllBytes(), null, 0);
+	}
+
+	private static String findAreaComment(Workbook workbook) {
+		Sheet sheet = workbook.getSheetAt(0); // Get the first sheet
+		Row row = sheet.getRow(0); // Get the first row (0-based)
+		if (row != null) {
+			Cell cell = row.getCell(0); // Get the first cell in the row (0-based)
+			if (cell != null) {
+				Comment comment = cell.getCellComment();
+				if (comment != null && comment.getString().getString().contains("jx:area")) {
+					return comment.getString().getString();
+				}
+			}
+		}
+		return null;
+	}
+
+	private static Template read(byte[] bytes, FileTime lastModified, long generation) throws IOException {
+		try (Workbook workbook = WorkbookFactory.create(new ByteArrayInputStream(bytes))) {
+			return new Template(bytes, findAreaComment(workbook), lastModified, generation);
+		}
+	}
+
+}
@@ -8,6 +8,7 @@ package app.owlcms.spreadsheet;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -53,6 +54,21 @@ public class JXLSWinningSheet extends JXLSWorkbookStreamSource {
 		this.resultsByCategory = b;
 	}
 
+	/**
+	 * Only the header and footer are post-processed, which can be done on the template before streaming (the JXLS3
+	 * result templates).
+	 */
+	@Override
+	protected boolean isStreaming() {
+		return true;
+	}
+
+	@Override
+	protected String getCacheKey(Locale locale) {
+		String key = baseCacheKey(locale);
+		return key != null ? key + "|" + this.resultsByCategory + "|" + footerCacheKey() : null;
+	}
+
 	@Override
 	public List<Athlete> getSortedAthletes() {
 		if (this.sortedAthletes != null) {
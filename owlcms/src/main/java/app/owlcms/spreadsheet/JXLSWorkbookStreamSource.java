@@ -7,17 +7,19 @@
 package app.owlcms.spreadsheet;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -28,16 +30,13 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.hssf.usermodel.HeaderFooter;
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.Comment;
 import org.apache.poi.ss.usermodel.Footer;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.jxls.builder.JxlsStreaming;
@@ -65,7 +64,9 @@ import app.owlcms.init.OwlcmsFactory;
 import app.owlcms.init.OwlcmsSession;
 import app.owlcms.utils.DateTimeUtils;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.ResourceCache;
 import app.owlcms.utils.ResourceWalker;
+import app.owlcms.utils.StartupUtils;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import net.sf.jxls.transformer.XLSTransformer;
@@ -77,8 +78,21 @@ import net.sf.jxls.transformer.XLSTransformer;
 @SuppressWarnings("serial")
 public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter, InputStreamFactory {
 
+	/**
+	 * A document that failed after part of it was written; what was written must not be used.
+	 */
+	static class IncompleteDocumentException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		IncompleteDocumentException(String document, Throwable cause) {
+			super(document + " incomplete", cause);
+		}
+	}
+
 	final private static Logger jexlLogger = (Logger) LoggerFactory.getLogger("org.apache.commons.jexl2.JexlEngine");
 	final private static Logger logger = (Logger) LoggerFactory.getLogger(JXLSWorkbookStreamSource.class);
+	/** rows kept in memory when a large document is streamed, 0 to never stream */
+	static final int STREAMING_ROW_WINDOW = StartupUtils.getIntegerParam("reportRowWindow", 100);
 	final private static Logger tagLogger = (Logger) LoggerFactory.getLogger("net.sf.jxls.tag.ForEachTag");
 	private static ThreadLocal<Ranking> bestLifterRankingSystem = InheritableThreadLocal.withInitial(() -> null);
 
@@ -110,6 +124,8 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 	private InputStream inputStream;
 	private HashMap<String, Object> reportingBeans;
 	private String templateFileName;
+	private Path templatePath;
+	private Path resolvedTemplatePath;
 	private UI ui;
 	private Consumer<String> doneCallback;
 	private String fileExtension;
@@ -119,6 +135,7 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 	private Integer lastLine;
 	private Integer firstMergeLine;
 	private List<Integer> mergeColumnList;
+	private LocalDateTime footerTime;
 
 	public JXLSWorkbookStreamSource() {
 		this.ui = UI.getCurrent();
@@ -129,40 +146,32 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 	/**
 	 * Read the xls template and write the processed XLS file out.
 	 *
+	 * The session is only locked to get the user's locale; the document is produced by {@link ReportJobs} so the
+	 * user's other tabs are not frozen in the meantime.
+	 *
 	 * @see com.vaadin.flow.server.StreamResourceWriter#accept(java.io.OutputStream, com.vaadin.flow.server.VaadinSession)
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	public void accept(OutputStream stream, VaadinSession session) throws IOException {
 		try {
-			session.lock();
+			Locale[] locale = new Locale[1];
+			session.accessSynchronously(() -> locale[0] = OwlcmsSession.getLocale());
 			logger.debug("*** getting {}", getBestLifterScoringSystem());
-			writeStream(stream);
+			try (InputStream in = ReportJobs.submit(this, locale[0]).newInputStream()) {
+				in.transferTo(stream);
+			}
 		} catch (Throwable t) {
 			logger.error(LoggerUtils./**/stackTrace(t));
-		} finally {
-			session.unlock();
 		}
 	}
 
+	/**
+	 * The document is produced by {@link ReportJobs}; the stream waits for it when first read.
+	 */
 	@Override
 	public InputStream createInputStream() {
 		try {
-			PipedInputStream in = new PipedInputStream();
-			PipedOutputStream out = new PipedOutputStream(in);
-			new Thread(
-			        new Runnable() {
-				        @Override
-				        public void run() {
-					        try {
-						        writeStream(out);
-						        out.close();
-					        } catch (IOException e) {
-						        throw new RuntimeException(e);
-					        }
-				        }
-			        }).start();
-			return in;
+			return ReportJobs.submit(this, OwlcmsSession.getLocale()).newInputStream();
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -241,6 +250,62 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 		}
 	}
 
+	/**
+	 * Identifies the document for {@link ReportJobs}: a document with the same key produced with the same database
+	 * content is the same.
+	 *
+	 * Documents are not kept by default. A writer whose document only depends on the database, on the options of
+	 * {@link #baseCacheKey(Locale)} and on its own options can return the base key followed by its own options.
+	 *
+	 * @param locale the user's locale
+	 * @return the key, null if the document must always be produced again
+	 */
+	protected String getCacheKey(Locale locale) {
+		return null;
+	}
+
+	/**
+	 * @param locale the user's locale
+	 * @return the options common to all the writers, null if they cannot identify the document (template given as a
+	 *         stream, athletes given by the caller)
+	 */
+	protected final String baseCacheKey(Locale locale) {
+		if (this.inputStream != null || this.sortedAthletes != null) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder(getClass().getName());
+		sb.append('|').append(locale);
+		if (this.templatePath != null) {
+			try {
+				sb.append('|').append(this.templatePath.toUri()).append('@')
+				        .append(Files.getLastModifiedTime(this.templatePath).toMillis());
+			} catch (IOException e) {
+				return null;
+			}
+		} else {
+			// resolved by name, possibly from the override directory
+			sb.append('|').append(getTemplateFileName()).append('@').append(ResourceCache.getGeneration());
+		}
+		sb.append('|').append(this.group != null ? this.group.getId() : null);
+		sb.append('|').append(getCategory() != null ? getCategory().getId() : null);
+		sb.append('|').append(getChampionship() != null ? getChampionship().getName() : null);
+		sb.append('|').append(getAgeGroupPrefix());
+		sb.append('|').append(getBestLifterScoringSystem());
+		sb.append('|').append(isExcludeNotWeighed()).append('|').append(isEmptyOk());
+		return sb.toString();
+	}
+
+	/**
+	 * For the writers that use {@link #createStandardFooter(Workbook)}: the footer shows the time the document was
+	 * produced, to the minute, so a kept document is only handed out during that minute.
+	 *
+	 * @return the time shown in the footer
+	 */
+	protected final String footerCacheKey() {
+		this.footerTime = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+		return this.footerTime.toString();
+	}
+
 	public Integer getLastLine() {
 		return this.lastLine;
 	}
@@ -290,8 +355,9 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 			return new BufferedInputStream(this.inputStream);
 		}
 		String templateFileName2 = getTemplateFileName();
-		InputStream resourceAsStream = ResourceWalker.getFileOrResource(templateFileName2);
-		return new BufferedInputStream(resourceAsStream);
+		ResourceCache.Entry resource = ResourceWalker.getResource(templateFileName2);
+		this.resolvedTemplatePath = resource.getPath();
+		return new BufferedInputStream(resource.newInputStream());
 	}
 
 	public String getTemplateFileName() {
@@ -352,6 +418,7 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 
 	public void setInputStream(InputStream is) {
 		this.inputStream = is;
+		this.templatePath = null;
 	}
 
 	public void setLastLine(Integer lastLine) {
@@ -407,28 +474,36 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 		this.templateFileName = templateFileName;
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Use a template already resolved to a file (in the override directory or on the classpath). The template is
+	 * only read and inspected again if it has changed.
+	 *
+	 * @param templatePath
+	 */
+	public void setTemplatePath(Path templatePath) {
+		this.templatePath = templatePath;
+		this.inputStream = null;
+	}
+
+	/**
+	 * Write the document. When the document cannot be produced, the error is logged and nothing is written.
+	 *
+	 * @throws IOException if the document failed after part of it was written
+	 */
 	public void writeStream(OutputStream stream) throws IOException {
-		File tempFile = null;
 		try {
-			InputStream template;
 			Locale locale = OwlcmsSession.getLocale();
-			template = getTemplate(locale);
-			tempFile = File.createTempFile("jxlsTemplate", ".tmp");
-			FileUtils.copyInputStreamToFile(template, tempFile);
-			Workbook workbook = WorkbookFactory.create(tempFile);
-			if (checkJxls3(workbook)) {
-				jxls3Transform(stream, tempFile);
+			JXLSTemplateCache.Template template = getCompiledTemplate(locale);
+			if (checkJxls3(template)) {
+				jxls3Transform(stream, template);
 			} else {
-				jxls1Transform(stream, workbook);
+				jxls1Transform(stream, template.newWorkbook());
 			}
+		} catch (IncompleteDocumentException e) {
+			throw e;
 		} catch (Exception e) {
 			LoggerUtils.logError(logger, e);
 			return;
-		} finally {
-			if (tempFile != null) {
-				tempFile.delete();
-			}
 		}
 
 	}
@@ -467,8 +542,8 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 	}
 
 	protected void createStandardFooter(Workbook workbook) {
-		// Get the current date and time
-		LocalDateTime now = LocalDateTime.now();
+		// Get the current date and time, as given in the cache key if there is one
+		LocalDateTime now = this.footerTime != null ? this.footerTime : LocalDateTime.now();
 
 		// Get the default locale
 		Locale currentLocale = OwlcmsSession.getLocale();
@@ -515,10 +590,12 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 			for (String suffix : tryList) {
 				String name = templateName + suffix + ext;
 				try {
-					final InputStream resourceAsStream = ResourceWalker.getFileOrResource(name);
+					ResourceCache.Entry resource = ResourceWalker.getResource(name);
+					final InputStream resourceAsStream = resource.newInputStream();
 					// logger.debug("trying {} : {}", name, resourceAsStream);
 					if (resourceAsStream != null) {
 						this.setFileExtension(ext);
+						this.resolvedTemplatePath = resource.getPath();
 						return resourceAsStream;
 					}
 				} catch (FileNotFoundException e) {
@@ -533,6 +610,18 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 		setReportingBeans(new HashMap<>());
 	}
 
+	/**
+	 * Large tabular documents are written with only <code>reportRowWindow</code> rows in memory (default 100) when
+	 * their template is a JXLS3 template, instead of building the whole workbook before writing it. Their
+	 * {@link #postProcess(Workbook)} is then applied to the template before it is filled, so it must only change
+	 * sheet-level settings (names, headers, footers, print setup). JXLS1 templates are always filled in memory.
+	 *
+	 * @return true if the document can be streamed
+	 */
+	protected boolean isStreaming() {
+		return false;
+	}
+
 	protected void postProcess(Workbook workbook) {
 		// do nothing, to be overridden as needed,
 	}
@@ -574,32 +663,52 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 		getReportingBeans().put("sessions", sessions);
 	}
 
-	private boolean checkJxls3(Workbook tempWorkbook) throws IOException {
-		boolean jxls3 = false;
-		Sheet sheet = tempWorkbook.getSheetAt(0); // Get the first sheet
-		Row row = sheet.getRow(0); // Get the first row (0-based)
-		if (row != null) {
-			Cell cell = row.getCell(0); // Get the first cell in the row (0-based)
-			if (cell != null) {
-				Comment comment = cell.getCellComment();
-				if (comment != null && comment.getString().getString().contains("jx:area")) {
-					jxls3 = true;
-
-					extractVariables(comment.getString().getString());
-					if (getLastLine() != null) {
-						this.setPageLength(getLastLine());
-					}
-				}
+	private boolean checkJxls3(JXLSTemplateCache.Template template) {
+		if (template.isJxls3()) {
+			extractVariables(template.getAreaComment());
+			if (getLastLine() != null) {
+				this.setPageLength(getLastLine());
 			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * The template from the cache when it comes from a file, else read from the stream given by
+	 * {@link #getTemplate(Locale)}.
+	 */
+	private JXLSTemplateCache.Template getCompiledTemplate(Locale locale) throws Exception {
+		if (this.templatePath != null) {
+			return JXLSTemplateCache.get(this.templatePath);
+		}
+		this.resolvedTemplatePath = null;
+		try (InputStream is = getTemplate(locale)) {
+			if (this.resolvedTemplatePath != null) {
+				// found by name in the override directory or on the classpath
+				return JXLSTemplateCache.get(this.resolvedTemplatePath);
+			}
+			return JXLSTemplateCache.read(is);
+		}
+	}
+
+	/**
+	 * @return the template with the sheet-level post-processing already done, for streaming
+	 */
+	private InputStream postProcessedTemplate(JXLSTemplateCache.Template template) throws IOException {
+		try (Workbook workbook = template.newWorkbook()) {
+			postProcess(workbook);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			workbook.write(out);
+			return new ByteArrayInputStream(out.toByteArray());
 		}
-		return jxls3;
 	}
 
 	private boolean isSizeOk(int size) {
 		return size < getSizeLimit();
 	}
 
-	private void jxls1Transform(OutputStream stream, Workbook workbook) {
+	private void jxls1Transform(OutputStream stream, Workbook workbook) throws IncompleteDocumentException {
 		XLSTransformer transformer = new XLSTransformer();
 		configureTransformer(transformer);
 		try {
@@ -639,17 +748,19 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 			logger.debug("writing stream");
 			try {
 				workbook.write(stream);
-				if (this.doneCallback != null) {
-					this.doneCallback.accept(null);
-				}
-			} catch (Throwable e) {
-				LoggerUtils.logError(logger, e);
+			} catch (Exception e) {
+				// part of the workbook may already be written (disk full, download closed)
+				throw new IncompleteDocumentException(getTemplateFileName(), e);
+			}
+			if (this.doneCallback != null) {
+				this.doneCallback.accept(null);
 			}
 			logger.debug("wrote stream");
 		}
 	}
 
-	private void jxls3Transform(OutputStream stream, File templateFile) {
+	private void jxls3Transform(OutputStream stream, JXLSTemplateCache.Template template)
+	        throws IncompleteDocumentException {
 		Workbook workbook = null;
 		File tempFile = null;
 		try {
@@ -660,10 +771,28 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 			int size = athletes != null ? athletes.size() : 0;
 			logger.debug("reportingInfo sessions {} athletes: {}", reportingInfo.get("sessions"), size);
 			if (size == 0 ? isEmptyOk() : isSizeOk(size)) {
+				if (isStreaming() && STREAMING_ROW_WINDOW > 0) {
+					logger.info("starting jxls3 streaming for {}", getTemplateFileName());
+					long start = System.currentTimeMillis();
+					InputStream postProcessed = postProcessedTemplate(template);
+					try {
+						JxlsPoi.fill(postProcessed,
+						        JxlsStreaming.STREAMING_ON.withOptions(STREAMING_ROW_WINDOW, true, false), reportingInfo,
+						        stream);
+					} catch (Exception e) {
+						// part of the workbook may already be written
+						throw new IncompleteDocumentException(getTemplateFileName(), e);
+					}
+					logger.info("streaming done: {}ms", System.currentTimeMillis() - start);
+					if (this.doneCallback != null) {
+						this.doneCallback.accept(null);
+					}
+					return;
+				}
 				tempFile = File.createTempFile("jxlsOutput", ".xlsx");
-				logger.info("starting jxls3 processing for {}", templateFile);
+				logger.info("starting jxls3 processing for {}", getTemplateFileName());
 				long start = System.currentTimeMillis();
-				JxlsPoi.fill(new FileInputStream(templateFile), JxlsStreaming.STREAMING_OFF, reportingInfo, tempFile);
+				JxlsPoi.fill(template.newInputStream(), JxlsStreaming.STREAMING_OFF, reportingInfo, tempFile);
 				logger.info("processing done: {}ms", System.currentTimeMillis() - start);
 				workbook = WorkbookFactory.create(tempFile);
 				if (workbook != null) {
@@ -691,6 +820,8 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 				});
 				throw new RuntimeException(message);
 			}
+		} catch (IncompleteDocumentException e) {
+			throw e;
 		} catch (Exception e) {
 			LoggerUtils.logError(logger, e);
 		} finally {
@@ -702,11 +833,12 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter,
 			logger.debug("writing stream");
 			try {
 				workbook.write(stream);
-				if (this.doneCallback != null) {
-					this.doneCallback.accept(null);
-				}
-			} catch (Throwable e) {
-				LoggerUtils.logError(logger, e);
+			} catch (Exception e) {
+				// part of the workbook may already be written (disk full, download closed)
+				throw new IncompleteDocumentException(getTemplateFileName(), e);
+			}
+			if (this.doneCallback != null) {
+				this.doneCallback.accept(null);
 			}
 			logger.debug("wrote stream3");
 		}
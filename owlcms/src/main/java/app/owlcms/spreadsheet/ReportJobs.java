@@ -0,0 +1,555 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.spreadsheet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.apputils.LatencyHistogram;
+import app.owlcms.data.jpa.DataVersion;
+import app.owlcms.init.OwlcmsSession;
+import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.StartupUtils;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+/**
+ * Produces the documents on a bounded pool of threads, without holding the Vaadin session lock of the user who asked
+ * for them, so that the rest of the user interface keeps working while a competition book is being prepared.
+ *
+ * At most <code>reportThreads</code> documents are produced at the same time (default half the processors, at least
+ * 2); up to <code>reportQueueSize</code> more wait their turn (default 200). Documents are written to temporary files,
+ * not kept in memory. A finished document is kept, up to a total of <code>reportCacheSize</code> bytes (default 64MB),
+ * and handed out again as long as nothing has been written to the database and the request is the same (see
+ * {@link JXLSWorkbookStreamSource#getCacheKey(Locale)}). Identical requests made while the document is being produced
+ * wait for the same job. A document that failed is never kept.
+ *
+ * @author Jean-François Lamy
+ */
+public class ReportJobs {
+
+	/**
+	 * A finished document, in a temporary file deleted when it is neither kept nor waited for.
+	 */
+	private static final class Document {
+		private boolean deleted;
+		private final Path file;
+		private int refs;
+		private final long size;
+
+		private Document(Path file, long size, int refs) {
+			this.file = file;
+			this.size = size;
+			this.refs = refs;
+		}
+
+		synchronized void release() {
+			if (--this.refs <= 0 && !this.deleted) {
+				this.deleted = true;
+				deleteQuietly(this.file);
+			}
+		}
+
+		/**
+		 * @return false if the file is already gone
+		 */
+		synchronized boolean retain() {
+			if (this.deleted) {
+				return false;
+			}
+			this.refs++;
+			return true;
+		}
+	}
+
+	/**
+	 * A document being produced.
+	 */
+	public static final class ReportJob {
+		/** the users waiting for the document, before it exists */
+		private int consumers = 1;
+		private final String description;
+		private volatile Document document;
+		private volatile long endMillis;
+		private volatile Path file;
+		private volatile Future<?> future;
+		private final long id;
+		private final String key;
+		private final long queuedMillis = System.currentTimeMillis();
+		private final CompletableFuture<Document> result = new CompletableFuture<>();
+		private volatile long startMillis;
+		private volatile State state = State.QUEUED;
+		private final long version;
+
+		private ReportJob(String description, String key, long version) {
+			this.id = jobIds.incrementAndGet();
+			this.description = description;
+			this.key = key;
+			this.version = version;
+		}
+
+		/**
+		 * Stop producing the document, for everyone waiting for it.
+		 *
+		 * @return false if the document was already finished
+		 */
+		public boolean cancel() {
+			synchronized (this) {
+				if (this.state != State.QUEUED && this.state != State.RUNNING) {
+					return false;
+				}
+				this.state = State.CANCELLED;
+			}
+			Future<?> f = this.future;
+			if (f != null) {
+				f.cancel(true);
+			}
+			finish();
+			this.result.cancel(false);
+			cancelled.increment();
+			return true;
+		}
+
+		/**
+		 * The document will not be read by this caller; it is cancelled if nobody else waits for it.
+		 */
+		public void discard() {
+			boolean unused;
+			synchronized (this) {
+				unused = this.document == null && this.consumers == 1;
+			}
+			if (unused) {
+				cancel();
+			}
+			release();
+		}
+
+		/**
+		 * @return how much of the document has been written so far
+		 */
+		public long getBytesWritten() {
+			Path f = this.file;
+			try {
+				return f != null && Files.exists(f) ? Files.size(f) : 0;
+			} catch (IOException e) {
+				return 0;
+			}
+		}
+
+		public String getDescription() {
+			return this.description;
+		}
+
+		public long getId() {
+			return this.id;
+		}
+
+		public State getState() {
+			return this.state;
+		}
+
+		/**
+		 * The stream must be read or closed once, so that the temporary file can be deleted.
+		 *
+		 * @return a stream that waits for the document when first read, so that the caller is not blocked; reading
+		 *         fails if the document could not be produced (the error has been logged)
+		 */
+		public InputStream newInputStream() {
+			return new InputStream() {
+				private boolean closed;
+				private InputStream in;
+
+				@Override
+				public void close() throws IOException {
+					if (this.closed) {
+						return;
+					}
+					this.closed = true;
+					try {
+						if (this.in != null) {
+							this.in.close();
+						}
+					} finally {
+						release();
+					}
+				}
+
+				@Override
+				public int read() throws IOException {
+					return content().read();
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					return content().read(b, off, len);
+				}
+
+				private InputStream content() throws IOException {
+					if (this.closed) {
+						throw new IOException(ReportJob.this.description + " closed");
+					}
+					if (this.in == null) {
+						this.in = new BufferedInputStream(Files.newInputStream(await().file));
+					}
+					return this.in;
+				}
+			};
+		}
+
+		public JsonObject toJson() {
+			JsonObject json = Json.createObject();
+			json.put("id", this.id);
+			json.put("description", this.description);
+			json.put("state", this.state.name());
+			json.put("bytes", getBytesWritten());
+			long now = System.currentTimeMillis();
+			json.put("waitedMillis", (this.startMillis > 0 ? this.startMillis : now) - this.queuedMillis);
+			if (this.startMillis > 0) {
+				json.put("runningMillis", (this.endMillis > 0 ? this.endMillis : now) - this.startMillis);
+			}
+			return json;
+		}
+
+		/**
+		 * @return false if the job is finished, a new one is needed
+		 */
+		private synchronized boolean addConsumer() {
+			if (this.state != State.QUEUED && this.state != State.RUNNING) {
+				return false;
+			}
+			this.consumers++;
+			return true;
+		}
+
+		private Document await() throws IOException {
+			try {
+				return this.result.get();
+			} catch (ExecutionException e) {
+				throw new IOException(this.description, e.getCause());
+			} catch (CancellationException e) {
+				throw new IOException(this.description + " cancelled");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(this.description + " interrupted");
+			}
+		}
+
+		private void finish() {
+			this.endMillis = System.currentTimeMillis();
+			jobs.remove(this.id);
+			if (this.key != null) {
+				inFlight.remove(this.key, this);
+			}
+		}
+
+		private void release() {
+			Document d;
+			synchronized (this) {
+				d = this.document;
+				if (d == null) {
+					this.consumers--;
+				}
+			}
+			if (d != null) {
+				d.release();
+			}
+		}
+
+		private void run(JXLSWorkbookStreamSource writer, Locale locale) {
+			synchronized (this) {
+				if (this.state != State.QUEUED) {
+					return;
+				}
+				this.state = State.RUNNING;
+			}
+			this.startMillis = System.currentTimeMillis();
+			Path f = null;
+			long size;
+			try {
+				f = Files.createTempFile("report", ".tmp");
+				this.file = f;
+				try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(f))) {
+					OwlcmsSession.withLocale(locale, () -> {
+						try {
+							writer.writeStream(out);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				}
+				size = Files.size(f);
+			} catch (Throwable t) {
+				deleteQuietly(f);
+				synchronized (this) {
+					if (this.state == State.CANCELLED) {
+						return;
+					}
+					this.state = State.FAILED;
+				}
+				finish();
+				failed.increment();
+				LoggerUtils.logError(logger, t);
+				this.result.completeExceptionally(t);
+				return;
+			} finally {
+				// the pool threads are reused, do not leak the ranking to the next document
+				JXLSWorkbookStreamSource.setBestLifterRankingTL(null);
+			}
+			Document d;
+			synchronized (this) {
+				if (this.state == State.CANCELLED) {
+					deleteQuietly(f);
+					return;
+				}
+				this.state = State.DONE;
+				// one more reference while the document is handed to the cache
+				d = new Document(f, size, this.consumers + 1);
+				this.document = d;
+			}
+			finish();
+			completed.increment();
+			generationTime.record(TimeUnit.MILLISECONDS.toNanos(this.endMillis - this.startMillis));
+			if (this.key != null && size > 0) {
+				putCached(this.key, this.version, d);
+			}
+			this.result.complete(d);
+			d.release();
+		}
+	}
+
+	public enum State {
+		QUEUED, RUNNING, DONE, FAILED, CANCELLED
+	}
+
+	private record Cached(long version, Document document) {
+	}
+
+	private static final Map<String, Cached> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private static long cachedBytes;
+	private static final LongAdder cacheHits = new LongAdder();
+	private static final long CACHE_SIZE = StartupUtils.getIntegerParam("reportCacheSize", 64 * 1024 * 1024);
+	private static final LongAdder cancelled = new LongAdder();
+	private static final LongAdder completed = new LongAdder();
+	private static final ThreadPoolExecutor executor;
+	private static final LongAdder failed = new LongAdder();
+	private static volatile LatencyHistogram generationTime = new LatencyHistogram();
+	private static final Map<String, ReportJob> inFlight = new ConcurrentHashMap<>();
+	private static final AtomicLong jobIds = new AtomicLong();
+	private static final Map<Long, ReportJob> jobs = new ConcurrentHashMap<>();
+	private final static Logger logger = (Logger) LoggerFactory.getLogger(ReportJobs.class);
+
+	static {
+		int nbThreads = StartupUtils.getIntegerParam("reportThreads",
+		        Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+		int queueSize = StartupUtils.getIntegerParam("reportQueueSize", 200);
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(nbThreads, nbThreads, 60L, TimeUnit.SECONDS,
+		        new LinkedBlockingQueue<>(queueSize),
+		        r -> {
+			        Thread t = new Thread(r, "report-" + threadNumber.incrementAndGet());
+			        t.setDaemon(true);
+			        return t;
+		        });
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @param id the job number, as listed by {@link #toJson()}
+	 * @return false if there is no such job or it has finished
+	 */
+	public static boolean cancel(long id) {
+		ReportJob job = jobs.get(id);
+		return job != null && job.cancel();
+	}
+
+	/**
+	 * Forget the finished documents.
+	 */
+	public static synchronized void clearCache() {
+		for (Cached c : cache.values()) {
+			c.document().release();
+		}
+		cache.clear();
+		cachedBytes = 0;
+	}
+
+	/**
+	 * @return how many documents are produced at the same time
+	 */
+	public static int getPoolSize() {
+		return executor.getMaximumPoolSize();
+	}
+
+	public static void resetStatistics() {
+		generationTime = new LatencyHistogram();
+		cacheHits.reset();
+		cancelled.reset();
+		completed.reset();
+		failed.reset();
+	}
+
+	/**
+	 * Produce the document described by the writer, or reuse a finished or ongoing identical one.
+	 *
+	 * The writer's done callback is called once the document is available. The stream of the job must be read or
+	 * closed, or the job discarded.
+	 *
+	 * @param writer the document
+	 * @param locale the locale of the user who asked for the document
+	 * @return the job
+	 * @throws IOException if too many documents are waiting
+	 */
+	public static ReportJob submit(JXLSWorkbookStreamSource writer, Locale locale) throws IOException {
+		long version = DataVersion.get();
+		String key = DataVersion.isTracking() ? writer.getCacheKey(locale) : null;
+		String description = writer.getClass().getSimpleName()
+		        + (writer.getTemplateFileName() != null ? " " + writer.getTemplateFileName() : "");
+		ReportJob job;
+		if (key != null) {
+			Document cached = getCached(key, version);
+			if (cached != null) {
+				logger.debug("reusing {}", description);
+				cacheHits.increment();
+				job = new ReportJob(description, null, version);
+				job.state = State.DONE;
+				job.document = cached;
+				job.result.complete(cached);
+				notifyDone(writer, job);
+				return job;
+			}
+			ReportJob newJob = new ReportJob(description, key, version);
+			job = inFlight.compute(key,
+			        (k, running) -> running != null && running.version == version && running.addConsumer() ? running
+			                : newJob);
+			if (job != newJob) {
+				logger.debug("waiting for identical {}", description);
+				notifyDone(writer, job);
+				return job;
+			}
+		} else {
+			job = new ReportJob(description, null, version);
+		}
+		jobs.put(job.id, job);
+		ReportJob submitted = job;
+		try {
+			job.future = executor.submit(() -> submitted.run(writer, locale));
+		} catch (RejectedExecutionException e) {
+			job.state = State.FAILED;
+			job.finish();
+			throw new IOException("too many documents waiting, try again later");
+		}
+		return job;
+	}
+
+	/**
+	 * @return the pool, the jobs in progress, and the cache
+	 */
+	public static JsonObject toJson() {
+		JsonObject json = Json.createObject();
+		json.put("threads", executor.getMaximumPoolSize());
+		json.put("running", executor.getActiveCount());
+		json.put("queued", executor.getQueue().size());
+		json.put("completed", completed.sum());
+		json.put("failed", failed.sum());
+		json.put("cancelled", cancelled.sum());
+		json.put("cacheHits", cacheHits.sum());
+		synchronized (ReportJobs.class) {
+			json.put("cachedDocuments", cache.size());
+			json.put("cachedBytes", cachedBytes);
+		}
+		json.put("generation", generationTime.toJson());
+		JsonArray active = Json.createArray();
+		int i = 0;
+		for (ReportJob job : jobs.values()) {
+			active.set(i++, job.toJson());
+		}
+		json.put("jobs", active);
+		return json;
+	}
+
+	private static void deleteQuietly(Path f) {
+		if (f == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(f);
+		} catch (IOException e) {
+			logger.warn("cannot delete {}: {}", f, e.toString());
+		}
+	}
+
+	/**
+	 * @return the document, retained for the caller; null if absent or out of date
+	 */
+	private static synchronized Document getCached(String key, long version) {
+		Cached c = cache.get(key);
+		if (c == null) {
+			return null;
+		}
+		if (c.version() != version || !c.document().retain()) {
+			cache.remove(key);
+			cachedBytes -= c.document().size;
+			c.document().release();
+			return null;
+		}
+		return c.document();
+	}
+
+	private static void notifyDone(JXLSWorkbookStreamSource writer, ReportJob job) {
+		Consumer<String> doneCallback = writer.getDoneCallback();
+		if (doneCallback != null) {
+			job.result.thenRun(() -> doneCallback.accept(null));
+		}
+	}
+
+	private static synchronized void putCached(String key, long version, Document d) {
+		if (d.size > CACHE_SIZE / 4 || !d.retain()) {
+			return;
+		}
+		Cached prev = cache.put(key, new Cached(version, d));
+		if (prev != null) {
+			cachedBytes -= prev.document().size;
+			prev.document().release();
+		}
+		cachedBytes += d.size;
+		Iterator<Cached> it = cache.values().iterator();
+		while (cachedBytes > CACHE_SIZE && it.hasNext()) {
+			Cached evicted = it.next();
+			cachedBytes -= evicted.document().size;
+			evicted.document().release();
+			it.remove();
+		}
+	}
+
+}
@@ -7,6 +7,7 @@ import java.util.List;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.LoggerFactory;
 
@@ -27,7 +28,10 @@ public class XLSXAgeGroupsExport extends XLSXWorkbookStreamSource {
 	protected void writeStream(OutputStream stream) {
 		Workbook workbook = null;
 		try {
-			workbook = new XSSFWorkbook();
+			// rows kept in memory before being flushed to a temporary file, as for the streamed JXLS documents
+			workbook = JXLSWorkbookStreamSource.STREAMING_ROW_WINDOW > 0
+			        ? new SXSSFWorkbook(JXLSWorkbookStreamSource.STREAMING_ROW_WINDOW)
+			        : new XSSFWorkbook();
 			Sheet sheet = workbook.createSheet();
 			Row header = sheet.createRow(0);
 			header.createCell(0).setCellValue("code");
@@ -75,6 +79,11 @@ public class XLSXAgeGroupsExport extends XLSXWorkbookStreamSource {
 			stream.close();
 		} catch (Exception e) {
 			LoggerUtils.logError(this.logger, e);
+		} finally {
+			if (workbook instanceof SXSSFWorkbook sw) {
+				// remove the temporary files holding the flushed rows
+				sw.dispose();
+			}
 		}
 	}
 
@@ -796,6 +796,18 @@ public class UIEvent {
 			return this.currentDisplayAffected;
 		}
 
+		/**
+		 * A pending update that only refreshes the order, with no weight change to announce and no clock to stop, can
+		 * be dropped when a newer update from the same origin is queued for the same display.
+		 *
+		 * @param newer an event posted after this one
+		 * @return true if this event need not be delivered
+		 */
+		public boolean isSupersededBy(Object newer) {
+			return newer instanceof LiftingOrderUpdated && !this.currentDisplayAffected && this.newWeight == null
+			        && Objects.equals(getOrigin(), ((LiftingOrderUpdated) newer).getOrigin());
+		}
+
 		public boolean isDisplayToggle() {
 			return this.displayToggle;
 		}
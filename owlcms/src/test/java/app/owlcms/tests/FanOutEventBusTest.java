@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.fieldofplay.FanOutEventBus;
+
+public class FanOutEventBusTest {
+
+	static class Listener {
+		final List<Object> received = new ArrayList<>();
+		CountDownLatch done;
+		CountDownLatch release = new CountDownLatch(0);
+		CountDownLatch started = new CountDownLatch(1);
+
+		Listener(int expected) {
+			this.done = new CountDownLatch(expected);
+		}
+
+		@Subscribe
+		void onInteger(Integer i) throws InterruptedException {
+			this.started.countDown();
+			this.release.await();
+			synchronized (this.received) {
+				this.received.add(i);
+			}
+			this.done.countDown();
+		}
+
+		@Subscribe
+		void onString(String s) throws InterruptedException {
+			this.started.countDown();
+			this.release.await();
+			synchronized (this.received) {
+				this.received.add(s);
+			}
+			this.done.countDown();
+		}
+	}
+
+	@Test
+	public void testOrderPerListener() throws InterruptedException {
+		FanOutEventBus bus = new FanOutEventBus("test", null);
+		Listener l1 = new Listener(100);
+		Listener l2 = new Listener(100);
+		bus.register(l1);
+		bus.register(l2);
+		for (int i = 0; i < 100; i++) {
+			bus.post(i);
+		}
+		assertTrue(l1.done.await(5, TimeUnit.SECONDS));
+		assertTrue(l2.done.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, l1.received.get(i));
+			assertEquals(i, l2.received.get(i));
+		}
+	}
+
+	@Test
+	public void testSuperseded() throws InterruptedException {
+		// a pending string is superseded by a newer string, integers are always delivered
+		FanOutEventBus bus = new FanOutEventBus("test",
+		        (newer, pending) -> newer instanceof String && pending instanceof String);
+		Listener l = new Listener(4);
+		l.release = new CountDownLatch(1);
+		bus.register(l);
+		bus.post("first");
+		// wait until "first" is being handled, the rest queues behind it
+		assertTrue(l.started.await(5, TimeUnit.SECONDS));
+		bus.post(1);
+		bus.post("second");
+		bus.post("third");
+		// delivered last, "second" would have come before it
+		bus.post(2);
+		l.release.countDown();
+		assertTrue(l.done.await(5, TimeUnit.SECONDS));
+		assertEquals(List.of("first", 1, "third", 2), l.received);
+		assertEquals(1L, (long) bus.toJson().getNumber("coalesced"));
+	}
+
+	@Test
+	public void testUnregister() throws InterruptedException {
+		FanOutEventBus bus = new FanOutEventBus("test", null);
+		Listener l = new Listener(1);
+		bus.register(l);
+		bus.post("a");
+		assertTrue(l.done.await(5, TimeUnit.SECONDS));
+		bus.unregister(l);
+		// the mailbox is gone when unregister returns, the event is not queued for the listener
+		assertEquals(0L, (long) bus.toJson().getNumber("listeners"));
+		bus.post("b");
+		assertEquals(List.of("a"), l.received);
+	}
+
+}
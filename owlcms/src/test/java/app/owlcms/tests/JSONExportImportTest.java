@@ -1,14 +1,29 @@
 package app.owlcms.tests;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import app.owlcms.Main;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
 import app.owlcms.data.config.Config;
 import app.owlcms.data.export.CompetitionData;
+import app.owlcms.data.export.CompetitionData.Compression;
+import app.owlcms.data.group.GroupRepository;
 import app.owlcms.data.jpa.JPAService;
+import app.owlcms.data.records.RecordDefinitionReader;
+import app.owlcms.data.records.RecordRepository;
 
 public class JSONExportImportTest {
 	
@@ -35,4 +50,59 @@ public class JSONExportImportTest {
 		}
 	}
 
+	@Test
+	public void testCompressed() {
+		// the import recognizes the compression by itself
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			new CompetitionData().writeData(out, Compression.GZIP);
+			CompetitionData imported = new CompetitionData()
+			        .importData(new ByteArrayInputStream(out.toByteArray()));
+			assertEquals(AthleteRepository.findAll().size(), imported.getAthletes().size());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testRestore() throws IOException {
+		// records are exported after the athletes, make sure there are some
+		try (InputStream zip = this.getClass().getResourceAsStream("/testData/records/EWFRecords.zip")) {
+			RecordDefinitionReader.readZip(zip);
+		}
+		Map<Long, String> placements = placements();
+		int groups = GroupRepository.findAll().size();
+		long participations = countParticipations();
+		int records = RecordRepository.findAll().size();
+		assertTrue(placements.size() > 0);
+		assertTrue(participations > 0);
+		assertTrue(records > 0);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new CompetitionData().writeData(out, Compression.GZIP);
+		new CompetitionData().restore(new ByteArrayInputStream(out.toByteArray()));
+
+		assertEquals(placements, placements());
+		assertEquals(groups, GroupRepository.findAll().size());
+		assertEquals(participations, countParticipations());
+		assertEquals(records, RecordRepository.findAll().size());
+	}
+
+	private static long countParticipations() {
+		return JPAService.runInTransaction(
+		        em -> em.createQuery("select count(p) from Participation p", Long.class).getSingleResult());
+	}
+
+	/**
+	 * @return the group and category of each athlete
+	 */
+	private static Map<Long, String> placements() {
+		Map<Long, String> placements = new TreeMap<>();
+		for (Athlete a : AthleteRepository.findAll()) {
+			placements.put(a.getId(),
+			        (a.getGroup() != null ? a.getGroup().getName() : "-") + " " + a.getCategoryCode());
+		}
+		return placements;
+	}
+
 }
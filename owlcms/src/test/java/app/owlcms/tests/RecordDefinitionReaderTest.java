@@ -7,11 +7,14 @@
 package app.owlcms.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static app.owlcms.tests.AllTests.assertEqualsToReferenceFile;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
@@ -32,6 +35,7 @@ import app.owlcms.data.config.Config;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.data.records.RecordDefinitionReader;
 import app.owlcms.data.records.RecordEvent;
+import app.owlcms.data.records.RecordIndex;
 import app.owlcms.data.records.RecordRepository;
 import app.owlcms.spreadsheet.JXLSExportRecords;
 import app.owlcms.utils.LoggerUtils;
@@ -147,6 +151,27 @@ public class RecordDefinitionReaderTest {
         assertEquals("wrong number of results", 3, results.size());
     }
 
+    @Test
+    public void _07_testIndex() throws IOException {
+        String zipURI = "/testData/records/IWF_EWF.zip";
+        InputStream zipStream = this.getClass().getResourceAsStream(zipURI);
+        RecordDefinitionReader.readZip(zipStream);
+
+        // the index keeps the largest record of each kind among those the query returns
+        Map<String, Double> expected = new TreeMap<>();
+        for (RecordEvent r : RecordRepository.findFiltered(Gender.M, 16, 66.0D, null, null)) {
+            expected.merge(r.getKey(), r.getRecordValue(), Math::max);
+        }
+        Map<String, Double> actual = new TreeMap<>();
+        for (RecordEvent r : RecordIndex.getCurrent().findDisplayable(Gender.M, 16, 66.0D)) {
+            assertNull("duplicate " + r.getKey(), actual.put(r.getKey(), r.getRecordValue()));
+        }
+        assertEquals(expected, actual);
+
+        RecordRepository.clearLoadedRecords();
+        assertEquals("index not invalidated", 0, RecordIndex.getCurrent().findDisplayable(Gender.M, 16, 66.0D).size());
+    }
+
 //    @Test
 //    @Ignore
 //    public void _08_testJson() throws IOException {
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.Main;
+import app.owlcms.data.config.Config;
+import app.owlcms.data.jpa.DataVersion;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.data.platform.Platform;
+import app.owlcms.data.records.RecordRepository;
+import app.owlcms.spreadsheet.JXLSWorkbookStreamSource;
+import app.owlcms.spreadsheet.ReportJobs;
+
+public class ReportJobsTest {
+
+    @SuppressWarnings("serial")
+    static class CountingWriter extends JXLSWorkbookStreamSource {
+        private final String key;
+        final AtomicInteger produced = new AtomicInteger();
+
+        CountingWriter(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void writeStream(OutputStream stream) throws IOException {
+            stream.write((this.key + " " + this.produced.incrementAndGet()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        protected String getCacheKey(Locale locale) {
+            return this.key;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static class FailingWriter extends CountingWriter {
+        FailingWriter(String key) {
+            super(key);
+        }
+
+        @Override
+        public void writeStream(OutputStream stream) throws IOException {
+            super.writeStream(stream);
+            throw new IOException("truncated");
+        }
+    }
+
+    @BeforeClass
+    public static void setupTests() {
+        Main.injectSuppliers();
+        JPAService.init(true, true);
+        Config.initConfig();
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    private static byte[] produce(JXLSWorkbookStreamSource writer) throws IOException {
+        try (InputStream in = ReportJobs.submit(writer, Locale.ENGLISH).newInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void writeToDatabase() {
+        JPAService.runInTransaction(em -> {
+            em.persist(new Platform("Gym " + System.nanoTime()));
+            return null;
+        });
+    }
+
+    @Before
+    public void setupTest() {
+        ReportJobs.clearCache();
+    }
+
+    @Test
+    public void testDataVersion() throws IOException {
+        assertTrue(DataVersion.isTracking());
+        long before = DataVersion.get();
+        JPAService.runInTransaction(em -> em.createQuery("select p from Platform p").getResultList());
+        assertEquals(before, DataVersion.get());
+        writeToDatabase();
+        assertTrue(DataVersion.get() > before);
+
+        // not before the commit
+        before = DataVersion.get();
+        long flushed = JPAService.runInTransaction(em -> {
+            em.persist(new Platform("Gym " + System.nanoTime()));
+            em.flush();
+            return DataVersion.get();
+        });
+        assertEquals(before, flushed);
+        assertTrue(DataVersion.get() > flushed);
+
+        // bulk deletes are not seen by the listeners
+        before = DataVersion.get();
+        RecordRepository.clearNewRecords();
+        assertTrue(DataVersion.get() > before);
+    }
+
+    @Test
+    public void testHit() throws IOException {
+        CountingWriter writer = new CountingWriter("hit");
+        byte[] first = produce(writer);
+        byte[] second = produce(writer);
+        assertEquals(1, writer.produced.get());
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    public void testMiss() throws IOException {
+        CountingWriter a = new CountingWriter("a");
+        CountingWriter b = new CountingWriter("b");
+        produce(a);
+        produce(b);
+        assertEquals(1, a.produced.get());
+        assertEquals(1, b.produced.get());
+
+        // no key, never kept
+        CountingWriter none = new CountingWriter(null);
+        produce(none);
+        produce(none);
+        assertEquals(2, none.produced.get());
+    }
+
+    @Test
+    public void testInvalidation() throws IOException {
+        CountingWriter writer = new CountingWriter("invalidation");
+        byte[] first = produce(writer);
+        writeToDatabase();
+        byte[] second = produce(writer);
+        assertEquals(2, writer.produced.get());
+        assertEquals("invalidation 1", new String(first, StandardCharsets.UTF_8));
+        assertEquals("invalidation 2", new String(second, StandardCharsets.UTF_8));
+
+        // kept again from then on
+        produce(writer);
+        assertEquals(2, writer.produced.get());
+    }
+
+    @Test
+    public void testFailureNotKept() {
+        FailingWriter writer = new FailingWriter("failure");
+        for (int i = 0; i < 2; i++) {
+            try {
+                produce(writer);
+                fail("a failed document must not be returned");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        assertEquals(2, writer.produced.get());
+    }
+
+}
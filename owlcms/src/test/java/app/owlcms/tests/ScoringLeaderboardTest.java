@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.Main;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.athleteSort.Ranking;
+import app.owlcms.data.competition.ScoringLeaderboard;
+import app.owlcms.data.config.Config;
+import app.owlcms.data.jpa.JPAService;
+
+public class ScoringLeaderboardTest {
+
+    private static final Ranking RANKING = Ranking.BW_SINCLAIR;
+
+    @BeforeClass
+    public static void setupTests() {
+        Main.injectSuppliers();
+        JPAService.init(true, true);
+        Config.initConfig();
+        TestData.insertInitialData(5, true);
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    private static Map<Long, Integer> persistedRanks() {
+        List<Athlete> athletes = JPAService.runInTransaction(em -> AthleteRepository.doFindAll(em));
+        Map<Long, Integer> ranks = new HashMap<>();
+        for (Athlete a : athletes) {
+            ranks.put(a.getId(), Ranking.getRanking(a, RANKING));
+        }
+        return ranks;
+    }
+
+    /**
+     * Same body weight for all, the first athlete has the lowest total; the leaderboard is built again.
+     */
+    private static void setDistinctTotals(List<Athlete> athletes) {
+        JPAService.runInTransaction(em -> {
+            int i = 0;
+            for (Athlete a : athletes) {
+                a.setValidation(false);
+                a.setSnatch1ActualLift(Integer.toString(60 + i));
+                a.setCleanJerk1ActualLift(Integer.toString(80 + i));
+                a.setCleanJerk2ActualLift(null);
+                a.setValidation(true);
+                em.merge(a);
+                i++;
+            }
+            return null;
+        });
+        ScoringLeaderboard.getCurrent().invalidate();
+        JPAService.runInTransaction(em -> {
+            ScoringLeaderboard.getCurrent().rank(em, RANKING, List.of());
+            return null;
+        });
+    }
+
+    @Test
+    public void rankShiftIsPersistedInOtherGroups() {
+        List<Athlete> athletes = AthleteRepository.findAll();
+        setDistinctTotals(athletes);
+        Map<Long, Integer> before = persistedRanks();
+        Athlete lifter = athletes.get(0);
+        assertEquals(athletes.size(), (int) before.get(lifter.getId()));
+
+        // the platform of the lifter only has the lifter in its session; a big clean and jerk moves the lifter first
+        JPAService.runInTransaction(em -> {
+            Athlete a = em.find(Athlete.class, lifter.getId());
+            a.setValidation(false);
+            a.setCleanJerk2ActualLift("200");
+            a.setValidation(true);
+            ScoringLeaderboard.getCurrent().rank(em, RANKING, List.of(a));
+            em.flush();
+            return null;
+        });
+
+        Map<Long, Integer> after = persistedRanks();
+        assertEquals(1, (int) after.get(lifter.getId()));
+        int otherGroup = 0;
+        for (Athlete a : athletes) {
+            if (a.getId().equals(lifter.getId())) {
+                continue;
+            }
+            assertEquals(a.getFullName(), before.get(a.getId()) + 1, (int) after.get(a.getId()));
+            if (!a.getGroup().getName().equals(lifter.getGroup().getName())) {
+                otherGroup++;
+            }
+        }
+        assertTrue(otherGroup > 0);
+
+        // the leaderboard follows, read back by id
+        List<Athlete> leaderboard = ScoringLeaderboard.getCurrent().getLeaderboard(RANKING, Gender.M);
+        assertEquals(athletes.size(), leaderboard.size());
+        assertEquals(lifter.getId(), leaderboard.get(0).getId());
+    }
+
+    @Test
+    public void savedAthleteIsMoved() {
+        List<Athlete> athletes = AthleteRepository.findAll();
+        setDistinctTotals(athletes);
+        Athlete lifter = AthleteRepository.findById(athletes.get(0).getId());
+        assertEquals(lifter.getId(), last(ScoringLeaderboard.getCurrent().getLeaderboard(RANKING, Gender.M)).getId());
+
+        // corrected on the athlete card, not by a field of play
+        lifter.setValidation(false);
+        lifter.setCleanJerk2ActualLift("200");
+        lifter.setValidation(true);
+        AthleteRepository.save(lifter);
+
+        List<Athlete> leaderboard = ScoringLeaderboard.getCurrent().getLeaderboard(RANKING, Gender.M);
+        assertEquals(athletes.size(), leaderboard.size());
+        assertEquals(lifter.getId(), leaderboard.get(0).getId());
+        assertEquals(1, Ranking.getRanking(leaderboard.get(0), RANKING));
+        assertEquals(2, Ranking.getRanking(leaderboard.get(1), RANKING));
+    }
+
+    private static Athlete last(List<Athlete> l) {
+        return l.get(l.size() - 1);
+    }
+
+}
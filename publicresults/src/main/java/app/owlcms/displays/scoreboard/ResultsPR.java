@@ -33,6 +33,7 @@ import app.owlcms.components.elements.DecisionElementPR;
 import app.owlcms.components.elements.unload.UnloadObserverPR;
 import app.owlcms.displays.options.DisplayOptions;
 import app.owlcms.i18n.Translator;
+import app.owlcms.prutils.LatestUpdateMailbox;
 import app.owlcms.prutils.SafeEventBusRegistrationPR;
 import app.owlcms.prutils.SoundUtils;
 import app.owlcms.publicresults.DecisionReceiverServlet;
@@ -48,7 +49,7 @@ import ch.qos.logback.classic.Logger;
 import elemental.json.Json;
 import elemental.json.JsonArray;
 import elemental.json.JsonObject;
-import elemental.json.impl.JreJsonFactory;
+import elemental.json.JsonValue;
 
 /**
  * Class Scoreboard
@@ -96,6 +97,7 @@ public class ResultsPR extends LitTemplate
     private boolean done;
     private int lastHashCode;
     private UnloadObserverPR eventObserver;
+    private final LatestUpdateMailbox<UpdateEvent> updateMailbox = new LatestUpdateMailbox<>();
 
     /**
      * Instantiates a new results board.
@@ -317,43 +319,8 @@ public class ResultsPR extends LitTemplate
         // logger.debug("### Results received DecisionEvent {} {} {}", e.getEventType(),
         // e.getRecordKind(),
         // e.getRecordMessage());
-        DecisionEventType eventType = e.getEventType();
-        switch (eventType) {
-            case DOWN_SIGNAL:
-                this.decisionVisible = true;
-                if (this.ui == null || this.ui.isClosing()) {
-                    return;
-                }
-                this.ui.access(() -> {
-                    // setBoardMode(e.getMode());
-                    this.getElement().setProperty("decisionVisible", true);
-                });
-                break;
-            case RESET:
-                this.decisionVisible = false;
-                if (this.ui == null || this.ui.isClosing()) {
-                    return;
-                }
-                this.ui.access(() -> {
-                    setBoardMode(e.getMode());
-                    this.getElement().setProperty("decisionVisible", false);
-                });
-                break;
-            case FULL_DECISION:
-                this.decisionVisible = true;
-                if (this.ui == null || this.ui.isClosing()) {
-                    return;
-                }
-                this.ui.access(() -> {
-                    setBoardMode(e.getMode());
-                    this.getElement().setProperty("decisionVisible", true);
-                    this.getElement().setProperty("recordKind", e.getRecordKind());
-                    this.getElement().setProperty("recordMessage", e.getRecordMessage());
-                });
-                break;
-            default:
-                break;
-        }
+        // updates received after the decision must be displayed after it
+        this.updateMailbox.barrier(() -> queueDecision(e));
     }
 
     @Subscribe
@@ -376,103 +343,100 @@ public class ResultsPR extends LitTemplate
             // event is not for us
             return;
         }
+        // stale updates not yet displayed are replaced by this one
+        this.updateMailbox.post(this.ui, e, this::doUpdate);
+    }
+
+    private void doUpdate(UpdateEvent e) {
         String fopState = e.getFopState();
         BreakType breakType = e.getBreakType();
         String stylesDir = e.getStylesDir();
 
-        this.ui.access(() -> {
-            this.getElement().setProperty("stylesDir", stylesDir);
-            this.getElement().setProperty("done", e.isDone());
-            setDone(e.isDone());
-
-            setBoardMode(e.getMode());
-            String groupInfo = e.getGroupInfo();
-            String description = null;
-            if (groupInfo != null) {
-                description = e.getGroupDescription();
-                if (description == null) {
-                    description = Translator.translate("Group_number", groupInfo);
-                }
+        this.getElement().setProperty("stylesDir", stylesDir);
+        this.getElement().setProperty("done", e.isDone());
+        setDone(e.isDone());
+
+        setBoardMode(e.getMode());
+        String groupInfo = e.getGroupInfo();
+        String description = null;
+        if (groupInfo != null) {
+            description = e.getGroupDescription();
+            if (description == null) {
+                description = Translator.translate("Group_number", groupInfo);
             }
-            this.getElement().setProperty("groupDescription", description != null ? description : "");
+        }
+        this.getElement().setProperty("groupDescription", description != null ? description : "");
 
-            String athletes = e.getAthletes();
-            if (isLiftingOrder()) {
-                athletes = e.getLiftingOrderAthletes();
-            }
+        // the JSON values are parsed once by the servlet and shared by all the sessions
+        JsonArray athleteList = e.getAthletesJson();
+        if (isLiftingOrder()) {
+            athleteList = e.getLiftingOrderAthletesJson();
+        }
 
-            String leaders = e.getLeaders();
-            String records = e.getRecords();
-            String translationMap = e.getTranslationMap();
+        JsonArray leaderList = e.getLeadersJson();
+        JsonObject recordList = e.getRecordsJson();
+        JsonValue translationMap = e.getTranslationMapJson();
 
-            JreJsonFactory jreJsonFactory = new JreJsonFactory();
+        if (athleteList != null) {
+            this.getElement().setPropertyJson("athletes", athleteList);
+            this.getElement().setProperty("resultLines", athleteList.length() + 1);
+        } else {
+            this.getElement().setPropertyJson("athletes", Json.createNull());
+            this.getElement().setProperty("resultLines", 1);
+        }
 
-            if (athletes != null) {
-                JsonArray athleteList = (JsonArray) jreJsonFactory.parse(athletes);
-                this.getElement().setPropertyJson("athletes", athleteList);
-                this.getElement().setProperty("resultLines", athleteList.length() + 1);
-            } else {
-                this.getElement().setPropertyJson("athletes", Json.createNull());
-                this.getElement().setProperty("resultLines", 1);
-            }
+        if (leaderList != null && (breakType != BreakType.GROUP_DONE || e.isSinclairMeet())) {
+            this.getElement().setPropertyJson("leaders", leaderList);
+            this.getElement().setProperty("leaderLines", leaderList.length() + 1);
+        } else {
+            this.getElement().setPropertyJson("leaders", Json.createNull());
+            this.getElement().setProperty("leaderLines", 1);
+        }
 
-            if (leaders != null && (breakType != BreakType.GROUP_DONE || e.isSinclairMeet())) {
-                JsonArray leaderList = (JsonArray) jreJsonFactory.parse(leaders);
-                this.getElement().setPropertyJson("leaders", leaderList);
-                this.getElement().setProperty("leaderLines", leaderList.length() + 1);
-            } else {
-                this.getElement().setPropertyJson("leaders", Json.createNull());
-                this.getElement().setProperty("leaderLines", 1);
-            }
+        if (recordList != null) {
+            this.getElement().setPropertyJson("records", recordList);
+            this.getElement().setProperty("recordKind", e.getRecordKind());
+            this.getElement().setProperty("recordMessage", e.getRecordMessage());
+        } else {
+            this.getElement().setPropertyJson("records", Json.createNull());
+        }
 
-            if (records != null) {
-                // logger.debug("records = {}", records);
-                JsonObject recordList = (JsonObject) jreJsonFactory.parse(records);
-                this.getElement().setPropertyJson("records", recordList);
-                this.getElement().setProperty("recordKind", e.getRecordKind());
-                this.getElement().setProperty("recordMessage", e.getRecordMessage());
-            } else {
-                // logger.debug("null records = {}", records);
-                this.getElement().setPropertyJson("records", Json.createNull());
-            }
+        this.getElement().setPropertyJson("t", translationMap != null ? translationMap : Json.createNull());
+
+        // following two are fixed in owlcms
+        getElement().setProperty("showTotal", true);
+        getElement().setProperty("showBest", true);
+
+        getElement().setProperty("showLiftRanks", e.isShowLiftRanks());
+        getElement().setProperty("showTotalRank", e.isShowTotalRank());
+        getElement().setProperty("showSinclair", e.isShowSinclair());
+        getElement().setProperty("showSinclairRanks", e.isShowSinclairRank());
+
+        getElement().setProperty("competitionName", e.getCompetitionName());
+        getElement().setProperty("attempt", e.getAttempt());
+        getElement().setProperty("fullName", e.getFullName());
+        getElement().setProperty("groupInfo", e.getGroupInfo());
+        getElement().setProperty("startNumber", e.getStartNumber());
+        getElement().setProperty("teamName", e.getTeamName());
+        getElement().setProperty("weight", e.getWeight() != null ? e.getWeight() : 0);
+        getElement().setProperty("categoryName", e.getCategoryName());
+        setWideTeamNames(e.getWideTeamNames());
+        String liftsDone = e.getLiftsDone();
+        getElement().setProperty("liftsDone", " \u2013 " + liftsDone);
 
-            this.getElement().setPropertyJson("t",
-                    translationMap != null ? jreJsonFactory.parse(translationMap) : Json.createNull());
-
-            // following two are fixed in owlcms
-            getElement().setProperty("showTotal", true);
-            getElement().setProperty("showBest", true);
-
-            getElement().setProperty("showLiftRanks", e.isShowLiftRanks());
-            getElement().setProperty("showTotalRank", e.isShowTotalRank());
-            getElement().setProperty("showSinclair", e.isShowSinclair());
-            getElement().setProperty("showSinclairRanks", e.isShowSinclairRank());
-
-            getElement().setProperty("competitionName", e.getCompetitionName());
-            getElement().setProperty("attempt", e.getAttempt());
-            getElement().setProperty("fullName", e.getFullName());
-            getElement().setProperty("groupInfo", e.getGroupInfo());
-            getElement().setProperty("startNumber", e.getStartNumber());
-            getElement().setProperty("teamName", e.getTeamName());
-            getElement().setProperty("weight", e.getWeight() != null ? e.getWeight() : 0);
-            getElement().setProperty("categoryName", e.getCategoryName());
-            setWideTeamNames(e.getWideTeamNames());
-            String liftsDone = e.getLiftsDone();
-            getElement().setProperty("liftsDone", " \u2013 " + liftsDone);
-
-            if (StartupUtils.isDebugSetting()) {
-                logger./**/warn("### state {} {}", fopState, e.getBreakType());
-            }
+        if (StartupUtils.isDebugSetting()) {
+            logger./**/warn("### state {} {}", fopState, e.getBreakType());
+        }
 
-            if (this.decisionVisible) {
-                // wait for next event before doing anything.
-                logger.debug("### waiting for decision reset");
-            } else if ("INACTIVE".equals(fopState)
-                    || ("BREAK".equals(fopState) && e.getBreakType() == BreakType.GROUP_DONE)) {
-                logger.debug("### not in a group");
-                doDone(e.getFullName());
-                this.needReset = true;
-            } 
+        if (this.decisionVisible) {
+            // wait for next event before doing anything.
+            logger.debug("### waiting for decision reset");
+        } else if ("INACTIVE".equals(fopState)
+                || ("BREAK".equals(fopState) && e.getBreakType() == BreakType.GROUP_DONE)) {
+            logger.debug("### not in a group");
+            doDone(e.getFullName());
+            this.needReset = true;
+        } 
 //            else if ("BREAK".equals(fopState)) {
 //                logger.debug("### in a break {}", e.getBreakType());
 //                // also trigger a break timer event to make sure we are in sync with owlcms
@@ -481,14 +445,13 @@ public class ResultsPR extends LitTemplate
 //                TimerReceiverServlet.getEventBus().post(breakStart);
 //                this.needReset = true;
 //            } 
-            else if (!this.needReset) {
-                // logger.debug("no reset");
-            } else {
-                logger.debug("### resetting becase of ranking update");
-                // this.getElement().callJsFunction("reset");
-                this.needReset = false;
-            }
-        });
+        else if (!this.needReset) {
+            // logger.debug("no reset");
+        } else {
+            logger.debug("### resetting becase of ranking update");
+            // this.getElement().callJsFunction("reset");
+            this.needReset = false;
+        }
     }
 
     protected boolean isVideo() {
@@ -576,6 +539,49 @@ public class ResultsPR extends LitTemplate
         return this.initializationNeeded;
     }
 
+    /**
+     * Called under the update mailbox lock.
+     */
+    private void queueDecision(DecisionEvent e) {
+        DecisionEventType eventType = e.getEventType();
+        switch (eventType) {
+            case DOWN_SIGNAL:
+                this.decisionVisible = true;
+                if (this.ui == null || this.ui.isClosing()) {
+                    return;
+                }
+                this.ui.access(() -> {
+                    // setBoardMode(e.getMode());
+                    this.getElement().setProperty("decisionVisible", true);
+                });
+                break;
+            case RESET:
+                this.decisionVisible = false;
+                if (this.ui == null || this.ui.isClosing()) {
+                    return;
+                }
+                this.ui.access(() -> {
+                    setBoardMode(e.getMode());
+                    this.getElement().setProperty("decisionVisible", false);
+                });
+                break;
+            case FULL_DECISION:
+                this.decisionVisible = true;
+                if (this.ui == null || this.ui.isClosing()) {
+                    return;
+                }
+                this.ui.access(() -> {
+                    setBoardMode(e.getMode());
+                    this.getElement().setProperty("decisionVisible", true);
+                    this.getElement().setProperty("recordKind", e.getRecordKind());
+                    this.getElement().setProperty("recordMessage", e.getRecordMessage());
+                });
+                break;
+            default:
+                break;
+        }
+    }
+
     private void setBoardMode(String mode) {
         // logger.debug("set board mode {} from {}", mode, LoggerUtils.whereFrom());
         this.getElement().setProperty("mode", mode);
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.prutils;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import app.owlcms.utils.StartupUtils;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Bounded executor on which the publicresults event bus delivers the events to the sessions, and the statistics of
+ * the delivery.
+ *
+ * The number of threads is fixed, so a burst of updates with many connected spectators cannot create an unbounded
+ * number of threads. When the queue is full, the event is delivered by the servlet thread that received it, which slows
+ * down owlcms (it waits for the reply before sending the next update) instead of exhausting memory.
+ *
+ * The sizes can be overridden with the eventBusThreads and eventBusQueueSize parameters (OWLCMS_EVENTBUSTHREADS
+ * etc. as environment variables).
+ *
+ * @author Jean-François Lamy
+ */
+public class EventBusExecutor {
+
+    private final static Logger logger = (Logger) LoggerFactory.getLogger(EventBusExecutor.class);
+
+    private static ThreadPoolExecutor executor;
+    private static final LongAdder callerRuns = new LongAdder();
+    private static final LongAdder droppedUpdates = new LongAdder();
+    private static final LongAdder pushes = new LongAdder();
+    private static final LongAdder pushNanos = new LongAdder();
+    private static final LongAccumulator maxPushNanos = new LongAccumulator(Long::max, 0);
+
+    /**
+     * @return the shared executor for the event buses
+     */
+    public synchronized static ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            int nbThreads = StartupUtils.getIntegerParam("eventBusThreads", 16);
+            int queueSize = StartupUtils.getIntegerParam("eventBusQueueSize", 10000);
+            executor = new ThreadPoolExecutor(nbThreads, nbThreads,
+                    60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queueSize),
+                    new ThreadFactoryBuilder().setNameFormat("eventbus-%d").setDaemon(true).build(),
+                    (r, ex) -> {
+                        callerRuns.increment();
+                        if (!ex.isShutdown()) {
+                            r.run();
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            logger.info("event bus executor threads={} queue={}", nbThreads, queueSize);
+        }
+        return executor;
+    }
+
+    /**
+     * @return a printable summary of the delivery statistics
+     */
+    public static String getStatisticsString() {
+        ThreadPoolExecutor ex = executor;
+        long nbPushes = pushes.sum();
+        StringBuilder sb = new StringBuilder();
+        if (ex != null) {
+            sb.append("deliveries active=").append(ex.getActiveCount())
+                    .append(" queued=").append(ex.getQueue().size())
+                    .append(" completed=").append(ex.getCompletedTaskCount())
+                    .append(" callerRuns=").append(callerRuns.sum())
+                    .append(" ");
+        }
+        sb.append("pushes=").append(nbPushes)
+                .append(" avgLatencyMs=").append(nbPushes > 0 ? pushNanos.sum() / nbPushes / 1_000_000 : 0)
+                .append(" maxLatencyMs=").append(maxPushNanos.get() / 1_000_000)
+                .append(" droppedUpdates=").append(droppedUpdates.sum());
+        return sb.toString();
+    }
+
+    /**
+     * An update was replaced by a newer one before the session displayed it.
+     */
+    static void recordDropped() {
+        droppedUpdates.increment();
+    }
+
+    /**
+     * @param latencyNanos time between the delivery of an update to a session and its display
+     */
+    static void recordPush(long latencyNanos) {
+        pushes.increment();
+        pushNanos.add(latencyNanos);
+        maxPushNanos.accumulate(latencyNanos);
+    }
+
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.prutils;
+
+import java.util.function.Consumer;
+
+import com.vaadin.flow.component.UI;
+
+/**
+ * Per-session mailbox for scoreboard updates.
+ *
+ * An update carries the full state of the scoreboard, so when a session has not yet displayed an update (its UI is
+ * busy or slow to push), a newer update simply replaces it and a single ui.access is queued for the pair.
+ *
+ * Events of other kinds (decisions) must be queued through {@link #barrier(Runnable)} so that later updates are not
+ * displayed before them.
+ *
+ * @author Jean-François Lamy
+ *
+ * @param <T> the update type
+ */
+public class LatestUpdateMailbox<T> {
+
+    private static class Entry<T> {
+        T event;
+        long postedNanos;
+
+        Entry(T event, long postedNanos) {
+            this.event = event;
+            this.postedNanos = postedNanos;
+        }
+    }
+
+    /** update waiting for its ui.access command to run */
+    private Entry<T> pending;
+
+    /**
+     * Queue an event of another kind on the UI; updates posted afterwards are displayed after it.
+     *
+     * The event is queued and the waiting update is forgotten under the same lock as {@link #post}, so that no update
+     * can be queued in between and then be replaced by a later one.
+     *
+     * @param queueEvent queues the event with ui.access
+     */
+    public synchronized void barrier(Runnable queueEvent) {
+        queueEvent.run();
+        this.pending = null;
+    }
+
+    /**
+     * Display the update in the UI, unless a newer update arrives before the UI gets to it.
+     *
+     * @param ui
+     * @param event
+     * @param handler called with the UI locked
+     */
+    public void post(UI ui, T event, Consumer<T> handler) {
+        Entry<T> entry;
+        synchronized (this) {
+            if (this.pending != null) {
+                this.pending.event = event;
+                EventBusExecutor.recordDropped();
+                return;
+            }
+            entry = new Entry<>(event, System.nanoTime());
+            this.pending = entry;
+        }
+        try {
+            ui.access(() -> {
+                T latest;
+                synchronized (this) {
+                    if (this.pending == entry) {
+                        this.pending = null;
+                    }
+                    latest = entry.event;
+                }
+                EventBusExecutor.recordPush(System.nanoTime() - entry.postedNanos);
+                handler.accept(latest);
+            });
+        } catch (RuntimeException e) {
+            // UI detached; do not keep updates waiting for a command that will never run
+            synchronized (this) {
+                if (this.pending == entry) {
+                    this.pending = null;
+                }
+            }
+            throw e;
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ package app.owlcms.publicresults;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -17,6 +18,7 @@ import com.google.common.eventbus.EventBus;
 
 import app.owlcms.uievents.DecisionEvent;
 import app.owlcms.uievents.DecisionEventType;
+import app.owlcms.utils.PostBody;
 import app.owlcms.utils.ProxyUtils;
 import app.owlcms.utils.StartupUtils;
 import ch.qos.logback.classic.Logger;
@@ -66,7 +68,9 @@ public class DecisionReceiverServlet extends HttpServlet implements Traceable {
             tracePairs(pairs);
         }
 
-        String updateKey = req.getParameter("updateKey");
+        resp.setHeader(PostBody.BODY_HEADER, PostBody.JSON_GZIP);
+        Map<String, String> params = PostBody.getParameters(req);
+        String updateKey = params.get("updateKey");
         if (updateKey == null || !updateKey.equals(this.secret)) {
             this.getLogger().error("denying access from {} expected {} got {} ", req.getRemoteHost(), this.secret,
                     updateKey);
@@ -76,7 +80,7 @@ public class DecisionReceiverServlet extends HttpServlet implements Traceable {
 
         DecisionEvent decisionEvent = new DecisionEvent();
 
-        String eventTypeString = req.getParameter("decisionEventType");
+        String eventTypeString = params.get("decisionEventType");
         DecisionEventType eventType = null;
         try {
             eventType = DecisionEventType.valueOf(eventTypeString);
@@ -88,18 +92,18 @@ public class DecisionReceiverServlet extends HttpServlet implements Traceable {
             return;
         }
 
-        String ds = req.getParameter("d1");
+        String ds = params.get("d1");
         decisionEvent.setDecisionLight1(ds != null ? Boolean.valueOf(ds) : null);
-        ds = req.getParameter("d2");
+        ds = params.get("d2");
         decisionEvent.setDecisionLight2(ds != null ? Boolean.valueOf(ds) : null);
-        ds = req.getParameter("d3");
+        ds = params.get("d3");
         decisionEvent.setDecisionLight3(ds != null ? Boolean.valueOf(ds) : null);
-        decisionEvent.setDecisionLightsVisible(Boolean.valueOf(req.getParameter("decisionsVisible")));
-        decisionEvent.setDown(Boolean.valueOf(req.getParameter("down")));
-        decisionEvent.setFopName(req.getParameter("fop"));
-        decisionEvent.setRecordKind(req.getParameter("recordKind"));
-        decisionEvent.setRecordMessage(req.getParameter("recordMessage"));
-        decisionEvent.setMode(req.getParameter("mode"));
+        decisionEvent.setDecisionLightsVisible(Boolean.valueOf(params.get("decisionsVisible")));
+        decisionEvent.setDown(Boolean.valueOf(params.get("down")));
+        decisionEvent.setFopName(params.get("fop"));
+        decisionEvent.setRecordKind(params.get("recordKind"));
+        decisionEvent.setRecordMessage(params.get("recordMessage"));
+        decisionEvent.setMode(params.get("mode"));
 
         String fopName = decisionEvent.getFopName();
 
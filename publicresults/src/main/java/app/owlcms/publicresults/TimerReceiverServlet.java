@@ -23,6 +23,7 @@ import app.owlcms.prutils.CountdownTimer;
 import app.owlcms.uievents.BreakTimerEvent;
 import app.owlcms.uievents.TimerEvent;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.PostBody;
 import app.owlcms.utils.ProxyUtils;
 import app.owlcms.utils.StartupUtils;
 import ch.qos.logback.classic.Logger;
@@ -72,7 +73,9 @@ public class TimerReceiverServlet extends HttpServlet implements Traceable {
                 tracePairs(pairs);
             }
 
-            String updateKey = req.getParameter("updateKey");
+            resp.setHeader(PostBody.BODY_HEADER, PostBody.JSON_GZIP);
+            Map<String, String> params = PostBody.getParameters(req);
+            String updateKey = params.get("updateKey");
             if (updateKey == null || !updateKey.equals(this.secret)) {
                 getLogger().error("denying access from {} expected {} got {} ", req.getRemoteHost(),
                         this.secret,
@@ -81,7 +84,7 @@ public class TimerReceiverServlet extends HttpServlet implements Traceable {
                 return;
             }
 
-            String fopName = processTimerReq(req, resp, getLogger());
+            String fopName = processTimerReq(params, resp, getLogger());
 
             if (defaultFopName == null) {
                 defaultFopName = fopName;
@@ -91,22 +94,23 @@ public class TimerReceiverServlet extends HttpServlet implements Traceable {
         }
     }
 
-    public static String processTimerReq(HttpServletRequest req, HttpServletResponse resp, Logger logger) throws IOException {
+    public static String processTimerReq(Map<String, String> params, HttpServletResponse resp, Logger logger)
+            throws IOException {
         TimerEvent timerEvent = null;
         BreakTimerEvent breakTimerEvent = null;
 
-        String athleteTimerEventTypeString = req.getParameter("athleteTimerEventType");
-        String breakTimerEventTypeString = req.getParameter("breakTimerEventType");
-        String fopName = req.getParameter("fopName");
+        String athleteTimerEventTypeString = params.get("athleteTimerEventType");
+        String breakTimerEventTypeString = params.get("breakTimerEventType");
+        String fopName = params.get("fopName");
         
         logger.debug("processing timer request {} {} {}", fopName, athleteTimerEventTypeString, breakTimerEventTypeString);
 
-        int athleteMillis = computeAthleteTargetDuration(req);
-        int breakMillis = computeBreakTargetDuration(req);
+        int athleteMillis = computeAthleteTargetDuration(params);
+        int breakMillis = computeBreakTargetDuration(params);
 
-        String indefiniteString = req.getParameter("timerIndefiniteBreak");
+        String indefiniteString = params.get("timerIndefiniteBreak");
         boolean indefinite = indefiniteString != null ? Boolean.valueOf(indefiniteString) : false;
-        String silentString = req.getParameter("silent");
+        String silentString = params.get("silent");
         boolean silent = silentString != null ? Boolean.valueOf(silentString) : false;
 
         if (athleteTimerEventTypeString != null) {
@@ -156,7 +160,7 @@ public class TimerReceiverServlet extends HttpServlet implements Traceable {
         }
         if (breakTimerEvent != null) {
             breakTimerEvent.setFopName(fopName);
-            String mode = req.getParameter("mode");
+            String mode = params.get("mode");
             breakTimerEvent.setMode(mode);
             getEventBus().post(breakTimerEvent);
         }
@@ -181,9 +185,9 @@ public class TimerReceiverServlet extends HttpServlet implements Traceable {
         return t;
     }
 
-    private static int computeAthleteTargetDuration(HttpServletRequest req) {
-        String startTimeMillisString = req.getParameter("athleteStartTimeMillis");
-        String secondsString = req.getParameter("athleteMillisRemaining");
+    private static int computeAthleteTargetDuration(Map<String, String> params) {
+        String startTimeMillisString = params.get("athleteStartTimeMillis");
+        String secondsString = params.get("athleteMillisRemaining");
         if (startTimeMillisString == null) {
             // relative time
             int deltaMillis = secondsString != null ? Integer.valueOf(secondsString) : 0;
@@ -198,9 +202,9 @@ public class TimerReceiverServlet extends HttpServlet implements Traceable {
         }
     }
 
-    private static int computeBreakTargetDuration(HttpServletRequest req) {
-        String startTimeMillisString = req.getParameter("breakStartTimeMillis");
-        String secondsString = req.getParameter("breakMillisRemaining");
+    private static int computeBreakTargetDuration(Map<String, String> params) {
+        String startTimeMillisString = params.get("breakStartTimeMillis");
+        String secondsString = params.get("breakMillisRemaining");
         long startTimeMillis = secondsString != null ? Long.valueOf(startTimeMillisString) : System.currentTimeMillis();
         int deltaMillis = secondsString != null ? Integer.valueOf(secondsString) : 0;
         long targetMillis = startTimeMillis + deltaMillis;
@@ -11,19 +11,22 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.LoggerFactory;
 
 import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
 
+import app.owlcms.prutils.EventBusExecutor;
 import app.owlcms.uievents.BreakType;
 import app.owlcms.uievents.UpdateEvent;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.PostBody;
 import app.owlcms.utils.ProxyUtils;
 import app.owlcms.utils.ResourceWalker;
 import app.owlcms.utils.StartupUtils;
+import app.owlcms.utils.UpdateDelta;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import jakarta.servlet.ServletException;
@@ -38,9 +41,18 @@ public class UpdateReceiverServlet extends HttpServlet implements Traceable {
 
     private static String defaultFopName;
     static EventBus eventBus = new AsyncEventBus(UpdateReceiverServlet.class.getSimpleName(),
-            Executors.newCachedThreadPool());
+            EventBusExecutor.getExecutor());
     private static Map<String, UpdateEvent> updateCache = new HashMap<>();
+    private static Map<String, ReceivedUpdate> receivedUpdates = new ConcurrentHashMap<>();
     static long lastUpdate = 0;
+    private static long lastStatistics = 0;
+    private static final long STATISTICS_INTERVAL = 60 * 1000;
+
+    /**
+     * last full update received for a platform, with its sequence number, used as base for the deltas.
+     */
+    private record ReceivedUpdate(long seq, Map<String, String> parameters) {
+    }
 
     public static EventBus getEventBus() {
         return eventBus;
@@ -95,7 +107,10 @@ public class UpdateReceiverServlet extends HttpServlet implements Traceable {
             if (session != null) {
                 session.invalidate();
             }
-            String updateKey = req.getParameter("updateKey");
+            resp.setHeader(UpdateDelta.DELTA_HEADER, "true");
+            resp.setHeader(PostBody.BODY_HEADER, PostBody.JSON_GZIP);
+            Map<String, String> params = PostBody.getParameters(req);
+            String updateKey = params.get("updateKey");
             if (updateKey == null || !updateKey.equals(this.secret)) {
                 this.getLogger().error("denying access from {} expected {} got {} ", req.getRemoteHost(), this.secret,
                         updateKey);
@@ -120,68 +135,74 @@ public class UpdateReceiverServlet extends HttpServlet implements Traceable {
                 }
             }
 
+            params = applyDelta(params);
+            if (params == null) {
+                resp.sendError(UpdateDelta.NEED_SNAPSHOT, "Missing base update, full update required.");
+                return;
+            }
+
             UpdateEvent updateEvent = new UpdateEvent();
 
-            updateEvent.setCompetitionName(req.getParameter("competitionName"));
-            updateEvent.setFopName(req.getParameter("fop"));
-            updateEvent.setFopState(req.getParameter("fopState"));
-            updateEvent.setStylesDir(req.getParameter("stylesDir"));
+            updateEvent.setCompetitionName(params.get("competitionName"));
+            updateEvent.setFopName(params.get("fop"));
+            updateEvent.setFopState(params.get("fopState"));
+            updateEvent.setStylesDir(params.get("stylesDir"));
 
-            updateEvent.setAttempt(req.getParameter("attempt"));
-            updateEvent.setCategoryName(req.getParameter("categoryName"));
-            updateEvent.setFullName(req.getParameter("fullName"));
-            updateEvent.setGroupName(req.getParameter("groupName"));
-            updateEvent.setGroupInfo(req.getParameter("groupInfo"));
+            updateEvent.setAttempt(params.get("attempt"));
+            updateEvent.setCategoryName(params.get("categoryName"));
+            updateEvent.setFullName(params.get("fullName"));
+            updateEvent.setGroupName(params.get("groupName"));
+            updateEvent.setGroupInfo(params.get("groupInfo"));
 
-            updateEvent.setHidden(Boolean.valueOf(req.getParameter("hidden")));
-            String startNumber = req.getParameter("startNumber");
+            updateEvent.setHidden(Boolean.valueOf(params.get("hidden")));
+            String startNumber = params.get("startNumber");
             updateEvent.setStartNumber(startNumber != null ? Integer.parseInt(startNumber) : 0);
-            updateEvent.setTeamName(req.getParameter("teamName"));
-            String weight = req.getParameter("weight");
+            updateEvent.setTeamName(params.get("teamName"));
+            String weight = params.get("weight");
             updateEvent.setWeight(weight != null ? Integer.parseInt(weight) : null);
 
-            updateEvent.setShowLiftRanks(Boolean.parseBoolean(req.getParameter("showLiftRanks")));
-            updateEvent.setShowTotalRank(Boolean.parseBoolean(req.getParameter("showTotalRank")));
-            updateEvent.setShowSinclair(Boolean.parseBoolean(req.getParameter("showSinclair")));
-            updateEvent.setShowSinclairRank(Boolean.parseBoolean(req.getParameter("showSinclairRank")));
+            updateEvent.setShowLiftRanks(Boolean.parseBoolean(params.get("showLiftRanks")));
+            updateEvent.setShowTotalRank(Boolean.parseBoolean(params.get("showTotalRank")));
+            updateEvent.setShowSinclair(Boolean.parseBoolean(params.get("showSinclair")));
+            updateEvent.setShowSinclairRank(Boolean.parseBoolean(params.get("showSinclairRank")));
             
-            updateEvent.setAthletes(req.getParameter("groupAthletes"));
-            updateEvent.setLiftingOrderAthletes(req.getParameter("liftingOrderAthletes"));
-            updateEvent.setLeaders(req.getParameter("leaders"));
+            updateEvent.setAthletes(params.get("groupAthletes"));
+            updateEvent.setLiftingOrderAthletes(params.get("liftingOrderAthletes"));
+            updateEvent.setLeaders(params.get("leaders"));
 
-            updateEvent.setRecords(req.getParameter("records"));
-            updateEvent.setRecordKind(req.getParameter("recordKind"));
-            updateEvent.setRecordMessage(req.getParameter("recordMessage"));
-            updateEvent.setLiftsDone(req.getParameter("liftsDone"));
+            updateEvent.setRecords(params.get("records"));
+            updateEvent.setRecordKind(params.get("recordKind"));
+            updateEvent.setRecordMessage(params.get("recordMessage"));
+            updateEvent.setLiftsDone(params.get("liftsDone"));
 
-            updateEvent.setWideTeamNames(Boolean.parseBoolean(req.getParameter("wideTeamNames")));
-            String timeAllowed = req.getParameter("timeAllowed");
-            updateEvent.setTimeAllowed(timeAllowed != null ? Integer.parseInt(req.getParameter("timeAllowed")) : null);
+            updateEvent.setWideTeamNames(Boolean.parseBoolean(params.get("wideTeamNames")));
+            String timeAllowed = params.get("timeAllowed");
+            updateEvent.setTimeAllowed(timeAllowed != null ? Integer.parseInt(params.get("timeAllowed")) : null);
 
-            updateEvent.setTranslationMap(req.getParameter("translationMap"));
+            updateEvent.setTranslationMap(params.get("translationMap"));
 
-            String mode = req.getParameter("mode");
+            String mode = params.get("mode");
             updateEvent.setMode(mode);
             
-            String breakTimerEventTypeString = req.getParameter("breakTimerEventType");
+            String breakTimerEventTypeString = params.get("breakTimerEventType");
             // we only process the break timer events. athlete timers wait until next FOP events.
             if (breakTimerEventTypeString != null) {
                 logger.debug("processing break keepalive");
-                TimerReceiverServlet.processTimerReq(req, null, getLogger());
+                TimerReceiverServlet.processTimerReq(params, null, getLogger());
             }
 
-            String breakTypeString = req.getParameter("breakType");
-            updateEvent.setBreak("true".equalsIgnoreCase(req.getParameter("break")));
+            String breakTypeString = params.get("breakType");
+            updateEvent.setBreak("true".equalsIgnoreCase(params.get("break")));
             if (breakTypeString == BreakType.GROUP_DONE.name()) {
                 updateEvent.setRecords(null);
                 updateEvent.setRecordKind("none");
                 updateEvent.setRecordMessage("");
                 updateEvent.setDone(true);
             }
-            updateEvent.setCeremonyType(req.getParameter("ceremonyType"));
-            updateEvent.setBreakType(req.getParameter("breakType"));
+            updateEvent.setCeremonyType(params.get("ceremonyType"));
+            updateEvent.setBreakType(params.get("breakType"));
             
-            String sinclairMeetString = req.getParameter("sinclairMeet");
+            String sinclairMeetString = params.get("sinclairMeet");
             updateEvent.setSinclairMeet(Boolean.parseBoolean(sinclairMeetString));
 
             String fopName = updateEvent.getFopName();
@@ -189,6 +210,9 @@ public class UpdateReceiverServlet extends HttpServlet implements Traceable {
 
             long now = System.currentTimeMillis();
 
+            // parse once here rather than in every scoreboard session
+            updateEvent.parseJson(updateCache.get(fopName));
+
             // the computed hashcode is not included in the hashcode
             // this avoids every servlet recomputing it.
             updateEvent.setHashCode(updateEvent.hashCode());
@@ -209,13 +233,54 @@ public class UpdateReceiverServlet extends HttpServlet implements Traceable {
             if (defaultFopName == null) {
                 defaultFopName = fopName;
             }
+            if (now - lastStatistics > STATISTICS_INTERVAL) {
+                lastStatistics = now;
+                this.getLogger().info("{}", EventBusExecutor.getStatisticsString());
+            }
 
-            resp.sendError(200);
+            resp.setStatus(200);
         } catch (Exception e) {
             this.getLogger().error(LoggerUtils.stackTrace(e));
         }
     }
 
+    /**
+     * Rebuild the full update when a delta is received.
+     *
+     * @param params the parameters received
+     * @return the full parameters, or null if the delta does not apply to the last update received
+     */
+    private Map<String, String> applyDelta(Map<String, String> params) {
+        String fopName = params.get("fop");
+        String seqString = params.get(UpdateDelta.SEQ);
+        if (fopName == null) {
+            return params;
+        }
+        if (UpdateDelta.isDelta(params)) {
+            ReceivedUpdate previous = receivedUpdates.get(fopName);
+            long base = Long.parseLong(params.get(UpdateDelta.BASE));
+            if (previous == null || previous.seq() != base) {
+                this.getLogger().info("delta for {} based on {}, have {}, requesting full update", fopName, base,
+                        previous != null ? previous.seq() : null);
+                return null;
+            }
+            try {
+                params = UpdateDelta.apply(previous.parameters(), params);
+            } catch (RuntimeException e) {
+                this.getLogger().error("could not apply delta for {}, requesting full update {}", fopName,
+                        LoggerUtils.exceptionMessage(e));
+                return null;
+            }
+        }
+        if (seqString != null) {
+            receivedUpdates.put(fopName, new ReceivedUpdate(Long.parseLong(seqString), params));
+        } else {
+            // sender does not number its updates
+            receivedUpdates.remove(fopName);
+        }
+        return params;
+    }
+
     @Override
     public Logger getLogger() {
         return logger;
@@ -11,6 +11,10 @@ import java.util.Objects;
 import org.slf4j.LoggerFactory;
 
 import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
 
 public class UpdateEvent {
 
@@ -53,6 +57,15 @@ public class UpdateEvent {
     private boolean showSinclairRank;
     private boolean showSinclair;
 
+    /*
+     * parsed once by the servlet and shared by all the scoreboards, not part of equals/hashCode
+     */
+    private JsonArray athletesJson;
+    private JsonArray liftingOrderAthletesJson;
+    private JsonArray leadersJson;
+    private JsonObject recordsJson;
+    private JsonValue translationMapJson;
+
     public UpdateEvent() {
     }
 
@@ -96,6 +109,14 @@ public class UpdateEvent {
         return this.athletes;
     }
 
+    /**
+     * @return the parsed athletes, null if absent
+     * @see #parseJson(UpdateEvent)
+     */
+    public JsonArray getAthletesJson() {
+        return this.athletesJson;
+    }
+
     public String getAttempt() {
         return this.attempt;
     }
@@ -160,10 +181,18 @@ public class UpdateEvent {
         return this.leaders;
     }
 
+    public JsonArray getLeadersJson() {
+        return this.leadersJson;
+    }
+
     public String getLiftingOrderAthletes() {
         return this.liftingOrderAthletes;
     }
 
+    public JsonArray getLiftingOrderAthletesJson() {
+        return this.liftingOrderAthletesJson;
+    }
+
     public String getLiftsDone() {
         return this.liftsDone;
     }
@@ -188,6 +217,10 @@ public class UpdateEvent {
         return this.records;
     }
 
+    public JsonObject getRecordsJson() {
+        return this.recordsJson;
+    }
+
     public Integer getStartNumber() {
         return this.startNumber;
     }
@@ -208,6 +241,10 @@ public class UpdateEvent {
         return this.translationMap;
     }
 
+    public JsonValue getTranslationMapJson() {
+        return this.translationMapJson;
+    }
+
     public Integer getWeight() {
         return this.weight;
     }
@@ -229,6 +266,34 @@ public class UpdateEvent {
                 this.teamName, this.timeAllowed, this.translationMap, this.weight, this.wideTeamNames);
     }
 
+    /**
+     * Parse the JSON parameters once for all the scoreboards that will display this update.
+     *
+     * The parsed values are shared between sessions and must not be modified. The values of the previous update for
+     * the same platform are reused when the text is unchanged (the translation map and the records seldom change).
+     *
+     * @param previous the previous update for the same platform, or null
+     */
+    public void parseJson(UpdateEvent previous) {
+        boolean hasPrevious = previous != null;
+        this.athletesJson = hasPrevious && Objects.equals(this.athletes, previous.athletes)
+                ? previous.athletesJson
+                : (JsonArray) parse(this.athletes);
+        this.liftingOrderAthletesJson = hasPrevious
+                && Objects.equals(this.liftingOrderAthletes, previous.liftingOrderAthletes)
+                        ? previous.liftingOrderAthletesJson
+                        : (JsonArray) parse(this.liftingOrderAthletes);
+        this.leadersJson = hasPrevious && Objects.equals(this.leaders, previous.leaders)
+                ? previous.leadersJson
+                : (JsonArray) parse(this.leaders);
+        this.recordsJson = hasPrevious && Objects.equals(this.records, previous.records)
+                ? previous.recordsJson
+                : (JsonObject) parse(this.records);
+        this.translationMapJson = hasPrevious && Objects.equals(this.translationMap, previous.translationMap)
+                ? previous.translationMapJson
+                : parse(this.translationMap);
+    }
+
     public Boolean isBreak() {
         return this.isBreak;
     }
@@ -434,4 +499,8 @@ public class UpdateEvent {
         this.ceremonyType = ceremonyType;
     }
 
+    private JsonValue parse(String json) {
+        return json != null ? Json.instance().parse(json) : null;
+    }
+
 }
@@ -0,0 +1,428 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.i18n;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.slf4j.LoggerFactory;
+import org.supercsv.io.CsvListReader;
+import org.supercsv.io.ICsvListReader;
+import org.supercsv.prefs.CsvPreference;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * The translations of all the languages of the translation CSV file, compiled once into immutable maps.
+ *
+ * The bundles returned follow the same parent chain and fallback rules as {@link ResourceBundle#getBundle(String,
+ * Locale)} would with one properties file per language: fr_CA falls back to fr, and a language absent from the file
+ * uses the default locale of the server. Bundles and maps are built on first use for a locale and kept.
+ *
+ * A compiled table is saved under the SHA-256 of the CSV content, so that a restart with the same file does not parse
+ * the CSV again. The cache directory is private to the user running the server (owner-only permissions are checked
+ * where the file system has them), and a cached table is only used if it records the same SHA-256.
+ *
+ * @author Jean-François Lamy
+ */
+class TranslationTable {
+
+	/**
+	 * An immutable bundle for one language column, with the less specific language as parent.
+	 */
+	static class TranslationBundle extends ResourceBundle {
+		private final Map<String, String> entries;
+		private Set<String> keys;
+		private final Locale locale;
+
+		TranslationBundle(Locale locale, Map<String, String> entries, TranslationBundle parent) {
+			this.locale = locale;
+			this.entries = entries;
+			if (parent != null) {
+				setParent(parent);
+			}
+		}
+
+		@Override
+		public Enumeration<String> getKeys() {
+			return Collections.enumeration(keySet());
+		}
+
+		@Override
+		public Locale getLocale() {
+			return this.locale;
+		}
+
+		/**
+		 * @return the value defined for this language only, null if absent
+		 */
+		@Override
+		public Object handleGetObject(String key) {
+			return this.entries.get(key);
+		}
+
+		@Override
+		public Set<String> keySet() {
+			if (this.keys == null) {
+				Set<String> all = new LinkedHashSet<>(this.entries.keySet());
+				if (this.parent != null) {
+					all.addAll(this.parent.keySet());
+				}
+				this.keys = Collections.unmodifiableSet(all);
+			}
+			return this.keys;
+		}
+
+		@Override
+		protected Set<String> handleKeySet() {
+			return this.entries.keySet();
+		}
+	}
+
+	private static final int FORMAT_VERSION = 2;
+	private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+	private static final Logger logger = (Logger) LoggerFactory.getLogger(TranslationTable.class);
+
+	private final Map<Locale, TranslationBundle> bundleByColumn = new ConcurrentHashMap<>();
+	private final Map<Locale, TranslationBundle> bundleByLocale = new ConcurrentHashMap<>();
+	private final Map<Locale, Map<String, String>> columns;
+	private final String hash;
+	private final List<Locale> locales;
+	private final Map<String, Map<String, String>> maps = new ConcurrentHashMap<>();
+
+	private TranslationTable(String hash, Map<Locale, Map<String, String>> columns) {
+		this.hash = hash;
+		this.columns = columns;
+		this.locales = List.copyOf(columns.keySet());
+	}
+
+	/**
+	 * @param csvContent the translation file
+	 * @param csvName    the name of the file, for messages
+	 * @param previous   the table currently in use, null if none
+	 * @return previous if the content has not changed, else the table from the disk cache or compiled from the CSV
+	 */
+	static TranslationTable load(byte[] csvContent, String csvName, TranslationTable previous) {
+		String hash = sha256(csvContent);
+		if (previous != null && previous.hash.equals(hash)) {
+			logger.debug("translation file unchanged");
+			return previous;
+		}
+		Path cacheFile = null;
+		try {
+			cacheFile = cacheDir().resolve(hash + ".bin");
+		} catch (IOException e) {
+			logger.warn("not using a translation cache: {}", e.toString());
+		}
+		if (cacheFile != null && Files.isReadable(cacheFile)) {
+			try {
+				TranslationTable table = read(cacheFile, hash);
+				logger.debug("translations read from {}", cacheFile);
+				return table;
+			} catch (IOException | RuntimeException e) {
+				logger.warn("ignoring translation cache {}: {}", cacheFile, e.toString());
+			}
+		}
+		TranslationTable table = parse(csvContent, csvName, hash);
+		if (cacheFile != null) {
+			try {
+				table.write(cacheFile);
+			} catch (IOException e) {
+				logger.warn("cannot write translation cache {}: {}", cacheFile, e.toString());
+			}
+		}
+		return table;
+	}
+
+	static TranslationTable parse(byte[] csvContent, String csvName, String hash) {
+		logger.debug("compiling translations from {}", csvName);
+		ICsvListReader listReader = null;
+		try {
+			CsvPreference[] preferences = new CsvPreference[] { CsvPreference.STANDARD_PREFERENCE,
+			        CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE, CsvPreference.TAB_PREFERENCE };
+
+			List<String> stringList = new ArrayList<>();
+			for (CsvPreference preference : preferences) {
+				if (listReader != null) {
+					listReader.close();
+				}
+				listReader = new CsvListReader(
+				        new InputStreamReader(new ByteArrayInputStream(csvContent), StandardCharsets.UTF_8), preference);
+				if ((stringList = Translator.readLine(listReader)) == null) {
+					throw new RuntimeException(csvName + " file is empty");
+				} else if (stringList.size() > 2) {
+					logger.trace(stringList.toString());
+					break;
+				}
+			}
+
+			// header: key, then one column per language until a blank column
+			List<Locale> columnLocales = new ArrayList<>();
+			List<Map<String, String>> columnEntries = new ArrayList<>();
+			for (int i = 1; i < stringList.size(); i++) {
+				String language = stringList.get(i);
+				if (language == null || language.isBlank() || "xx".contentEquals(language)) {
+					break;
+				}
+				logger.trace("language={} {}", language, i);
+				columnLocales.add(Translator.createLocale(language));
+				columnEntries.add(new HashMap<>());
+			}
+			int nbLanguages = columnLocales.size();
+
+			while ((stringList = Translator.readLine(listReader)) != null) {
+				final String key = stringList.get(0);
+				if (key == null) {
+					continue;
+				}
+				for (int i = 1; i < nbLanguages + 1 && i < stringList.size(); i++) {
+					// treat the CSV strings using same rules as Properties files.
+					// u0000 escapes are translated to Java characters
+					String input = stringList.get(i);
+					if (input != null) {
+						// "\ " is not valid, \u0020 is needed.
+						String unescapeJava = StringEscapeUtils.unescapeJava(input.trim());
+						if (!unescapeJava.isEmpty()) {
+							columnEntries.get(i - 1).put(key, unescapeJava);
+						}
+					}
+				}
+			}
+
+			Map<Locale, Map<String, String>> columns = new LinkedHashMap<>();
+			for (int i = 0; i < nbLanguages; i++) {
+				columns.put(columnLocales.get(i), Map.copyOf(columnEntries.get(i)));
+			}
+			return new TranslationTable(hash, columns);
+		} catch (IOException e) {
+			String message = MessageFormat.format("{0}: cannot read translations {1}", csvName, e.getMessage());
+			logger.error(message);
+			throw new RuntimeException(message, e);
+		} finally {
+			if (listReader != null) {
+				try {
+					listReader.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a directory that only the current user can write
+	 * @throws IOException if the directory cannot be created, or is not private to the current user
+	 */
+	private static Path cacheDir() throws IOException {
+		String user = System.getProperty("user.name", "").replaceAll("[^A-Za-z0-9._-]", "_");
+		Path dir = Path.of(System.getProperty("java.io.tmpdir"), "owlcms-" + user);
+		if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			// the temporary directory is per user on Windows
+			return Files.createDirectories(dir.resolve("translations"));
+		}
+		try {
+			Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+		} catch (FileAlreadyExistsException e) {
+			// checked below
+		}
+		if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)
+		        || !Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS).getName().equals(System.getProperty("user.name"))
+		        || !Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS).equals(OWNER_ONLY)) {
+			throw new IOException(dir + " is not a directory private to " + System.getProperty("user.name"));
+		}
+		Path translations = dir.resolve("translations");
+		try {
+			Files.createDirectory(translations, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+		} catch (FileAlreadyExistsException e) {
+			// inside a private directory
+		}
+		return translations;
+	}
+
+	private static TranslationTable read(Path cacheFile, String hash) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+			if (in.readInt() != FORMAT_VERSION) {
+				throw new IOException("unknown format");
+			}
+			if (!hash.equals(readString(in))) {
+				throw new IOException("not compiled from the same translation file");
+			}
+			int nbLanguages = in.readInt();
+			Map<Locale, Map<String, String>> columns = new LinkedHashMap<>();
+			for (int i = 0; i < nbLanguages; i++) {
+				Locale locale = Translator.createLocale(readString(in));
+				int nbEntries = in.readInt();
+				Map<String, String> entries = new HashMap<>(nbEntries * 4 / 3 + 1);
+				for (int j = 0; j < nbEntries; j++) {
+					entries.put(readString(in), readString(in));
+				}
+				columns.put(locale, Map.copyOf(entries));
+			}
+			return new TranslationTable(hash, columns);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static String sha256(byte[] content) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @param locale the requested locale
+	 * @return the bundle for the most specific language available, with its parents
+	 */
+	TranslationBundle getBundle(Locale locale) {
+		return this.bundleByLocale.computeIfAbsent(locale, (l) -> {
+			Locale column = bestColumn(l);
+			if (column == null) {
+				column = bestColumn(Locale.getDefault());
+			}
+			if (column == null) {
+				column = this.locales.get(0);
+			}
+			return bundleForColumn(column);
+		});
+	}
+
+	List<Locale> getLocales() {
+		return this.locales;
+	}
+
+	/**
+	 * @param locale the requested locale
+	 * @param prefix only the keys that start with prefix are kept, without the prefix; empty for all the keys
+	 * @return an immutable map of the translations, parents included
+	 */
+	Map<String, String> getMap(Locale locale, String prefix) {
+		TranslationBundle bundle = getBundle(locale);
+		return this.maps.computeIfAbsent(bundle.getLocale() + "|" + prefix, (k) -> {
+			Map<String, String> translations = new TreeMap<>();
+			for (String key : bundle.keySet()) {
+				if (key.startsWith(prefix)) {
+					translations.put(key.substring(prefix.length()), bundle.getString(key));
+				}
+			}
+			return Map.copyOf(translations);
+		});
+	}
+
+	private Locale bestColumn(Locale locale) {
+		for (Locale candidate : candidates(locale)) {
+			if (this.columns.containsKey(candidate)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	private TranslationBundle bundleForColumn(Locale column) {
+		TranslationBundle bundle = this.bundleByColumn.get(column);
+		if (bundle == null) {
+			// the parent is the next less specific language present in the file
+			List<Locale> candidates = candidates(column);
+			TranslationBundle parent = null;
+			for (Locale candidate : candidates.subList(1, candidates.size())) {
+				if (this.columns.containsKey(candidate)) {
+					parent = bundleForColumn(candidate);
+					break;
+				}
+			}
+			bundle = new TranslationBundle(column, this.columns.get(column), parent);
+			TranslationBundle existing = this.bundleByColumn.putIfAbsent(column, bundle);
+			if (existing != null) {
+				bundle = existing;
+			}
+		}
+		return bundle;
+	}
+
+	/**
+	 * @return language_country_variant, language_country, language, as for resource bundles
+	 */
+	private List<Locale> candidates(Locale locale) {
+		List<Locale> candidates = new ArrayList<>(3);
+		String language = locale.getLanguage();
+		String country = locale.getCountry();
+		String variant = locale.getVariant();
+		if (!variant.isEmpty()) {
+			candidates.add(new Locale(language, country, variant));
+		}
+		if (!country.isEmpty()) {
+			candidates.add(new Locale(language, country));
+		}
+		if (!language.isEmpty()) {
+			candidates.add(new Locale(language));
+		}
+		return candidates;
+	}
+
+	private void write(Path cacheFile) throws IOException {
+		Files.createDirectories(cacheFile.getParent());
+		Path tempFile = Files.createTempFile(cacheFile.getParent(), "translations", ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			out.writeInt(FORMAT_VERSION);
+			writeString(out, this.hash);
+			out.writeInt(this.columns.size());
+			for (Map.Entry<Locale, Map<String, String>> column : this.columns.entrySet()) {
+				writeString(out, column.getKey().toString());
+				out.writeInt(column.getValue().size());
+				for (Map.Entry<String, String> e : column.getValue().entrySet()) {
+					writeString(out, e.getKey());
+					writeString(out, e.getValue());
+				}
+			}
+		}
+		Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+}
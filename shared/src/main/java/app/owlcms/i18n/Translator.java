@@ -8,43 +8,28 @@ package app.owlcms.i18n;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.text.MessageFormat;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
-import java.util.Properties;
-import java.util.PropertyResourceBundle;
-import java.util.ResourceBundle;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import org.apache.commons.text.StringEscapeUtils;
 import org.slf4j.LoggerFactory;
-import org.supercsv.io.CsvListReader;
 import org.supercsv.io.ICsvListReader;
-import org.supercsv.prefs.CsvPreference;
 
 import com.vaadin.flow.i18n.I18NProvider;
 
-import app.owlcms.utils.LoggerUtils;
-import app.owlcms.utils.MemTempUtils;
+import app.owlcms.i18n.TranslationTable.TranslationBundle;
 import app.owlcms.utils.ResourceWalker;
 import ch.qos.logback.classic.Logger;
 
 /**
- * This class creates a resource bundle from a CSV file containing the various translations, and provides translations for Components according to the Vaadin
- * translation spec.
+ * This class compiles the CSV file containing the various translations into resource bundles (see {@link TranslationTable}), and provides translations
+ * for Components according to the Vaadin translation spec.
  *
  * Static variations of the translation routines are also provided for translations that do not take place inside Vaadin components (e.g. spreadsheets).
  *
@@ -57,10 +42,10 @@ public class Translator implements I18NProvider {
 	private static Translator helper = new Translator();
 	private static final String BUNDLE_BASE = "translation4";
 	private static final String BUNDLE_PACKAGE_SLASH = "/i18n/";
-	private static List<Locale> locales = null;
 	private static Locale forcedLocale = null;
-	private static ClassLoader i18nloader = null;
 	private static int line;
+	private static TranslationTable previousTable;
+	private static volatile TranslationTable table;
 	private static long resetTimeStamp = System.currentTimeMillis();
 	private static Supplier<Locale> localeSupplier;
 
@@ -84,17 +69,11 @@ public class Translator implements I18NProvider {
 	}
 
 	public static List<Locale> getAllAvailableLocales() {
-		if (locales == null) {
-			Translator.getBundleFromCSV(Locale.ENGLISH);
-		}
-		return locales;
+		return getTable().getLocales();
 	}
 
 	public static List<Locale> getUsefulLocales() {
-		if (locales == null) {
-			Translator.getBundleFromCSV(Locale.ENGLISH);
-		}
-		return locales.stream().filter(l -> !(l.getCountry() == "" && l.getLanguage() == "es")).collect(Collectors.toList());
+		return getAllAvailableLocales().stream().filter(l -> !(l.getCountry() == "" && l.getLanguage() == "es")).collect(Collectors.toList());
 	}
 
 	public static List<Locale> getAvailableLocales() {
@@ -106,7 +85,7 @@ public class Translator implements I18NProvider {
 	}
 
 	public static Enumeration<String> getKeys() {
-		return Translator.getBundleFromCSV(Locale.ENGLISH).getKeys();
+		return Translator.getBundle(Locale.ENGLISH).getKeys();
 	}
 
 	/**
@@ -116,16 +95,20 @@ public class Translator implements I18NProvider {
 		return localeSupplier;
 	}
 
+	/**
+	 * @return all the translations for the current locale, as an immutable map built once
+	 */
 	public static Map<String, String> getMap() {
-		final PropertyResourceBundle bundle = (PropertyResourceBundle) getBundleFromCSV(getLocaleSupplier().get());
-		Map<String, String> translations = new HashMap<>();
-		Enumeration<String> keys = bundle.getKeys();
-		String key;
-		while (keys.hasMoreElements()) {
-			key = keys.nextElement();
-			translations.put(key, bundle.getString(key));
-		}
-		return translations;
+		return getTable().getMap(overrideLocale(getLocaleSupplier().get()), "");
+	}
+
+	/**
+	 * @param prefix for example "Scoreboard."
+	 * @return the translations whose key starts with prefix, for the current locale, with the prefix removed from the
+	 *         keys, as an immutable map built once
+	 */
+	public static Map<String, String> getMap(String prefix) {
+		return getTable().getMap(overrideLocale(getLocaleSupplier().get()), prefix);
 	}
 
 	public static long getResetTimeStamp() {
@@ -138,21 +121,18 @@ public class Translator implements I18NProvider {
 	}
 
 	/**
-	 * Force a reload of the translation files
+	 * Force a reload of the translation files. The file is only compiled again if its content has changed.
 	 */
 	public static void reset() {
 		resetTimeStamp = System.currentTimeMillis();
-		locales = null;
-		i18nloader = null;
+		table = null;
 		helper = new Translator();
-		logger.debug("cleared translation class loader");
+		logger.debug("cleared translation table");
 	}
 
 	public static void setForcedLocale(Locale locale) {
 		// logger.debug("setForcedLocale {} {}",locale, LoggerUtils.stackTrace());
 		if (locale != null) {
-			locales = getAllAvailableLocales();
-
 			for (Locale l : getAllAvailableLocales()) {
 				if (l.getLanguage() == locale.getLanguage()) {
 					// thing will work no matter what the country and variant
@@ -219,142 +199,42 @@ public class Translator implements I18NProvider {
 	}
 
 	/**
-	 * Return a resource bundle created by reading a CSV files. This creates properties files, and uses the standard caching implementation and bundle hierarchy
-	 * as defined by Java.
-	 *
-	 * Resource bundles are cached by the Java implementation, so this method can be called repeatedly.
+	 * Return the bundle for a locale, from the translations compiled from the CSV file.
 	 *
-	 * Adapted from https://hub.jmonkeyengine.org/t/i18n-from-csv-calc/31492
+	 * The CSV file is read and compiled on first use and after a {@link #reset()}; if its content has not changed
+	 * since the last compilation, or was compiled by a previous run, the compiled table is reused. Afterwards, getting
+	 * a bundle for any locale does no file access and takes no lock.
 	 *
 	 * @param locale
 	 *
 	 * @return
 	 */
-	private static synchronized ResourceBundle getBundleFromCSV(Locale locale) {
-		String baseName = BUNDLE_BASE;
-		String csvName = BUNDLE_PACKAGE_SLASH + baseName + ".csv";
-		Path bundleDir = null;
-		try {
-			line = 0;
-
-			if (i18nloader == null) {
-				bundleDir = MemTempUtils.createTempDirectory("bundles");
-
-				logger.debug("reloading translation bundles");
-				InputStream csvStream = ResourceWalker.getResourceAsStream(csvName);
-				logger.debug("csvStream {} {}", csvName, csvStream);
-				ICsvListReader listReader = null;
-				try {
-					CsvPreference[] preferences = new CsvPreference[] { CsvPreference.STANDARD_PREFERENCE,
-					        CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE, CsvPreference.TAB_PREFERENCE };
-
-					List<String> stringList = new ArrayList<>();
-					for (CsvPreference preference : preferences) {
-						listReader = new CsvListReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8),
-						        preference);
-
-						if ((stringList = readLine(listReader)) == null) {
-							throw new RuntimeException(csvName + " file is empty");
-						} else if (stringList.size() <= 2) {
-							// reset stream
-							csvStream = ResourceWalker.getResourceAsStream(csvName);
-						} else {
-							logger.trace(stringList.toString());
-							break;
-						}
-					}
-
-					final Path[] outFiles = new Path[stringList.size()];
-					final Properties[] languageProperties = new Properties[outFiles.length];
-					locales = new ArrayList<>();
-
-					int nbLanguages = 0;
-					for (int i = 1; i < outFiles.length; i++) {
-						String language = stringList.get(i);
-						if (language == null || language.isBlank() || "xx".contentEquals(language)) {
-							nbLanguages = i - 1;
-							break;
-						}
-						logger.trace("language={} {}", language, i);
-						locales.add(createLocale(language));
-						if (language != null && !language.isEmpty()) {
-							language = "_" + language;
-						}
-						final Path outfile = bundleDir.resolve(baseName + language + ".properties");
-						Files.createFile(outfile);
-						outFiles[i] = outfile;
-						languageProperties[i] = new Properties();
-					}
-
-					// reading to properties
-					while ((stringList = readLine(listReader)) != null) {
-						final String key = stringList.get(0);
-						if (key == null) {
-//							String message = MessageFormat.format("{0} line {1}: key is null", csvName, line);
-//							logger.error(message);
-//							throw new RuntimeException(message);
-						} else {
-							logger.debug(stringList.toString());
-							for (int i = 1; i < nbLanguages + 1; i++) {
-								// treat the CSV strings using same rules as Properties files.
-								// u0000 escapes are translated to Java characters
-								String input = stringList.get(i);
-								if (input != null) {
-									// "\ " is not valid, \u0020 is needed.
-									String unescapeJava = StringEscapeUtils.unescapeJava(input.trim());
-									if (!unescapeJava.isEmpty()) {
-										Properties properties = languageProperties[i];
-										if (properties == null) {
-											String message = MessageFormat
-											        .format("{0} line {1}: languageProperties[{2}] is null", csvName, line,
-											                i);
-											logger.error(message);
-											throw new RuntimeException(message);
-										}
-										properties.setProperty(key, unescapeJava);
-									}
-								}
-							}
-						}
-					}
-
-					// writing
-					for (int i = 1; i < nbLanguages + 1; i++) {
-						// logger.debug("writing to " + outFiles[i].toAbsolutePath());
-						languageProperties[i].store(Files.newOutputStream(outFiles[i]), "generated from " + csvName);
-					}
-					final URL[] urls = { bundleDir.toUri().toURL() };
-					i18nloader = new URLClassLoader(urls);
-
-					// reload the files
-					ResourceBundle.clearCache();
-
-				} catch (IOException e) {
-					LoggerUtils.logError(logger, e);
-				} finally {
-					if (listReader != null) {
-						try {
-							listReader.close();
-						} catch (IOException e) {
-						}
-					}
-				}
+	private static TranslationBundle getBundle(Locale locale) {
+		return getTable().getBundle(locale);
+	}
 
-			}
+	private static TranslationTable getTable() {
+		TranslationTable t = table;
+		if (t == null) {
+			t = loadTable();
+		}
+		return t;
+	}
 
-			ResourceBundle bundle = ResourceBundle.getBundle(baseName, locale, i18nloader);
-			return bundle;
+	private static synchronized TranslationTable loadTable() {
+		if (table != null) {
+			return table;
+		}
+		String csvName = BUNDLE_PACKAGE_SLASH + BUNDLE_BASE + ".csv";
+		line = 0;
+		try (InputStream csvStream = ResourceWalker.getResourceAsStream(csvName)) {
+			logger.debug("csvStream {} {}", csvName, csvStream);
+			table = TranslationTable.load(csvStream.readAllBytes(), csvName, previousTable);
+			previousTable = table;
+			return table;
 		} catch (IOException e) {
-			logger.error("cannot create bundles directory {}", e.getMessage());
+			logger.error("cannot read translations {}", e.getMessage());
 			throw new RuntimeException(e);
-		} finally {
-			// cannot clean up, resource bundle keeps the files open
-			// try {
-			// FileUtils.deleteDirectory(bundleDir.toFile());
-			// } catch (IOException e) {
-			// logger.error("cannot delete bundles directory {}", e);
-			// throw new RuntimeException(e);
-			// }
 		}
 	}
 
@@ -396,7 +276,7 @@ public class Translator implements I18NProvider {
 			return "";
 		}
 
-		final PropertyResourceBundle bundle = (PropertyResourceBundle) getBundleFromCSV(locale);
+		final TranslationBundle bundle = getBundle(locale);
 
 		String value;
 		try {
@@ -415,7 +295,7 @@ public class Translator implements I18NProvider {
 			nullTranslationKey();
 			return "";
 		}
-		final PropertyResourceBundle bundle = (PropertyResourceBundle) getBundleFromCSV(locale);
+		final TranslationBundle bundle = getBundle(locale);
 
 		String value;
 
@@ -436,7 +316,7 @@ public class Translator implements I18NProvider {
 			nullTranslationKey();
 			return "";
 		}
-		final PropertyResourceBundle bundle = (PropertyResourceBundle) getBundleFromCSV(locale);
+		final TranslationBundle bundle = getBundle(locale);
 
 		String value;
 
@@ -454,13 +334,13 @@ public class Translator implements I18NProvider {
 			nullTranslationKey();
 			return "";
 		}
-		final PropertyResourceBundle bundle = (PropertyResourceBundle) getBundleFromCSV(locale);
+		final TranslationBundle bundle = getBundle(locale);
 
 		String value;
 		try {
 			value = bundle.getString(key);
 		} catch (final MissingResourceException e) {
-			PropertyResourceBundle enBundle = (PropertyResourceBundle) getBundleFromCSV(Locale.ENGLISH);
+			TranslationBundle enBundle = getBundle(Locale.ENGLISH);
 			value = (String) enBundle.handleGetObject(key);
 		}
 		if (params.length > 0 && value != null) {
@@ -490,7 +370,7 @@ public class Translator implements I18NProvider {
 		return value;
 	}
 
-	private Locale overrideLocale(Locale locale) {
+	private static Locale overrideLocale(Locale locale) {
 		Locale l = getLocaleSupplier().get();
 		if (l != null) {
 			locale = l;
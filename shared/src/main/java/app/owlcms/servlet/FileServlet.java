@@ -28,7 +28,6 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -40,6 +39,7 @@ import java.util.zip.GZIPOutputStream;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.ResourceCache;
 import app.owlcms.utils.ResourceWalker;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
@@ -196,6 +196,18 @@ public class FileServlet extends HttpServlet {
 		}
 	}
 
+	/**
+	 * Copy the given byte range of the content, from memory if available, else from the channel.
+	 */
+	private static void copy(byte[] inMemory, FileChannel input, OutputStream output, long start, long length)
+	        throws IOException {
+		if (inMemory != null) {
+			output.write(inMemory, (int) start, (int) length);
+		} else {
+			copy(input, output, start, length);
+		}
+	}
+
 	/**
 	 * Returns true if the given match header matches the given value.
 	 *
@@ -295,7 +307,7 @@ public class FileServlet extends HttpServlet {
 		processRequest(request, response, false);
 	}
 
-	private Path getFileFromPathInfo(HttpServletResponse response, String requestedFile)
+	private ResourceCache.Entry getFileFromPathInfo(HttpServletResponse response, String requestedFile)
 	        throws IOException, UnsupportedEncodingException {
 
 		// Check if file is actually supplied to the request URL.
@@ -342,9 +354,9 @@ public class FileServlet extends HttpServlet {
 		}
 	}
 
-	private Path getPathForResource(HttpServletResponse response, String resourceName)
+	private ResourceCache.Entry getPathForResource(HttpServletResponse response, String resourceName)
 	        throws IOException, FileNotFoundException {
-		Path target = ResourceWalker.getFileOrResourcePath(resourceName);
+		ResourceCache.Entry target = ResourceWalker.getResource(resourceName);
 		if (target == null) {
 			logger./**/error("resource or override not found {}", resourceName);
 			response.sendError(HttpServletResponse.SC_NOT_FOUND);
@@ -372,14 +384,15 @@ public class FileServlet extends HttpServlet {
 		String requestedFileName = request.getPathInfo();
 		logger.debug("requested file = {}", requestedFileName);
 
-		Path file = getFileFromPathInfo(response, requestedFileName);
+		ResourceCache.Entry file = getFileFromPathInfo(response, requestedFileName);
 		if (file == null) {
 			return;
 		}
 
 		// Prepare some variables. The ETag is an unique identifier of the file.
-		String fileName = file.getFileName().toString();
-		BasicFileAttributes attr = Files.readAttributes(file, BasicFileAttributes.class);
+		// Location, attributes and small contents are cached, see ResourceCache
+		String fileName = file.getFileName();
+		BasicFileAttributes attr = file.getAttributes();
 
 		long length = attr.size();
 		long lastModified = attr.lastModifiedTime().toMillis();
@@ -552,11 +565,14 @@ public class FileServlet extends HttpServlet {
 		// Prepare streams.
 		OutputStream output = null;
 		FileChannel in = null;
+		byte[] inMemory = content ? file.getContent() : null;
 
 		try {
 			// Open streams.
 			// input = new RandomAccessFile(file, "r");
-			in = FileChannel.open(file, StandardOpenOption.READ);
+			if (inMemory == null) {
+				in = FileChannel.open(file.getPath(), StandardOpenOption.READ);
+			}
 			output = response.getOutputStream();
 
 			if (ranges.isEmpty() || ranges.get(0) == full) {
@@ -578,7 +594,7 @@ public class FileServlet extends HttpServlet {
 					response.setStatus(HttpServletResponse.SC_OK);
 
 					// Copy full range.
-					copy(in, output, r.start, r.length);
+					copy(inMemory, in, output, r.start, r.length);
 				}
 
 			} else if (ranges.size() == 1) {
@@ -592,7 +608,7 @@ public class FileServlet extends HttpServlet {
 
 				if (content) {
 					// Copy single part range.
-					copy(in, output, r.start, r.length);
+					copy(inMemory, in, output, r.start, r.length);
 				}
 
 			} else {
@@ -614,7 +630,7 @@ public class FileServlet extends HttpServlet {
 						sos.println("Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total);
 
 						// Copy single part range of multi part range.
-						copy(in, output, r.start, r.length);
+						copy(inMemory, in, output, r.start, r.length);
 					}
 
 					// End with multipart boundary.
@@ -1,8 +1,10 @@
 package app.owlcms.utils;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
 
+/**
+ * Run a task after a delay, on the {@link SharedScheduler}. In testing mode, the task is run immediately.
+ */
 public class DelayTimer {
     private boolean testingMode;
 
@@ -14,21 +16,17 @@ public class DelayTimer {
         this.testingMode = testingMode;
     }
 
-    private final Timer t = new Timer();
-
-    public TimerTask schedule(final Runnable r, long delay) {
+    /**
+     * @param r     the task
+     * @param delay in milliseconds
+     * @return a handle to cancel the task, null in testing mode
+     */
+    public ScheduledFuture<?> schedule(final Runnable r, long delay) {
         if (testingMode) {
             r.run();
             return null;
         } else {
-            final TimerTask task = new TimerTask() {
-                @Override
-                public void run() {
-                    r.run();
-                }
-            };
-            t.schedule(task, delay);
-            return task;
+            return SharedScheduler.schedule(r, delay);
         }
     }
 }
\ No newline at end of file
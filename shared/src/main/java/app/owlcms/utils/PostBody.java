@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import elemental.json.JsonType;
+import elemental.json.JsonValue;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Body encoding for the posts from owlcms to publicresults (/update, /timer, /decision).
+ *
+ * The historical encoding is a url-encoded form. A receiver that also accepts a gzip-compressed JSON object says so with
+ * the {@link #BODY_HEADER} header on its replies, and the sender then switches to that encoding. The JSON object has
+ * the same names and string values as the form, so both encodings are decoded to the same parameter map.
+ *
+ * @author Jean-François Lamy
+ */
+public class PostBody {
+
+    /** reply header by which a receiver advertises the body encodings it accepts */
+    public static final String BODY_HEADER = "X-Owlcms-Body";
+    /** gzip-compressed JSON object */
+    public static final String JSON_GZIP = "json+gzip";
+
+    private static final String GZIP = "gzip";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+
+    /**
+     * @param parameters
+     * @return the gzip-compressed JSON object
+     * @throws IOException
+     */
+    public static byte[] encode(Map<String, String> parameters) throws IOException {
+        JsonObject json = Json.createObject();
+        for (Entry<String, String> e : parameters.entrySet()) {
+            if (e.getValue() != null) {
+                json.put(e.getKey(), e.getValue());
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+            gz.write(json.toJson().getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    public static String getContentEncoding() {
+        return GZIP;
+    }
+
+    public static String getContentType() {
+        return JSON_CONTENT_TYPE;
+    }
+
+    /**
+     * Decode the request, whichever way it was encoded.
+     *
+     * @param req
+     * @return the first value of each parameter
+     * @throws IOException
+     */
+    public static Map<String, String> getParameters(HttpServletRequest req) throws IOException {
+        String contentType = req.getContentType();
+        if (contentType != null && contentType.startsWith(JSON_CONTENT_TYPE)) {
+            boolean gzip = GZIP.equalsIgnoreCase(req.getHeader("Content-Encoding"));
+            try (InputStream is = gzip ? new GZIPInputStream(req.getInputStream()) : req.getInputStream()) {
+                return decode(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        Map<String, String> params = new LinkedHashMap<>();
+        for (Entry<String, String[]> e : req.getParameterMap().entrySet()) {
+            String[] values = e.getValue();
+            params.put(e.getKey(), values != null && values.length > 0 ? values[0] : null);
+        }
+        return params;
+    }
+
+    static Map<String, String> decode(String body) {
+        JsonObject json = Json.parse(body);
+        Map<String, String> params = new LinkedHashMap<>();
+        for (String key : json.keys()) {
+            JsonValue value = json.get(key);
+            params.put(key, value.getType() == JsonType.STRING ? value.asString() : value.toJson());
+        }
+        return params;
+    }
+
+}
@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Where each resource name was found by {@link ResourceWalker}: in the local override directory or on the classpath,
+ * or nowhere. The content of small files (flags, style sheets, sounds, pictures) is kept in memory once read, so
+ * that the displays are served without touching the disk.
+ *
+ * The cache is emptied when the override directory changes (new directory, new zip blob unpacked) and when a file is
+ * created, modified or deleted under the override directory, as reported by a {@link WatchService}.
+ *
+ * Files up to <code>resourceCacheMaxFileSize</code> bytes (default 256KB) are kept, up to a total of
+ * <code>resourceCacheMaxSize</code> bytes (default 64MB). At most <code>resourceCacheMaxEntries</code> names (default
+ * 4096), found or not, are remembered; the least recently used are forgotten first, since the names may come from
+ * requests.
+ *
+ * @author Jean-François Lamy
+ */
+public class ResourceCache {
+
+	/**
+	 * A resolved resource.
+	 */
+	public static final class Entry {
+		private volatile BasicFileAttributes attributes;
+		private volatile byte[] content;
+		private volatile boolean contentChecked;
+		private final String name;
+		private final Path overridePath;
+		private volatile Path path;
+		private final URL url;
+
+		private Entry(String name, Path overridePath, URL url) {
+			this.name = name;
+			this.overridePath = overridePath;
+			this.url = url;
+		}
+
+		/**
+		 * @return the content if small enough to be kept in memory, else null
+		 * @throws IOException
+		 */
+		public byte[] getContent() throws IOException {
+			if (!this.contentChecked) {
+				synchronized (this) {
+					if (!this.contentChecked) {
+						this.content = readIfSmall();
+						this.contentChecked = true;
+					}
+				}
+			}
+			return this.content;
+		}
+
+		/**
+		 * @return the size and dates of the file
+		 * @throws IOException
+		 */
+		public BasicFileAttributes getAttributes() throws IOException {
+			if (this.attributes == null) {
+				Path p = getPath();
+				if (p == null) {
+					throw new IOException("no path for " + this.name);
+				}
+				this.attributes = Files.readAttributes(p, BasicFileAttributes.class);
+			}
+			return this.attributes;
+		}
+
+		/**
+		 * @return the override file, or the classpath resource as a path (possibly inside the jar), null if the
+		 *         classpath resource cannot be accessed as a path
+		 */
+		public Path getPath() {
+			if (this.path == null) {
+				this.path = this.overridePath != null ? this.overridePath
+				        : ResourceWalker.getResourcePath("/" + this.name);
+			}
+			return this.path;
+		}
+
+		/**
+		 * @return the last element of the name
+		 */
+		public String getFileName() {
+			return this.name.substring(this.name.lastIndexOf('/') + 1);
+		}
+
+		public boolean isOverride() {
+			return this.overridePath != null;
+		}
+
+		/**
+		 * @return the content, from memory if small
+		 * @throws IOException
+		 */
+		public InputStream newInputStream() throws IOException {
+			byte[] bytes = getContent();
+			if (bytes != null) {
+				return new ByteArrayInputStream(bytes);
+			}
+			if (this.overridePath != null) {
+				return Files.newInputStream(this.overridePath);
+			}
+			return ResourceWalker.class.getResourceAsStream("/" + this.name);
+		}
+
+		private byte[] readIfSmall() throws IOException {
+			long size;
+			if (this.overridePath != null) {
+				if (Files.isDirectory(this.overridePath)) {
+					return null;
+				}
+				size = Files.size(this.overridePath);
+			} else {
+				URLConnection connection = this.url.openConnection();
+				size = connection.getContentLengthLong();
+				if (size <= 0 || "file".equals(this.url.getProtocol()) && Files.isDirectory(getPath())) {
+					return null;
+				}
+			}
+			if (size > MAX_FILE_SIZE || cachedBytes.get() + size > MAX_TOTAL_SIZE) {
+				return null;
+			}
+			byte[] bytes;
+			if (this.overridePath != null) {
+				bytes = Files.readAllBytes(this.overridePath);
+			} else {
+				try (InputStream is = ResourceWalker.class.getResourceAsStream("/" + this.name)) {
+					if (is == null) {
+						return null;
+					}
+					bytes = is.readAllBytes();
+				}
+			}
+			cachedBytes.addAndGet(bytes.length);
+			return bytes;
+		}
+	}
+
+	private static final Entry NOT_FOUND = new Entry(null, null, null);
+
+	private static final AtomicLong cachedBytes = new AtomicLong();
+	@SuppressWarnings("serial")
+	private static final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			if (size() <= MAX_ENTRIES) {
+				return false;
+			}
+			byte[] content = eldest.getValue().content;
+			if (content != null) {
+				cachedBytes.addAndGet(-content.length);
+			}
+			return true;
+		}
+	};
+	private static final AtomicLong generation = new AtomicLong();
+	private static final Logger logger = (Logger) LoggerFactory.getLogger(ResourceCache.class);
+	private static final int MAX_ENTRIES = Math.max(1, StartupUtils.getIntegerParam("resourceCacheMaxEntries", 4096));
+	private static final long MAX_FILE_SIZE = StartupUtils.getIntegerParam("resourceCacheMaxFileSize", 256 * 1024);
+	private static final long MAX_TOTAL_SIZE = StartupUtils.getIntegerParam("resourceCacheMaxSize",
+	        64 * 1024 * 1024);
+	private static Path watchedDir;
+	private static WatchService watchService;
+
+	/**
+	 * @return a number that changes every time the cache is emptied, so that caches built on top of this one (for
+	 *         example compiled templates) know when to discard their own entries
+	 */
+	public static long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Empty the cache.
+	 *
+	 * @param reason for the log
+	 */
+	public static void invalidate(String reason) {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			entries.clear();
+			cachedBytes.set(0);
+		}
+		logger.debug("resource cache cleared: {}", reason);
+	}
+
+	/**
+	 * @param relativeName name relative to the override directory or the classpath root, without leading /
+	 * @param localDir     the override directory, null if none
+	 * @return the entry, null if the resource does not exist
+	 */
+	static Entry get(String relativeName, Path localDir) {
+		Entry e;
+		long gen;
+		synchronized (entries) {
+			e = entries.get(relativeName);
+			gen = generation.get();
+		}
+		if (e == null) {
+			// resolved outside the lock, it touches the disk
+			e = resolve(relativeName, localDir);
+			synchronized (entries) {
+				// do not store a resolution made before an invalidation
+				if (gen == generation.get()) {
+					Entry prev = entries.putIfAbsent(relativeName, e);
+					if (prev != null) {
+						e = prev;
+					}
+				}
+			}
+		}
+		return e == NOT_FOUND ? null : e;
+	}
+
+	/**
+	 * Watch the override directory and its subdirectories; stop watching the previous one.
+	 *
+	 * @param dir the override directory, null if none
+	 */
+	static synchronized void watch(Path dir) {
+		if (Objects.equals(dir, watchedDir)) {
+			// called on every lookup when there is no override directory
+			return;
+		}
+		invalidate("override directory " + dir);
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			watchService = null;
+		}
+		watchedDir = dir;
+		if (dir == null || !Files.isDirectory(dir)) {
+			return;
+		}
+		try {
+			WatchService ws = dir.getFileSystem().newWatchService();
+			registerTree(ws, dir);
+			watchService = ws;
+			Thread t = new Thread(() -> watchLoop(ws), "resource-watcher");
+			t.setDaemon(true);
+			t.start();
+			logger.debug("watching {}", dir.toAbsolutePath());
+		} catch (IOException | UnsupportedOperationException e) {
+			logger.warn("cannot watch {}, changes to overrides will not be noticed until restart: {}", dir,
+			        e.toString());
+		}
+	}
+
+	private static void registerTree(WatchService ws, Path dir) throws IOException {
+		try (Stream<Path> dirs = Files.walk(dir)) {
+			for (Path d : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+				d.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+				        StandardWatchEventKinds.ENTRY_MODIFY);
+			}
+		}
+	}
+
+	private static Entry resolve(String relativeName, Path localDir) {
+		if (localDir != null) {
+			Path target = localDir.resolve(relativeName);
+			if (Files.exists(target)) {
+				logger.debug("found overridden resource {} at {}", relativeName, target.toAbsolutePath());
+				return new Entry(relativeName, target, null);
+			}
+		}
+		URL url = ResourceWalker.class.getResource("/" + relativeName);
+		if (url != null) {
+			logger.debug("found classpath resource {}", relativeName);
+			return new Entry(relativeName, null, url);
+		}
+		logger.debug("not found {}", relativeName);
+		return NOT_FOUND;
+	}
+
+	private static void watchLoop(WatchService ws) {
+		try {
+			while (true) {
+				WatchKey key = ws.take();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && key.watchable() instanceof Path parent) {
+						Path created = parent.resolve((Path) event.context());
+						if (Files.isDirectory(created)) {
+							registerTree(ws, created);
+						}
+					}
+				}
+				invalidate("change under " + key.watchable());
+				key.reset();
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// replaced by a new override directory, or shutting down
+		} catch (IOException e) {
+			logger.warn("stopped watching override directory: {}", e.toString());
+		}
+	}
+
+}
@@ -118,57 +118,25 @@ public class ResourceWalker {
 
 	/**
 	 * Fetch a named file content. First looking in a local override directory structure, and if not found, as a
-	 * resource on the classpath.
+	 * resource on the classpath. Where the name was found, and the content of small files, are cached (see
+	 * {@link ResourceCache}).
 	 *
 	 * @param name
 	 * @return an input stream with the requested content, null if not found.
 	 * @throws FileNotFoundException
 	 */
 	public static InputStream getFileOrResource(String name) throws FileNotFoundException {
-		InputStream is = null;
-		String relativeName;
-		if (name.startsWith("/")) {
-			relativeName = name.substring(1);
-		} else {
-			relativeName = name;
-		}
-		Path localDirPath2 = getLocalDirPath();
-		Path target = null;
-		if (localDirPath2 != null) {
-			target = localDirPath2.resolve(relativeName);
-			if (logger.isEnabledFor(Level.DEBUG)) {
-				logger.debug("{} target={} exists={}", name, target.toAbsolutePath(), Files.exists(target));
-			}
-		}
-		if (target != null && Files.exists(target)) {
-			try {
-				if (logger.isEnabledFor(Level.DEBUG)) {
-					logger.debug("found overridden resource {} at {} {}", name, target.toAbsolutePath(),
-					        LoggerUtils.whereFrom(1));
-				}
-				return Files.newInputStream(target);
-			} catch (IOException e) {
-				if (name.trim().contentEquals("/") || name.isBlank()) {
-					// exists but is top level
-					return null;
-				} else {
-					throw new RuntimeException("can't happen '" + name + "'", e);
-				}
-			}
-		} else {
-			is = ResourceWalker.class.getResourceAsStream(name.startsWith("/") ? name : "/" + name);
-			if (is != null) {
-				if (logger.isEnabledFor(Level.DEBUG)) {
-					logger.debug("found classpath resource {} {}", name, LoggerUtils.whereFrom(1));
-				}
+		ResourceCache.Entry entry = getResource(name);
+		try {
+			return entry.newInputStream();
+		} catch (IOException e) {
+			if (name.trim().contentEquals("/") || name.isBlank()) {
+				// exists but is top level
+				return null;
 			} else {
-				if (logger.isEnabledFor(Level.DEBUG)) {
-					logger.debug("not found {} {}", name, LoggerUtils.whereFrom(0));
-				}
-				throw new FileNotFoundException(name);
+				throw new RuntimeException("can't happen '" + name + "'", e);
 			}
 		}
-		return is;
 	}
 
 	/**
@@ -180,39 +148,30 @@ public class ResourceWalker {
 	 * @throws FileNotFoundException
 	 */
 	public static Path getFileOrResourcePath(String name) throws FileNotFoundException {
-		String relativeName;
-		if (name.startsWith("/")) {
-			relativeName = name.substring(1);
-		} else {
-			relativeName = name;
+		Path target = getResource(name).getPath();
+		if (target == null) {
+			throw new FileNotFoundException(name);
 		}
-		Path localDirPath2 = getLocalDirPath();
-		Path target = null;
-		if (localDirPath2 != null) {
-			target = localDirPath2.resolve(relativeName);
-		}
-		if (target != null && Files.exists(target)) {
+		return target;
+	}
+
+	/**
+	 * Locate a named file, in the local override directory structure or else on the classpath.
+	 *
+	 * @param name
+	 * @return the cached location, with the content if the file is small
+	 * @throws FileNotFoundException
+	 */
+	public static ResourceCache.Entry getResource(String name) throws FileNotFoundException {
+		String relativeName = name.startsWith("/") ? name.substring(1) : name;
+		ResourceCache.Entry entry = ResourceCache.get(relativeName, getLocalDirPath());
+		if (entry == null) {
 			if (logger.isEnabledFor(Level.DEBUG)) {
-				logger.debug("found overridden resource {} at {} {}", name, target.toAbsolutePath(),
-				        LoggerUtils.whereFrom(1));
+				logger.debug("not found {} {}", name, LoggerUtils.whereFrom(1));
 			}
-			return target;
-		} else {
-			String resName = "/" + relativeName;
-			target = getResourcePath(resName);
-			if (target != null) {
-				if (logger.isEnabledFor(Level.DEBUG)) {
-					logger.debug("found classpath resource {} {}", name, LoggerUtils.whereFrom(1));
-				}
-			} else {
-				if (logger.isEnabledFor(Level.DEBUG)) {
-					logger.debug("not found {} {} {}", target, resName, LoggerUtils.whereFrom(1));
-				}
-				throw new FileNotFoundException(name);
-			}
-
+			throw new FileNotFoundException(name);
 		}
-		return target;
+		return entry;
 	}
 
 	public static Path getLocalDirPath() {
@@ -483,6 +442,7 @@ public class ResourceWalker {
 
 	public static void setLocalDirPath(Path curDir) {
 		localDirPath = curDir;
+		ResourceCache.watch(curDir);
 	}
 
 	/**
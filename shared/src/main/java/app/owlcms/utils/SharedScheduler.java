@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.utils;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Scheduler shared by the clocks, break timers and delayed notifications of all the fields of play.
+ *
+ * A few daemon threads serve every platform, instead of a thread per {@link java.util.Timer} or per sleeping thread.
+ * Tasks must be short: anything that blocks (sound, database) should hand off to another thread. The handles returned
+ * are cancellable; cancelled tasks are removed from the queue immediately.
+ *
+ * The lateness of each task relative to its planned time (jitter) is measured; see {@link #getJitter()}.
+ *
+ * @author Jean-François Lamy
+ */
+public class SharedScheduler {
+
+    /**
+     * Scheduling lateness since startup or the last reset.
+     */
+    public record Jitter(long count, double meanMillis, double maxMillis, long lateCount) {
+    }
+
+    private static final long LATE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final Logger logger = (Logger) LoggerFactory.getLogger(SharedScheduler.class);
+
+    private static final LongAdder count = new LongAdder();
+    private static final ScheduledThreadPoolExecutor executor;
+    private static final LongAdder lateCount = new LongAdder();
+    private static final AtomicLong maxLatenessNanos = new AtomicLong();
+    private static final LongAdder totalLatenessNanos = new LongAdder();
+
+    static {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, "scheduler-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MAX_PRIORITY);
+            return t;
+        };
+        executor = new ScheduledThreadPoolExecutor(StartupUtils.getIntegerParam("schedulerThreads", 4),
+                threadFactory);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @return lateness statistics of the tasks run so far
+     */
+    public static Jitter getJitter() {
+        long n = count.sum();
+        return new Jitter(n, n > 0 ? totalLatenessNanos.sum() / 1_000_000.0D / n : 0.0D,
+                maxLatenessNanos.get() / 1_000_000.0D, lateCount.sum());
+    }
+
+    public static void resetJitter() {
+        count.reset();
+        totalLatenessNanos.reset();
+        maxLatenessNanos.set(0);
+        lateCount.reset();
+    }
+
+    /**
+     * Run a task after a delay.
+     *
+     * @param r           the task
+     * @param delayMillis delay in milliseconds
+     * @return a handle to cancel the task
+     */
+    public static ScheduledFuture<?> schedule(Runnable r, long delayMillis) {
+        long delay = Math.max(0, delayMillis);
+        long planned = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        return executor.schedule(() -> {
+            recordLateness(System.nanoTime() - planned);
+            try {
+                r.run();
+            } catch (Throwable t) {
+                // the executor would swallow the exception silently
+                LoggerUtils.logError(logger, t);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static void recordLateness(long lateness) {
+        long l = Math.max(0, lateness);
+        count.increment();
+        totalLatenessNanos.add(l);
+        maxLatenessNanos.accumulateAndGet(l, Math::max);
+        if (l > LATE_NANOS) {
+            lateCount.increment();
+            logger.warn("scheduled task late by {}ms", TimeUnit.NANOSECONDS.toMillis(l));
+        }
+    }
+
+}
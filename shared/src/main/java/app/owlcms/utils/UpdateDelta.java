@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.utils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonType;
+import elemental.json.JsonValue;
+
+/**
+ * Delta encoding of the scoreboard updates sent by owlcms to publicresults.
+ *
+ * A full update is a map of form parameters. A delta only contains the parameters whose value changed since the
+ * previous update acknowledged by the receiver, the names of the parameters that disappeared, and the sequence numbers
+ * of the delta and of the update it applies to. The athlete lists are patched element by element, so a lift only sends
+ * the line of the athlete who lifted (and the lines whose highlighting changed).
+ *
+ * A receiver that understands deltas says so with the {@link #DELTA_HEADER} header on its replies; the sender only
+ * sends deltas after seeing it. A receiver that does not have the base update replies with {@link #NEED_SNAPSHOT} and
+ * the sender then sends a full update.
+ *
+ * @author Jean-François Lamy
+ */
+public class UpdateDelta {
+
+    /** sequence number of the update; present on full updates and deltas */
+    public static final String SEQ = "updateSeq";
+    /** sequence number of the update a delta applies to; absent on full updates */
+    public static final String BASE = "updateBase";
+    /** JSON array of the parameter names that are no longer present */
+    public static final String REMOVED = "removedKeys";
+    /** suffix for a parameter carrying an element-by-element patch of a JSON array */
+    public static final String PATCH_SUFFIX = ".patch";
+    /** reply header by which a receiver advertises that it accepts deltas */
+    public static final String DELTA_HEADER = "X-Owlcms-Delta";
+    /** reply status when the base of a delta is unknown to the receiver */
+    public static final int NEED_SNAPSHOT = 409;
+
+    /** parameters holding JSON arrays of athletes */
+    public static final Set<String> ARRAY_KEYS = Set.of("groupAthletes", "liftingOrderAthletes", "leaders");
+    /** parameters required to route and authenticate the request, always sent */
+    public static final Set<String> ROUTING_KEYS = Set.of("updateKey", "fop", "fopName");
+
+    /**
+     * Apply a delta to the previous full update.
+     *
+     * @param previous the full update the delta is based on
+     * @param delta    the parameters received
+     * @return the new full update
+     */
+    public static Map<String, String> apply(Map<String, String> previous, Map<String, String> delta) {
+        Map<String, String> result = new LinkedHashMap<>(previous);
+        String removed = delta.get(REMOVED);
+        if (removed != null) {
+            JsonArray removedKeys = Json.instance().parse(removed);
+            for (int i = 0; i < removedKeys.length(); i++) {
+                result.remove(removedKeys.getString(i));
+            }
+        }
+        for (Entry<String, String> e : delta.entrySet()) {
+            String key = e.getKey();
+            if (key.equals(REMOVED) || key.equals(BASE)) {
+                continue;
+            }
+            if (key.endsWith(PATCH_SUFFIX)) {
+                String arrayKey = key.substring(0, key.length() - PATCH_SUFFIX.length());
+                result.put(arrayKey, applyArray(previous.get(arrayKey), e.getValue()));
+            } else {
+                result.put(key, e.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the parameters to send so that the receiver can rebuild current from previous.
+     *
+     * @param previous the last full update acknowledged by the receiver
+     * @param current  the full update to send
+     * @param baseSeq  the sequence number of previous
+     * @param seq      the sequence number of current
+     * @return the delta parameters
+     */
+    public static Map<String, String> diff(Map<String, String> previous, Map<String, String> current, long baseSeq,
+            long seq) {
+        Map<String, String> delta = new LinkedHashMap<>();
+        JsonArray removed = Json.createArray();
+        for (String key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                removed.set(removed.length(), key);
+            }
+        }
+        for (Entry<String, String> e : current.entrySet()) {
+            String key = e.getKey();
+            String value = e.getValue();
+            String prevValue = previous.get(key);
+            if (ROUTING_KEYS.contains(key)) {
+                delta.put(key, value);
+            } else if (Objects.equals(value, prevValue)) {
+                continue;
+            } else if (prevValue != null && value != null && ARRAY_KEYS.contains(key)) {
+                String patch = diffArray(prevValue, value);
+                if (patch != null) {
+                    delta.put(key + PATCH_SUFFIX, patch);
+                } else {
+                    delta.put(key, value);
+                }
+            } else {
+                delta.put(key, value);
+            }
+        }
+        if (removed.length() > 0) {
+            delta.put(REMOVED, removed.toJson());
+        }
+        delta.put(BASE, Long.toString(baseSeq));
+        delta.put(SEQ, Long.toString(seq));
+        return delta;
+    }
+
+    /**
+     * @param parameters
+     * @return true if the parameters are a delta and not a full update
+     */
+    public static boolean isDelta(Map<String, String> parameters) {
+        return parameters.get(BASE) != null;
+    }
+
+    static String applyArray(String previousJson, String patchJson) {
+        JsonArray previous = Json.instance().parse(previousJson);
+        JsonObject patch = Json.instance().parse(patchJson);
+        int length = (int) patch.getNumber("n");
+        JsonObject changed = patch.getObject("c");
+
+        JsonArray result = Json.createArray();
+        for (int i = 0; i < length; i++) {
+            String index = Integer.toString(i);
+            if (changed.hasKey(index)) {
+                result.set(i, (JsonValue) changed.get(index));
+            } else if (i < previous.length()) {
+                result.set(i, (JsonValue) previous.get(i));
+            } else {
+                throw new IllegalArgumentException("patch does not cover index " + i);
+            }
+        }
+        return result.toJson();
+    }
+
+    /**
+     * @return the patch, or null if the values are not arrays or if the patch would not be smaller
+     */
+    static String diffArray(String previousJson, String currentJson) {
+        JsonValue prevValue = Json.instance().parse(previousJson);
+        JsonValue curValue = Json.instance().parse(currentJson);
+        if (prevValue.getType() != JsonType.ARRAY || curValue.getType() != JsonType.ARRAY) {
+            return null;
+        }
+        JsonArray previous = (JsonArray) prevValue;
+        JsonArray current = (JsonArray) curValue;
+
+        Map<Integer, JsonValue> changes = new HashMap<>();
+        for (int i = 0; i < current.length(); i++) {
+            JsonValue cur = current.get(i);
+            if (i >= previous.length() || !cur.toJson().equals(((JsonValue) previous.get(i)).toJson())) {
+                changes.put(i, cur);
+            }
+        }
+        if (changes.size() * 2 > current.length()) {
+            // most lines changed (new group, new lift), a patch is not worth it
+            return null;
+        }
+        JsonObject changed = Json.createObject();
+        for (Entry<Integer, JsonValue> e : changes.entrySet()) {
+            changed.put(Integer.toString(e.getKey()), e.getValue());
+        }
+        JsonObject patch = Json.createObject();
+        patch.put("n", current.length());
+        patch.put("c", changed);
+        return patch.toJson();
+    }
+
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.i18n;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+
+import org.junit.Test;
+
+public class TranslationTableTest {
+
+	private static final String CSV = "key,en,fr,fr_CA\n"
+	        + "A,a-en,a-fr,a-ca\n"
+	        + "B,b-en,b-fr,\n"
+	        + "C,c-en,,\n";
+
+	private static TranslationTable table() {
+		return TranslationTable.parse(CSV.getBytes(StandardCharsets.UTF_8), "test.csv", "test");
+	}
+
+	@Test
+	public void testCountryFallsBackToLanguage() {
+		TranslationTable t = table();
+		assertEquals("a-ca", t.getBundle(Locale.CANADA_FRENCH).getString("A"));
+		assertEquals("b-fr", t.getBundle(Locale.CANADA_FRENCH).getString("B"));
+		// no fr_BE column, fr is used
+		assertEquals("a-fr", t.getBundle(new Locale("fr", "BE")).getString("A"));
+	}
+
+	@Test(expected = MissingResourceException.class)
+	public void testMissingInLanguage() {
+		// as with one properties file per language, there is no base bundle with the English values
+		table().getBundle(Locale.CANADA_FRENCH).getString("C");
+	}
+
+	@Test
+	public void testMapIncludesParents() {
+		Map<String, String> map = table().getMap(Locale.CANADA_FRENCH, "");
+		assertEquals("a-ca", map.get("A"));
+		assertEquals("b-fr", map.get("B"));
+		assertFalse(map.containsKey("C"));
+	}
+
+	@Test
+	public void testUnknownLanguageUsesDefaultLocale() {
+		Locale saved = Locale.getDefault();
+		try {
+			Locale.setDefault(Locale.FRENCH);
+			assertEquals("b-fr", table().getBundle(Locale.JAPANESE).getString("B"));
+			Locale.setDefault(Locale.ENGLISH);
+			assertEquals("c-en", table().getBundle(Locale.JAPANESE).getString("C"));
+		} finally {
+			Locale.setDefault(saved);
+		}
+	}
+
+	@Test
+	public void testCacheRoundTrip() {
+		byte[] csv = (CSV + "D" + System.nanoTime() + ",d-en,d-fr,\n").getBytes(StandardCharsets.UTF_8);
+		TranslationTable compiled = TranslationTable.load(csv, "test.csv", null);
+		// not the previous table, read back from the cache
+		TranslationTable cached = TranslationTable.load(csv, "test.csv", null);
+		assertNotSame(compiled, cached);
+		assertEquals(compiled.getLocales(), cached.getLocales());
+		assertEquals(compiled.getMap(Locale.CANADA_FRENCH, ""), cached.getMap(Locale.CANADA_FRENCH, ""));
+	}
+
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2023 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class UpdateDeltaTest {
+
+	@Test
+	public void testArrayPatch() {
+		Map<String, String> previous = update("[{\"n\":\"a\"},{\"n\":\"b\"},{\"n\":\"c\"},{\"n\":\"d\"}]", "Snatch");
+		Map<String, String> current = update("[{\"n\":\"a\"},{\"n\":\"B\"},{\"n\":\"c\"},{\"n\":\"d\"}]", "Snatch");
+
+		Map<String, String> delta = UpdateDelta.diff(previous, current, 1, 2);
+		assertTrue(UpdateDelta.isDelta(delta));
+		assertFalse(delta.containsKey("groupAthletes"));
+		assertTrue(delta.containsKey("groupAthletes" + UpdateDelta.PATCH_SUFFIX));
+		assertFalse(delta.containsKey("translationMap"));
+		assertFalse(delta.containsKey("liftType"));
+
+		Map<String, String> rebuilt = UpdateDelta.apply(previous, delta);
+		assertEquals(current.get("groupAthletes"), rebuilt.get("groupAthletes"));
+		assertEquals(current.get("translationMap"), rebuilt.get("translationMap"));
+		assertEquals("2", rebuilt.get(UpdateDelta.SEQ));
+	}
+
+	@Test
+	public void testRemovedAndShrunk() {
+		Map<String, String> previous = update("[{\"n\":\"a\"},{\"n\":\"b\"},{\"n\":\"c\"},{\"n\":\"d\"}]", "Snatch");
+		previous.put("records", "{}");
+		Map<String, String> current = update("[{\"n\":\"a\"},{\"n\":\"b\"},{\"n\":\"c\"}]", "Clean_and_Jerk");
+
+		Map<String, String> delta = UpdateDelta.diff(previous, current, 7, 8);
+		assertEquals("7", delta.get(UpdateDelta.BASE));
+		assertEquals("Clean_and_Jerk", delta.get("liftType"));
+
+		Map<String, String> rebuilt = UpdateDelta.apply(previous, delta);
+		assertNull(rebuilt.get("records"));
+		assertEquals(current.get("groupAthletes"), rebuilt.get("groupAthletes"));
+		assertEquals("Clean_and_Jerk", rebuilt.get("liftType"));
+	}
+
+	private Map<String, String> update(String athletes, String liftType) {
+		Map<String, String> m = new LinkedHashMap<>();
+		m.put("updateKey", "secret");
+		m.put("fop", "A");
+		m.put("liftType", liftType);
+		m.put("groupAthletes", athletes);
+		m.put("translationMap", "{\"Snatch\":\"Snatch\"}");
+		return m;
+	}
+
+}